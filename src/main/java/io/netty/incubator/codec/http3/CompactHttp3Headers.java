@@ -0,0 +1,1116 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.handler.codec.CharSequenceValueConverter;
+import io.netty.handler.codec.Headers;
+import io.netty.handler.codec.HeadersUtils;
+import io.netty.util.AsciiString;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static io.netty.incubator.codec.http3.DefaultHttp3Headers.HTTP3_NAME_VALIDATOR;
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.getPseudoHeader;
+import static io.netty.incubator.codec.http3.Http3Headers.PseudoHeaderName.hasPseudoHeaderFormat;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * {@link Http3Headers} implementation that stores header fields in flat arrays, which is cheaper to build and iterate
+ * than {@link DefaultHttp3Headers} for the small number of header fields that is typical for requests and responses.
+ * Pseudo-headers are looked up faster than by {@link DefaultHttp3Headers}, but looking up any other header field
+ * requires a linear scan. This is slower than the hash table of {@link DefaultHttp3Headers}, especially for names that
+ * are absent, so this implementation is not a good fit if many header fields are looked up or header sets are large.
+ * <p>
+ * The first value of each {@link PseudoHeaderName} is kept in a fixed slot. Pseudo-headers are always iterated first,
+ * in the order of {@link PseudoHeaderName#values()}, followed by all other header fields in insertion order. Adding a
+ * second value for a pseudo-header fails if header names are validated, otherwise it is kept and iterated together
+ * with all other header fields, like {@link DefaultHttp3Headers} does.
+ */
+public final class CompactHttp3Headers implements Http3Headers {
+    private static final PseudoHeaderName[] PSEUDO_HEADERS = PseudoHeaderName.values();
+    private static final CharSequenceValueConverter CONVERTER = CharSequenceValueConverter.INSTANCE;
+
+    private final boolean validate;
+    private final CharSequence[] pseudoValues = new CharSequence[PSEUDO_HEADERS.length];
+    private int pseudoSize;
+
+    // Parallel arrays of all other header fields, hashes are used to skip most non-matching names cheaply.
+    private int[] hashes;
+    private CharSequence[] names;
+    private CharSequence[] values;
+    private int size;
+
+    /**
+     * Create a new instance.
+     * <p>
+     * Header names will be validated according to
+     * <a href="https://tools.ietf.org/html/rfc7540">rfc7540</a>.
+     */
+    public CompactHttp3Headers() {
+        this(true, 8);
+    }
+
+    /**
+     * Create a new instance.
+     * @param validate {@code true} to validate header names according to
+     * <a href="https://tools.ietf.org/html/rfc7540">rfc7540</a>. {@code false} to not validate header names.
+     * @param sizeHint A hint as to how many header fields, excluding pseudo-headers, will be added.
+     */
+    public CompactHttp3Headers(boolean validate, int sizeHint) {
+        this.validate = validate;
+        checkPositive(sizeHint, "sizeHint");
+        hashes = new int[sizeHint];
+        names = new CharSequence[sizeHint];
+        values = new CharSequence[sizeHint];
+    }
+
+    @Nullable
+    @Override
+    public CharSequence get(CharSequence name) {
+        final int pseudoIdx = pseudoIndex(name);
+        if (pseudoIdx >= 0) {
+            return pseudoValues[pseudoIdx];
+        }
+        final int idx = indexOf(name, 0);
+        return idx < 0 ? null : values[idx];
+    }
+
+    @Override
+    public CharSequence get(CharSequence name, CharSequence defaultValue) {
+        final CharSequence value = get(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Nullable
+    @Override
+    public CharSequence getAndRemove(CharSequence name) {
+        final CharSequence value = get(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public CharSequence getAndRemove(CharSequence name, CharSequence defaultValue) {
+        final CharSequence value = getAndRemove(name);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public List<CharSequence> getAll(CharSequence name) {
+        final int pseudoIdx = pseudoIndex(name);
+        int idx = indexOf(name, 0);
+        if (pseudoIdx >= 0) {
+            final CharSequence value = pseudoValues[pseudoIdx];
+            if (value == null) {
+                return Collections.emptyList();
+            }
+            if (idx < 0) {
+                return Collections.singletonList(value);
+            }
+        } else if (idx < 0) {
+            return Collections.emptyList();
+        }
+        final List<CharSequence> all = new ArrayList<>(4);
+        if (pseudoIdx >= 0) {
+            all.add(pseudoValues[pseudoIdx]);
+        }
+        do {
+            all.add(values[idx]);
+            idx = indexOf(name, idx + 1);
+        } while (idx >= 0);
+        return all;
+    }
+
+    @Override
+    public List<CharSequence> getAllAndRemove(CharSequence name) {
+        final List<CharSequence> all = getAll(name);
+        remove(name);
+        return all;
+    }
+
+    @Nullable
+    @Override
+    public Boolean getBoolean(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToBoolean(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean getBoolean(CharSequence name, boolean defaultValue) {
+        final Boolean value = getBoolean(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Byte getByte(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToByte(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public byte getByte(CharSequence name, byte defaultValue) {
+        final Byte value = getByte(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Character getChar(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToChar(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public char getChar(CharSequence name, char defaultValue) {
+        final Character value = getChar(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Short getShort(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToShort(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public short getShort(CharSequence name, short defaultValue) {
+        final Short value = getShort(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Integer getInt(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToInt(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public int getInt(CharSequence name, int defaultValue) {
+        final Integer value = getInt(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Long getLong(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToLong(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getLong(CharSequence name, long defaultValue) {
+        final Long value = getLong(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Float getFloat(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToFloat(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public float getFloat(CharSequence name, float defaultValue) {
+        final Float value = getFloat(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Double getDouble(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToDouble(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public double getDouble(CharSequence name, double defaultValue) {
+        final Double value = getDouble(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Long getTimeMillis(CharSequence name) {
+        final CharSequence value = get(name);
+        try {
+            return value != null ? CONVERTER.convertToTimeMillis(value) : null;
+        } catch (RuntimeException ignore) {
+            return null;
+        }
+    }
+
+    @Override
+    public long getTimeMillis(CharSequence name, long defaultValue) {
+        final Long value = getTimeMillis(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Boolean getBooleanAndRemove(CharSequence name) {
+        final Boolean value = getBoolean(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public boolean getBooleanAndRemove(CharSequence name, boolean defaultValue) {
+        final Boolean value = getBooleanAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Byte getByteAndRemove(CharSequence name) {
+        final Byte value = getByte(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public byte getByteAndRemove(CharSequence name, byte defaultValue) {
+        final Byte value = getByteAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Character getCharAndRemove(CharSequence name) {
+        final Character value = getChar(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public char getCharAndRemove(CharSequence name, char defaultValue) {
+        final Character value = getCharAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Short getShortAndRemove(CharSequence name) {
+        final Short value = getShort(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public short getShortAndRemove(CharSequence name, short defaultValue) {
+        final Short value = getShortAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Integer getIntAndRemove(CharSequence name) {
+        final Integer value = getInt(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public int getIntAndRemove(CharSequence name, int defaultValue) {
+        final Integer value = getIntAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Long getLongAndRemove(CharSequence name) {
+        final Long value = getLong(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public long getLongAndRemove(CharSequence name, long defaultValue) {
+        final Long value = getLongAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Float getFloatAndRemove(CharSequence name) {
+        final Float value = getFloat(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public float getFloatAndRemove(CharSequence name, float defaultValue) {
+        final Float value = getFloatAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Double getDoubleAndRemove(CharSequence name) {
+        final Double value = getDouble(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public double getDoubleAndRemove(CharSequence name, double defaultValue) {
+        final Double value = getDoubleAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Nullable
+    @Override
+    public Long getTimeMillisAndRemove(CharSequence name) {
+        final Long value = getTimeMillis(name);
+        remove(name);
+        return value;
+    }
+
+    @Override
+    public long getTimeMillisAndRemove(CharSequence name, long defaultValue) {
+        final Long value = getTimeMillisAndRemove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public boolean contains(CharSequence name) {
+        final int pseudoIdx = pseudoIndex(name);
+        if (pseudoIdx >= 0) {
+            return pseudoValues[pseudoIdx] != null;
+        }
+        return indexOf(name, 0) >= 0;
+    }
+
+    @Override
+    public boolean contains(CharSequence name, CharSequence value) {
+        return contains(name, value, false);
+    }
+
+    @Override
+    public boolean contains(CharSequence name, CharSequence value, boolean caseInsensitive) {
+        final int pseudoIdx = pseudoIndex(name);
+        if (pseudoIdx >= 0) {
+            final CharSequence pseudoValue = pseudoValues[pseudoIdx];
+            if (pseudoValue == null) {
+                return false;
+            }
+            if (contentEquals(pseudoValue, value, caseInsensitive)) {
+                return true;
+            }
+        }
+        for (int idx = indexOf(name, 0); idx >= 0; idx = indexOf(name, idx + 1)) {
+            if (contentEquals(values[idx], value, caseInsensitive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsObject(CharSequence name, Object value) {
+        return contains(name, CONVERTER.convertObject(checkNotNull(value, "value")));
+    }
+
+    @Override
+    public boolean containsBoolean(CharSequence name, boolean value) {
+        return contains(name, CONVERTER.convertBoolean(value));
+    }
+
+    @Override
+    public boolean containsByte(CharSequence name, byte value) {
+        return contains(name, CONVERTER.convertByte(value));
+    }
+
+    @Override
+    public boolean containsChar(CharSequence name, char value) {
+        return contains(name, CONVERTER.convertChar(value));
+    }
+
+    @Override
+    public boolean containsShort(CharSequence name, short value) {
+        return contains(name, CONVERTER.convertShort(value));
+    }
+
+    @Override
+    public boolean containsInt(CharSequence name, int value) {
+        return contains(name, CONVERTER.convertInt(value));
+    }
+
+    @Override
+    public boolean containsLong(CharSequence name, long value) {
+        return contains(name, CONVERTER.convertLong(value));
+    }
+
+    @Override
+    public boolean containsFloat(CharSequence name, float value) {
+        return contains(name, CONVERTER.convertFloat(value));
+    }
+
+    @Override
+    public boolean containsDouble(CharSequence name, double value) {
+        return contains(name, CONVERTER.convertDouble(value));
+    }
+
+    @Override
+    public boolean containsTimeMillis(CharSequence name, long value) {
+        return contains(name, CONVERTER.convertTimeMillis(value));
+    }
+
+    @Override
+    public int size() {
+        return pseudoSize + size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public Set<CharSequence> names() {
+        final Set<CharSequence> names = new LinkedHashSet<>(size());
+        for (int i = 0; i < pseudoValues.length; i++) {
+            if (pseudoValues[i] != null) {
+                names.add(PSEUDO_HEADERS[i].value());
+            }
+        }
+        names.addAll(Arrays.asList(this.names).subList(0, size));
+        return names;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, CharSequence value) {
+        validateName(name);
+        checkNotNull(value, "value");
+        final int pseudoIdx = pseudoIndex(name);
+        if (pseudoIdx >= 0) {
+            if (pseudoValues[pseudoIdx] == null) {
+                pseudoValues[pseudoIdx] = value;
+                pseudoSize++;
+                return this;
+            }
+            if (validate) {
+                throw new Http3HeadersValidationException(
+                        String.format("Pseudo-header field '%s' exists already.", name));
+            }
+            // Keep further values like all other header fields, so these can be rejected by validation later on.
+        }
+        if (size == names.length) {
+            final int newLength = size << 1;
+            hashes = Arrays.copyOf(hashes, newLength);
+            names = Arrays.copyOf(names, newLength);
+            values = Arrays.copyOf(values, newLength);
+        }
+        hashes[size] = AsciiString.hashCode(name);
+        names[size] = name;
+        values[size] = value;
+        size++;
+        return this;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, Iterable<? extends CharSequence> values) {
+        for (CharSequence value : values) {
+            add(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers add(CharSequence name, CharSequence... values) {
+        for (CharSequence value : values) {
+            add(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers addObject(CharSequence name, Object value) {
+        return add(name, CONVERTER.convertObject(checkNotNull(value, "value")));
+    }
+
+    @Override
+    public Http3Headers addObject(CharSequence name, Iterable<?> values) {
+        for (Object value : values) {
+            addObject(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers addObject(CharSequence name, Object... values) {
+        for (Object value : values) {
+            addObject(name, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers addBoolean(CharSequence name, boolean value) {
+        return add(name, CONVERTER.convertBoolean(value));
+    }
+
+    @Override
+    public Http3Headers addByte(CharSequence name, byte value) {
+        return add(name, CONVERTER.convertByte(value));
+    }
+
+    @Override
+    public Http3Headers addChar(CharSequence name, char value) {
+        return add(name, CONVERTER.convertChar(value));
+    }
+
+    @Override
+    public Http3Headers addShort(CharSequence name, short value) {
+        return add(name, CONVERTER.convertShort(value));
+    }
+
+    @Override
+    public Http3Headers addInt(CharSequence name, int value) {
+        return add(name, CONVERTER.convertInt(value));
+    }
+
+    @Override
+    public Http3Headers addLong(CharSequence name, long value) {
+        return add(name, CONVERTER.convertLong(value));
+    }
+
+    @Override
+    public Http3Headers addFloat(CharSequence name, float value) {
+        return add(name, CONVERTER.convertFloat(value));
+    }
+
+    @Override
+    public Http3Headers addDouble(CharSequence name, double value) {
+        return add(name, CONVERTER.convertDouble(value));
+    }
+
+    @Override
+    public Http3Headers addTimeMillis(CharSequence name, long value) {
+        return add(name, CONVERTER.convertTimeMillis(value));
+    }
+
+    @Override
+    public Http3Headers add(Headers<? extends CharSequence, ? extends CharSequence, ?> headers) {
+        if (headers == this) {
+            throw new IllegalArgumentException("can't add to itself.");
+        }
+        for (Map.Entry<? extends CharSequence, ? extends CharSequence> header : headers) {
+            add(header.getKey(), header.getValue());
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, CharSequence value) {
+        validateName(name);
+        checkNotNull(value, "value");
+        remove(name);
+        return add(name, value);
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, Iterable<? extends CharSequence> values) {
+        validateName(name);
+        checkNotNull(values, "values");
+        remove(name);
+        return add(name, values);
+    }
+
+    @Override
+    public Http3Headers set(CharSequence name, CharSequence... values) {
+        validateName(name);
+        checkNotNull(values, "values");
+        remove(name);
+        return add(name, values);
+    }
+
+    @Override
+    public Http3Headers setObject(CharSequence name, Object value) {
+        return set(name, CONVERTER.convertObject(checkNotNull(value, "value")));
+    }
+
+    @Override
+    public Http3Headers setObject(CharSequence name, Iterable<?> values) {
+        validateName(name);
+        checkNotNull(values, "values");
+        remove(name);
+        return addObject(name, values);
+    }
+
+    @Override
+    public Http3Headers setObject(CharSequence name, Object... values) {
+        validateName(name);
+        checkNotNull(values, "values");
+        remove(name);
+        return addObject(name, values);
+    }
+
+    @Override
+    public Http3Headers setBoolean(CharSequence name, boolean value) {
+        return set(name, CONVERTER.convertBoolean(value));
+    }
+
+    @Override
+    public Http3Headers setByte(CharSequence name, byte value) {
+        return set(name, CONVERTER.convertByte(value));
+    }
+
+    @Override
+    public Http3Headers setChar(CharSequence name, char value) {
+        return set(name, CONVERTER.convertChar(value));
+    }
+
+    @Override
+    public Http3Headers setShort(CharSequence name, short value) {
+        return set(name, CONVERTER.convertShort(value));
+    }
+
+    @Override
+    public Http3Headers setInt(CharSequence name, int value) {
+        return set(name, CONVERTER.convertInt(value));
+    }
+
+    @Override
+    public Http3Headers setLong(CharSequence name, long value) {
+        return set(name, CONVERTER.convertLong(value));
+    }
+
+    @Override
+    public Http3Headers setFloat(CharSequence name, float value) {
+        return set(name, CONVERTER.convertFloat(value));
+    }
+
+    @Override
+    public Http3Headers setDouble(CharSequence name, double value) {
+        return set(name, CONVERTER.convertDouble(value));
+    }
+
+    @Override
+    public Http3Headers setTimeMillis(CharSequence name, long value) {
+        return set(name, CONVERTER.convertTimeMillis(value));
+    }
+
+    @Override
+    public Http3Headers set(Headers<? extends CharSequence, ? extends CharSequence, ?> headers) {
+        if (headers != this) {
+            clear();
+            add(headers);
+        }
+        return this;
+    }
+
+    @Override
+    public Http3Headers setAll(Headers<? extends CharSequence, ? extends CharSequence, ?> headers) {
+        if (headers != this) {
+            for (CharSequence name : headers.names()) {
+                remove(name);
+            }
+            add(headers);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean remove(CharSequence name) {
+        final int pseudoIdx = pseudoIndex(name);
+        if (pseudoIdx >= 0) {
+            if (pseudoValues[pseudoIdx] == null) {
+                return false;
+            }
+            pseudoValues[pseudoIdx] = null;
+            pseudoSize--;
+            removeFields(name);
+            return true;
+        }
+        return removeFields(name);
+    }
+
+    @Override
+    public Http3Headers clear() {
+        Arrays.fill(pseudoValues, null);
+        pseudoSize = 0;
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        return this;
+    }
+
+    @Override
+    public Iterator<Map.Entry<CharSequence, CharSequence>> iterator() {
+        return new EntryIterator();
+    }
+
+    @Override
+    public Iterator<CharSequence> valueIterator(CharSequence name) {
+        final int pseudoIdx = pseudoIndex(name);
+        if (pseudoIdx >= 0) {
+            return Collections.unmodifiableList(getAll(name)).iterator();
+        }
+        return new ValueIterator(name);
+    }
+
+    @Override
+    public Http3Headers method(CharSequence value) {
+        return setPseudoHeader(PseudoHeaderName.METHOD, value);
+    }
+
+    @Override
+    public Http3Headers scheme(CharSequence value) {
+        return setPseudoHeader(PseudoHeaderName.SCHEME, value);
+    }
+
+    @Override
+    public Http3Headers authority(CharSequence value) {
+        return setPseudoHeader(PseudoHeaderName.AUTHORITY, value);
+    }
+
+    @Override
+    public Http3Headers path(CharSequence value) {
+        return setPseudoHeader(PseudoHeaderName.PATH, value);
+    }
+
+    @Override
+    public Http3Headers status(CharSequence value) {
+        return setPseudoHeader(PseudoHeaderName.STATUS, value);
+    }
+
+    @Override
+    public Http3Headers protocol(CharSequence value) {
+        return setPseudoHeader(PseudoHeaderName.PROTOCOL, value);
+    }
+
+    @Nullable
+    @Override
+    public CharSequence method() {
+        return pseudoValues[PseudoHeaderName.METHOD.ordinal()];
+    }
+
+    @Nullable
+    @Override
+    public CharSequence scheme() {
+        return pseudoValues[PseudoHeaderName.SCHEME.ordinal()];
+    }
+
+    @Nullable
+    @Override
+    public CharSequence authority() {
+        return pseudoValues[PseudoHeaderName.AUTHORITY.ordinal()];
+    }
+
+    @Nullable
+    @Override
+    public CharSequence path() {
+        return pseudoValues[PseudoHeaderName.PATH.ordinal()];
+    }
+
+    @Nullable
+    @Override
+    public CharSequence status() {
+        return pseudoValues[PseudoHeaderName.STATUS.ordinal()];
+    }
+
+    @Nullable
+    @Override
+    public CharSequence protocol() {
+        return pseudoValues[PseudoHeaderName.PROTOCOL.ordinal()];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Http3Headers)) {
+            return false;
+        }
+        final Http3Headers other = (Http3Headers) o;
+        if (size() != other.size()) {
+            return false;
+        }
+        for (CharSequence name : names()) {
+            final List<CharSequence> values = getAll(name);
+            final List<CharSequence> otherValues = other.getAll(name);
+            if (values.size() != otherValues.size()) {
+                return false;
+            }
+            for (int i = 0; i < values.size(); i++) {
+                if (!AsciiString.contentEquals(values.get(i), otherValues.get(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return DefaultHttp3Headers.headersHashCode(this);
+    }
+
+    @Override
+    public String toString() {
+        return HeadersUtils.toString(getClass(), iterator(), size());
+    }
+
+    private Http3Headers setPseudoHeader(PseudoHeaderName pseudoHeader, CharSequence value) {
+        checkNotNull(value, "value");
+        final int idx = pseudoHeader.ordinal();
+        if (pseudoValues[idx] == null) {
+            pseudoSize++;
+        } else {
+            removeFields(pseudoHeader.value());
+        }
+        pseudoValues[idx] = value;
+        return this;
+    }
+
+    private void validateName(CharSequence name) {
+        if (validate) {
+            HTTP3_NAME_VALIDATOR.validateName(name);
+        } else {
+            checkNotNull(name, "name");
+        }
+    }
+
+    /**
+     * Returns the index of the next header field, which is not a pseudo-header, with the passed {@code name} at or
+     * after {@code fromIdx} or {@code -1} if there is none.
+     */
+    private int indexOf(CharSequence name, int fromIdx) {
+        if (name instanceof AsciiString) {
+            // The hash code of an AsciiString is cached, so it is the cheapest way to skip other names.
+            final int hash = name.hashCode();
+            for (int i = fromIdx; i < size; i++) {
+                if (hashes[i] == hash && AsciiString.contentEquals(names[i], name)) {
+                    return i;
+                }
+            }
+        } else {
+            // Hashing any other name costs more than comparing the lengths of the few names there usually are.
+            final int length = name.length();
+            for (int i = fromIdx; i < size; i++) {
+                if (names[i].length() == length && AsciiString.contentEquals(names[i], name)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes all header fields with the passed {@code name}, which are not kept in a pseudo-header slot.
+     */
+    private boolean removeFields(CharSequence name) {
+        int idx = indexOf(name, 0);
+        if (idx < 0) {
+            return false;
+        }
+        // Compact the remaining header fields in a single pass.
+        int newSize = idx;
+        for (int i = idx + 1; i < size; i++) {
+            if (!AsciiString.contentEquals(names[i], name)) {
+                hashes[newSize] = hashes[i];
+                names[newSize] = names[i];
+                values[newSize] = values[i];
+                newSize++;
+            }
+        }
+        Arrays.fill(names, newSize, size, null);
+        Arrays.fill(values, newSize, size, null);
+        size = newSize;
+        return true;
+    }
+
+    private void removeAt(int idx) {
+        final int moved = size - idx - 1;
+        System.arraycopy(hashes, idx + 1, hashes, idx, moved);
+        System.arraycopy(names, idx + 1, names, idx, moved);
+        System.arraycopy(values, idx + 1, values, idx, moved);
+        size--;
+        names[size] = null;
+        values[size] = null;
+    }
+
+    /**
+     * Returns the slot of the pseudo-header with the passed {@code name} or {@code -1} if {@code name} is not a
+     * known pseudo-header.
+     */
+    private static int pseudoIndex(CharSequence name) {
+        if (!hasPseudoHeaderFormat(name)) {
+            return -1;
+        }
+        final PseudoHeaderName pseudoHeader = getPseudoHeader(name);
+        return pseudoHeader == null ? -1 : pseudoHeader.ordinal();
+    }
+
+    private static boolean contentEquals(CharSequence a, CharSequence b, boolean caseInsensitive) {
+        return caseInsensitive ? AsciiString.contentEqualsIgnoreCase(a, b) : AsciiString.contentEquals(a, b);
+    }
+
+    private final class EntryIterator implements Iterator<Map.Entry<CharSequence, CharSequence>> {
+        private int pseudoIdx = nextPseudoIndex(0);
+        private int idx;
+
+        @Override
+        public boolean hasNext() {
+            return pseudoIdx < pseudoValues.length || idx < size;
+        }
+
+        @Override
+        public Map.Entry<CharSequence, CharSequence> next() {
+            if (pseudoIdx < pseudoValues.length) {
+                final Entry entry = new Entry(-1 - pseudoIdx);
+                pseudoIdx = nextPseudoIndex(pseudoIdx + 1);
+                return entry;
+            }
+            if (idx >= size) {
+                throw new NoSuchElementException();
+            }
+            return new Entry(idx++);
+        }
+
+        private int nextPseudoIndex(int fromIdx) {
+            for (int i = fromIdx; i < pseudoValues.length; i++) {
+                if (pseudoValues[i] != null) {
+                    return i;
+                }
+            }
+            return pseudoValues.length;
+        }
+    }
+
+    /**
+     * Entry that refers to a slot, a negative {@code idx} refers to the pseudo-header slot {@code -1 - idx}.
+     */
+    private final class Entry implements Map.Entry<CharSequence, CharSequence> {
+        private final int idx;
+
+        Entry(int idx) {
+            this.idx = idx;
+        }
+
+        @Override
+        public CharSequence getKey() {
+            return idx < 0 ? PSEUDO_HEADERS[-1 - idx].value() : names[idx];
+        }
+
+        @Override
+        public CharSequence getValue() {
+            return idx < 0 ? pseudoValues[-1 - idx] : values[idx];
+        }
+
+        @Override
+        public CharSequence setValue(CharSequence value) {
+            checkNotNull(value, "value");
+            final CharSequence old = getValue();
+            if (idx < 0) {
+                pseudoValues[-1 - idx] = value;
+            } else {
+                values[idx] = value;
+            }
+            return old;
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+
+    private final class ValueIterator implements Iterator<CharSequence> {
+        private final CharSequence name;
+        private int previous = -1;
+        private int next;
+
+        ValueIterator(CharSequence name) {
+            this.name = name;
+            next = indexOf(name, 0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public CharSequence next() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            previous = next;
+            next = indexOf(name, next + 1);
+            return values[previous];
+        }
+
+        @Override
+        public void remove() {
+            if (previous < 0) {
+                throw new IllegalStateException();
+            }
+            removeAt(previous);
+            if (next >= 0) {
+                next--;
+            }
+            previous = -1;
+        }
+    }
+}
@@ -21,28 +21,70 @@ import io.netty.util.internal.StringUtil;
 
 public final class DefaultHttp3DataFrame extends DefaultByteBufHolder implements Http3DataFrame {
 
+    private final boolean last;
+    private final boolean headroomWritable;
+
     public DefaultHttp3DataFrame(ByteBuf data) {
+        this(data, false);
+    }
+
+    /**
+     * Creates a new frame.
+     *
+     * @param data the payload of the frame.
+     * @param last {@code true} if this is the last frame of the stream, see {@link #isLast()}.
+     */
+    public DefaultHttp3DataFrame(ByteBuf data, boolean last) {
+        this(data, last, false);
+    }
+
+    /**
+     * Creates a new frame.
+     *
+     * @param data the payload of the frame.
+     * @param last {@code true} if this is the last frame of the stream, see {@link #isLast()}.
+     * @param headroomWritable {@code true} if the bytes before the {@link ByteBuf#readerIndex()} of {@code data} are
+     * not used by anyone else and hence the frame type and length may be written into them, which avoids a separate
+     * buffer for these. Only pass {@code true} if {@code data} was allocated for this frame, never for buffers that
+     * wrap or share memory that is still in use, like a cached or static body.
+     */
+    public DefaultHttp3DataFrame(ByteBuf data, boolean last, boolean headroomWritable) {
         super(data);
+        this.last = last;
+        this.headroomWritable = headroomWritable;
+    }
+
+    @Override
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * Returns {@code true} if the frame type and length may be written into the bytes before the
+     * {@link ByteBuf#readerIndex()} of the {@link #content()}.
+     */
+    boolean headroomWritable() {
+        return headroomWritable;
     }
 
     @Override
     public Http3DataFrame copy() {
-        return new DefaultHttp3DataFrame(content().copy());
+        return new DefaultHttp3DataFrame(content().copy(), last);
     }
 
     @Override
     public Http3DataFrame duplicate() {
-        return new DefaultHttp3DataFrame(content().duplicate());
+        return new DefaultHttp3DataFrame(content().duplicate(), last);
     }
 
     @Override
     public Http3DataFrame retainedDuplicate() {
-        return new DefaultHttp3DataFrame(content().retainedDuplicate());
+        return new DefaultHttp3DataFrame(content().retainedDuplicate(), last);
     }
 
     @Override
     public Http3DataFrame replace(ByteBuf content) {
-        return new DefaultHttp3DataFrame(content);
+        return new DefaultHttp3DataFrame(content, last);
     }
 
     @Override
@@ -71,6 +113,6 @@ public final class DefaultHttp3DataFrame extends DefaultByteBufHolder implements
 
     @Override
     public String toString() {
-        return StringUtil.simpleClassName(this) + "(content=" + content() + ')';
+        return StringUtil.simpleClassName(this) + "(content=" + content() + ", last=" + last + ')';
     }
 }
@@ -28,6 +28,7 @@ import static io.netty.util.AsciiString.isUpperCase;
 
 public final class DefaultHttp3Headers
         extends DefaultHeaders<CharSequence, CharSequence, Http3Headers> implements Http3Headers {
+    private static final int HASH_CODE_SEED = 0xc2b2ae35;
     private static final ByteProcessor HTTP3_NAME_VALIDATOR_PROCESSOR = new ByteProcessor() {
         @Override
         public boolean process(byte value) {
@@ -120,7 +121,24 @@ public final class DefaultHttp3Headers
 
     @Override
     public int hashCode() {
-        return hashCode(CASE_SENSITIVE_HASHER);
+        return headersHashCode(this);
+    }
+
+    /**
+     * Returns the hash code of the passed {@link Http3Headers}, which is the same for all {@link Http3Headers} that
+     * are equal. As equality does not depend on the order of the header names, the hashes of the names and their
+     * values are combined in an order-independent way.
+     */
+    static int headersHashCode(Http3Headers headers) {
+        int result = HASH_CODE_SEED;
+        for (CharSequence name : headers.names()) {
+            int hash = CASE_SENSITIVE_HASHER.hashCode(name);
+            for (CharSequence value : headers.getAll(name)) {
+                hash = 31 * hash + CASE_SENSITIVE_HASHER.hashCode(value);
+            }
+            result += hash;
+        }
+        return result;
     }
 
     @Override
@@ -17,19 +17,70 @@ package io.netty.incubator.codec.http3;
 
 import io.netty.util.internal.ObjectUtil;
 import io.netty.util.internal.StringUtil;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Objects;
 
 public final class DefaultHttp3HeadersFrame implements Http3HeadersFrame {
 
+    private final Http3PreEncodedHeaders preEncodedHeaders;
     private final Http3Headers headers;
+    private final boolean last;
 
     public DefaultHttp3HeadersFrame() {
         this(new DefaultHttp3Headers());
     }
 
     public DefaultHttp3HeadersFrame(Http3Headers headers) {
+        this(headers, false);
+    }
+
+    /**
+     * Creates a new frame which sends the passed {@link Http3Headers}.
+     *
+     * @param headers the header fields to send.
+     * @param last {@code true} if this is the last frame of the stream, see {@link #isLast()}.
+     */
+    public DefaultHttp3HeadersFrame(Http3Headers headers, boolean last) {
+        this.preEncodedHeaders = null;
+        this.headers = ObjectUtil.checkNotNull(headers, "headers");
+        this.last = last;
+    }
+
+    /**
+     * Creates a new frame which sends the passed {@link Http3PreEncodedHeaders}.
+     *
+     * @param preEncodedHeaders the header fields that were encoded once and are sent first.
+     */
+    public DefaultHttp3HeadersFrame(Http3PreEncodedHeaders preEncodedHeaders) {
+        this(preEncodedHeaders, new DefaultHttp3Headers());
+    }
+
+    /**
+     * Creates a new frame which sends the passed {@link Http3PreEncodedHeaders}, followed by the passed
+     * {@link Http3Headers}. As pseudo-header fields must precede all other fields, the passed {@link Http3Headers} must
+     * not contain any pseudo-header fields.
+     *
+     * @param preEncodedHeaders the header fields that were encoded once and are sent first.
+     * @param headers the header fields that are encoded when the frame is written, which are returned by
+     * {@link #headers()}.
+     */
+    public DefaultHttp3HeadersFrame(Http3PreEncodedHeaders preEncodedHeaders, Http3Headers headers) {
+        this(preEncodedHeaders, headers, false);
+    }
+
+    /**
+     * Creates a new frame which sends the passed {@link Http3PreEncodedHeaders}, followed by the passed
+     * {@link Http3Headers}, see {@link #DefaultHttp3HeadersFrame(Http3PreEncodedHeaders, Http3Headers)}.
+     *
+     * @param preEncodedHeaders the header fields that were encoded once and are sent first.
+     * @param headers the header fields that are encoded when the frame is written.
+     * @param last {@code true} if this is the last frame of the stream, see {@link #isLast()}.
+     */
+    public DefaultHttp3HeadersFrame(Http3PreEncodedHeaders preEncodedHeaders, Http3Headers headers, boolean last) {
+        this.preEncodedHeaders = ObjectUtil.checkNotNull(preEncodedHeaders, "preEncodedHeaders");
         this.headers = ObjectUtil.checkNotNull(headers, "headers");
+        this.last = last;
     }
 
     @Override
@@ -37,6 +88,36 @@ public final class DefaultHttp3HeadersFrame implements Http3HeadersFrame {
         return headers;
     }
 
+    @Override
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * Returns the {@link Http3PreEncodedHeaders} which are sent before the {@link #headers()} or {@code null} if none.
+     *
+     * @return the pre-encoded header fields.
+     */
+    @Nullable
+    public Http3PreEncodedHeaders preEncodedHeaders() {
+        return preEncodedHeaders;
+    }
+
+    /**
+     * Returns the value of the passed pseudo-header of the passed frame, including pre-encoded header fields.
+     */
+    @Nullable
+    static CharSequence pseudoHeader(Http3HeadersFrame frame, Http3Headers.PseudoHeaderName name) {
+        CharSequence value = frame.headers().get(name.value());
+        if (value == null && frame instanceof DefaultHttp3HeadersFrame) {
+            Http3PreEncodedHeaders preEncodedHeaders = ((DefaultHttp3HeadersFrame) frame).preEncodedHeaders;
+            if (preEncodedHeaders != null) {
+                value = preEncodedHeaders.pseudoHeader(name);
+            }
+        }
+        return value;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -46,16 +127,22 @@ public final class DefaultHttp3HeadersFrame implements Http3HeadersFrame {
             return false;
         }
         DefaultHttp3HeadersFrame that = (DefaultHttp3HeadersFrame) o;
-        return Objects.equals(headers, that.headers);
+        return last == that.last && Objects.equals(preEncodedHeaders, that.preEncodedHeaders) &&
+                Objects.equals(headers, that.headers);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(headers);
+        int hash = preEncodedHeaders == null ? Objects.hash(headers) : Objects.hash(preEncodedHeaders, headers);
+        return 31 * hash + Boolean.hashCode(last);
     }
 
     @Override
     public String toString() {
-        return StringUtil.simpleClassName(this) + "(headers=" + headers() + ')';
+        if (preEncodedHeaders != null) {
+            return StringUtil.simpleClassName(this) + "(preEncodedHeaders=" + preEncodedHeaders +
+                    ", headers=" + headers() + ", last=" + last + ')';
+        }
+        return StringUtil.simpleClassName(this) + "(headers=" + headers() + ", last=" + last + ')';
     }
 }
@@ -45,7 +45,11 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
     final Http3Settings.NonStandardHttp3SettingsValidator nonStandardSettingsValidator;
     private boolean controlStreamCreationInProgress;
 
-    final long maxTableCapacity;
+    private final Http3SettingsFrame localSettings;
+    private long maxTableCapacity;
+    @Nullable
+    private final QpackMemoryBudget qpackMemoryBudget;
+    private long reservedMaxTableCapacity;
 
     /**
      * Create a new instance.
@@ -59,11 +63,19 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
      * @param localSettings                         the local {@link Http3SettingsFrame} that should be sent to the
      *                                              remote peer or {@code null} if the default settings should be used.
      * @param disableQpackDynamicTable              If QPACK dynamic table should be disabled.
+     * @param nonStandardSettingsValidator          the {@link Http3Settings.NonStandardHttp3SettingsValidator} to
+     *                                              use when validating settings that are non-standard.
+     * @param qpackOptions                          the {@link QpackOptions} to use or {@code null} if
+     *                                              {@link QpackOptions#defaults()} should be used.
      */
     Http3ConnectionHandler(boolean server, @Nullable ChannelHandler inboundControlStreamHandler,
                            @Nullable LongFunction<ChannelHandler> unknownInboundStreamHandlerFactory,
                            @Nullable Http3SettingsFrame localSettings, boolean disableQpackDynamicTable,
-                           @Nullable Http3Settings.NonStandardHttp3SettingsValidator nonStandardSettingsValidator) {
+                           @Nullable Http3Settings.NonStandardHttp3SettingsValidator nonStandardSettingsValidator,
+                           @Nullable QpackOptions qpackOptions) {
+        if (qpackOptions == null) {
+            qpackOptions = QpackOptions.defaults();
+        }
         this.unknownInboundStreamHandlerFactory = unknownInboundStreamHandlerFactory;
         this.disableQpackDynamicTable = disableQpackDynamicTable;
         if (nonStandardSettingsValidator != null) {
@@ -82,11 +94,17 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
             // but Quic can have max 2^62-1 max value as TWO bits reserved for Variable-Length Integer Encoding
             maxFieldSectionSize = (1L << 62) - 1;
         }
-        this.maxTableCapacity = localSettings.getOrDefault(HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY, 0);
+        long maxTableCapacity = localSettings.getOrDefault(HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY, 0);
+        qpackMemoryBudget = qpackOptions.memoryBudget();
+        this.localSettings = localSettings;
+        this.maxTableCapacity = maxTableCapacity;
         int maxBlockedStreams = toIntExact(localSettings.getOrDefault(HTTP3_SETTINGS_QPACK_BLOCKED_STREAMS, 0));
-        qpackDecoder = new QpackDecoder(maxTableCapacity, maxBlockedStreams);
-        qpackEncoder = new QpackEncoder();
-        codecFactory = Http3FrameCodec.newFactory(qpackDecoder, maxFieldSectionSize, qpackEncoder);
+        qpackDecoder = new QpackDecoder(maxTableCapacity, maxBlockedStreams, new QpackDecoderDynamicTable(),
+                qpackOptions.newDecoderStateSyncStrategy());
+        qpackEncoder = new QpackEncoder(qpackOptions, new QpackEncoderDynamicTable());
+        codecFactory = Http3FrameCodec.newFactory(qpackDecoder, maxFieldSectionSize, qpackEncoder,
+                qpackOptions.deferHeaderValueDecoding(), qpackOptions.headersFactory(),
+                qpackOptions.retainRawHeaderValues(), qpackOptions.blockedStreamTimeoutMillis());
         remoteControlStreamHandler =  new Http3ControlStreamOutboundHandler(server, localSettings,
                 codecFactory.newCodec(Http3FrameTypeValidator.NO_VALIDATION, NO_STATE, NO_STATE,
                         this.nonStandardSettingsValidator));
@@ -122,6 +140,24 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
         return localControlStreamHandler.isGoAwayReceived();
     }
 
+    /**
+     * Returns the {@link QpackEncoderMetrics} of the QPACK encoder of this connection.
+     *
+     * @return the {@link QpackEncoderMetrics}.
+     */
+    public final QpackEncoderMetrics qpackEncoderMetrics() {
+        return qpackEncoder;
+    }
+
+    /**
+     * Returns the {@link QpackDecoderMetrics} of the QPACK decoder of this connection.
+     *
+     * @return the {@link QpackDecoderMetrics}.
+     */
+    public final QpackDecoderMetrics qpackDecoderMetrics() {
+        return qpackDecoder;
+    }
+
     /**
      * Returns a new codec that will encode and decode {@link Http3Frame}s for this HTTP/3 connection.
      *
@@ -158,6 +194,16 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
 
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
+        if (qpackMemoryBudget != null && maxTableCapacity > 0) {
+            // Reserve only once added, as the reservation is released in handlerRemoved(...). Advertise a smaller
+            // capacity if the budget is exhausted, the settings are sent once the control stream is created below.
+            reservedMaxTableCapacity = qpackMemoryBudget.reserveFixed(maxTableCapacity);
+            if (reservedMaxTableCapacity < maxTableCapacity) {
+                maxTableCapacity = reservedMaxTableCapacity;
+                localSettings.put(HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY, maxTableCapacity);
+                qpackDecoder.lowerMaxTableCapacity(maxTableCapacity);
+            }
+        }
         QuicChannel channel = (QuicChannel) ctx.channel();
         Http3.setQpackAttributes(channel, new QpackAttributes(channel, disableQpackDynamicTable));
         if (ctx.channel().isActive()) {
@@ -165,6 +211,15 @@ public abstract class Http3ConnectionHandler extends ChannelInboundHandlerAdapte
         }
     }
 
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        if (qpackMemoryBudget != null) {
+            qpackMemoryBudget.releaseFixed(reservedMaxTableCapacity);
+            reservedMaxTableCapacity = 0;
+        }
+        qpackEncoder.releaseMemoryBudget();
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         createControlStreamIfNeeded(ctx);
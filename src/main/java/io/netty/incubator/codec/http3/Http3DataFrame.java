@@ -28,6 +28,16 @@ public interface Http3DataFrame extends ByteBufHolder, Http3RequestStreamFrame,
         return Http3CodecUtils.HTTP3_DATA_FRAME_TYPE;
     }
 
+    /**
+     * Returns {@code true} if this is the last frame written to the stream. The FIN of the stream is then sent
+     * together with this frame, so the output of the stream must not be shut down separately.
+     *
+     * @return {@code true} if this is the last frame of the stream.
+     */
+    default boolean isLast() {
+        return false;
+    }
+
     @Override
     Http3DataFrame copy();
 
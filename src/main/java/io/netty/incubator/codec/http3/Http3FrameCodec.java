@@ -16,6 +16,7 @@
 package io.netty.incubator.codec.http3;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -23,11 +24,13 @@ import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.PendingWriteQueue;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.incubator.codec.quic.DefaultQuicStreamFrame;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
 import io.netty.incubator.codec.quic.QuicStreamFrame;
 import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
+import io.netty.util.concurrent.ScheduledFuture;
 import org.jetbrains.annotations.Nullable;
 
 import java.net.SocketAddress;
@@ -51,11 +54,16 @@ import static io.netty.incubator.codec.http3.Http3CodecUtils.readVariableLengthI
 import static io.netty.incubator.codec.http3.Http3CodecUtils.writeVariableLengthInteger;
 import static io.netty.util.internal.ObjectUtil.checkNotNull;
 import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Decodes / encodes {@link Http3Frame}s.
  */
 final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutboundHandler {
+    // DATA frame payloads smaller than this are copied into one buffer together with the frame type and length.
+    static final int DATA_FRAME_COPY_THRESHOLD = 1024;
+
     private final Http3FrameTypeValidator validator;
     private final long maxHeaderListSize;
     private final QpackDecoder qpackDecoder;
@@ -63,30 +71,55 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
     private final Http3RequestStreamCodecState encodeState;
     private final Http3RequestStreamCodecState decodeState;
     private final Http3Settings.NonStandardHttp3SettingsValidator nonStandardSettingsValidator;
+    private final boolean deferHeaderValueDecoding;
+    private final Http3HeadersFactory headersFactory;
+    private final boolean retainRawHeaderValues;
+    private final long blockedStreamTimeoutMillis;
 
     private boolean firstFrame = true;
     private boolean error;
     private long type = -1;
     private int payLoadLength = -1;
     private QpackAttributes qpackAttributes;
+    // State of a HEADERS frame that is partially decoded.
+    private Http3HeadersFrame pendingHeadersFrame;
+    private Http3HeadersSink pendingHeadersSink;
+    private QpackDecoder.FieldSectionState pendingFieldSectionState;
     private ReadResumptionListener readResumptionListener;
     private WriteResumptionListener writeResumptionListener;
+    private ScheduledFuture<?> blockedStreamTimeout;
 
     static Http3FrameCodecFactory newFactory(QpackDecoder qpackDecoder,
-                                             long maxHeaderListSize, QpackEncoder qpackEncoder) {
+                                             long maxHeaderListSize, QpackEncoder qpackEncoder,
+                                             boolean deferHeaderValueDecoding,
+                                             Http3HeadersFactory headersFactory,
+                                             boolean retainRawHeaderValues,
+                                             long blockedStreamTimeoutMillis) {
         checkNotNull(qpackEncoder, "qpackEncoder");
         checkNotNull(qpackDecoder, "qpackDecoder");
+        checkNotNull(headersFactory, "headersFactory");
 
         // QPACK decoder and encoder are shared between streams in a connection.
         return (validator, encodeState, decodeState,
                 nonStandardSettingsValidator) -> new Http3FrameCodec(validator, qpackDecoder,
-                maxHeaderListSize, qpackEncoder, encodeState, decodeState, nonStandardSettingsValidator);
+                maxHeaderListSize, qpackEncoder, encodeState, decodeState, nonStandardSettingsValidator,
+                deferHeaderValueDecoding, headersFactory, retainRawHeaderValues, blockedStreamTimeoutMillis);
     }
 
     Http3FrameCodec(Http3FrameTypeValidator validator, QpackDecoder qpackDecoder,
                     long maxHeaderListSize, QpackEncoder qpackEncoder, Http3RequestStreamCodecState encodeState,
                     Http3RequestStreamCodecState decodeState,
                     Http3Settings.NonStandardHttp3SettingsValidator nonStandardSettingsValidator) {
+        this(validator, qpackDecoder, maxHeaderListSize, qpackEncoder, encodeState, decodeState,
+                nonStandardSettingsValidator, false, Http3HeadersFactory.defaultHeadersFactory(), false, 0);
+    }
+
+    Http3FrameCodec(Http3FrameTypeValidator validator, QpackDecoder qpackDecoder,
+                    long maxHeaderListSize, QpackEncoder qpackEncoder, Http3RequestStreamCodecState encodeState,
+                    Http3RequestStreamCodecState decodeState,
+                    Http3Settings.NonStandardHttp3SettingsValidator nonStandardSettingsValidator,
+                    boolean deferHeaderValueDecoding, Http3HeadersFactory headersFactory,
+                    boolean retainRawHeaderValues, long blockedStreamTimeoutMillis) {
         this.validator = checkNotNull(validator, "validator");
         this.qpackDecoder = checkNotNull(qpackDecoder, "qpackDecoder");
         this.maxHeaderListSize = checkPositive(maxHeaderListSize, "maxHeaderListSize");
@@ -94,6 +127,10 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
         this.encodeState = checkNotNull(encodeState, "encodeState");
         this.decodeState = checkNotNull(decodeState, "decodeState");
         this.nonStandardSettingsValidator = nonStandardSettingsValidator;
+        this.deferHeaderValueDecoding = deferHeaderValueDecoding;
+        this.headersFactory = checkNotNull(headersFactory, "headersFactory");
+        this.retainRawHeaderValues = retainRawHeaderValues;
+        this.blockedStreamTimeoutMillis = checkPositiveOrZero(blockedStreamTimeoutMillis, "blockedStreamTimeoutMillis");
     }
 
     @Override
@@ -119,6 +156,8 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
             // drain everything so we are sure we never leak anything.
             writeResumptionListener.drain();
         }
+        cancelBlockedStreamTimeout();
+        clearPendingHeaders();
         super.handlerRemoved0(ctx);
     }
 
@@ -137,6 +176,11 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
 
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        assert qpackAttributes != null;
+        if (qpackAttributes.decoderStreamAvailable()) {
+            // Write all section acknowledgments generated by the header blocks decoded in this read cycle.
+            qpackDecoder.writePendingInstructions(qpackAttributes);
+        }
         assert readResumptionListener != null;
         if (readResumptionListener.readCompleted()) {
             super.channelReadComplete(ctx);
@@ -238,7 +282,7 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
             case HTTP3_HEADERS_FRAME_TYPE:
                 // HEADERS
                 // https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.2
-                if (!enforceMaxPayloadLength(ctx, in, type, payLoadLength,
+                if (pendingHeadersFrame == null && !validatePayloadLength(ctx, type, payLoadLength,
                         // Let's use the maxHeaderListSize as a limit as this is this is the decompressed amounts of
                         // bytes which means the once we decompressed the headers we will be bigger then the actual
                         // payload size now.
@@ -251,13 +295,7 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
                     readResumptionListener.suspended();
                     return 0;
                 }
-
-                Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
-                if (decodeHeaders(ctx, headersFrame.headers(), in, payLoadLength, decodeState.receivedFinalHeaders())) {
-                    out.add(headersFrame);
-                    return payLoadLength;
-                }
-                return -1;
+                return decodeHeadersIncrementally(ctx, in, payLoadLength, out);
             case HTTP3_CANCEL_PUSH_FRAME_TYPE:
                 // CANCEL_PUSH
                 // https://tools.ietf.org/html/draft-ietf-quic-http-32#section-7.2.3
@@ -302,7 +340,7 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
                 int readerIdx = in.readerIndex();
                 int pushPromiseIdLen = numBytesForVariableLengthInteger(in.getByte(in.readerIndex()));
                 Http3PushPromiseFrame pushPromiseFrame = new DefaultHttp3PushPromiseFrame(
-                        readVariableLengthInteger(in, pushPromiseIdLen));
+                        readVariableLengthInteger(in, pushPromiseIdLen), headersFactory.newHeaders());
                 if (decodeHeaders(ctx, pushPromiseFrame.headers(), in, payLoadLength - pushPromiseIdLen, false)) {
                     out.add(pushPromiseFrame);
                     return payLoadLength;
@@ -346,12 +384,20 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
     private boolean enforceMaxPayloadLength(
             ChannelHandlerContext ctx, ByteBuf in, int type, int payLoadLength,
             long maxPayLoadLength, Http3ErrorCode error) {
+        if (!validatePayloadLength(ctx, type, payLoadLength, maxPayLoadLength, error)) {
+            return false;
+        }
+        return in.readableBytes() >= payLoadLength;
+    }
+
+    private boolean validatePayloadLength(
+            ChannelHandlerContext ctx, int type, int payLoadLength, long maxPayLoadLength, Http3ErrorCode error) {
         if (payLoadLength > maxPayLoadLength) {
             connectionError(ctx, error,
                     "Received an invalid frame len " + payLoadLength + " for frame of type " + type + '.', true);
             return false;
         }
-        return in.readableBytes() >= payLoadLength;
+        return true;
     }
 
     @Nullable
@@ -409,6 +455,7 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
                 return true;
             }
             readResumptionListener.suspended();
+            scheduleBlockedStreamTimeout(ctx);
         } catch (Http3Exception e) {
             connectionError(ctx, e.errorCode(), e.getMessage(), true);
         } catch (QpackException e) {
@@ -425,6 +472,110 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
         return false;
     }
 
+    /**
+     * Decode the field lines of a HEADERS frame that are readable, without waiting for the whole frame payload.
+     *
+     * @param ctx {@link ChannelHandlerContext} for this handler.
+     * @param in {@link ByteBuf} containing the next bytes of the encoded header block.
+     * @param length Number of bytes of the frame payload that are not yet decoded.
+     * @param out to which the {@link Http3HeadersFrame} is added once the header block is completely decoded.
+     * @return Number of bytes consumed or {@code -1} if the header block could not be decoded. A header block may not
+     * be decoded if it is awaiting QPACK dynamic table updates.
+     */
+    private int decodeHeadersIncrementally(ChannelHandlerContext ctx, ByteBuf in, int length, List<Object> out) {
+        if (pendingHeadersFrame == null) {
+            pendingHeadersFrame = new DefaultHttp3HeadersFrame(headersFactory.newHeaders());
+            pendingHeadersSink = new Http3HeadersSink(pendingHeadersFrame.headers(), maxHeaderListSize, true,
+                    decodeState.receivedFinalHeaders());
+            pendingFieldSectionState = new QpackDecoder.FieldSectionState(deferHeaderValueDecoding,
+                    retainRawHeaderValues);
+        }
+        try {
+            assert qpackAttributes != null;
+            assert readResumptionListener != null;
+            int read = qpackDecoder.decodeIncrementally(qpackAttributes,
+                    ((QuicStreamChannel) ctx.channel()).streamId(), in, length, pendingFieldSectionState,
+                    pendingHeadersSink, readResumptionListener);
+            if (read == length) {
+                // Throws exception if detected any problem so far
+                pendingHeadersSink.finish();
+                final List<ByteBuf> rawBlocks = pendingFieldSectionState.takeRawBlocks();
+                // If the FIN was received and no bytes follow, this is the last frame of the stream.
+                final boolean last = !in.isReadable() && ((QuicStreamChannel) ctx.channel()).isInputShutdown();
+                if (rawBlocks != null) {
+                    out.add(new ReferenceCountedHttp3HeadersFrame(pendingHeadersFrame.headers(), rawBlocks,
+                            headersFactory, last));
+                } else {
+                    out.add(last ? new DefaultHttp3HeadersFrame(pendingHeadersFrame.headers(), true) :
+                            pendingHeadersFrame);
+                }
+                clearPendingHeaders();
+            } else if (read < 0) {
+                readResumptionListener.suspended();
+                scheduleBlockedStreamTimeout(ctx);
+            }
+            return read;
+        } catch (Http3Exception e) {
+            connectionError(ctx, e.errorCode(), e.getMessage(), true);
+        } catch (QpackException e) {
+            // Must be treated as a connection error.
+            connectionError(ctx, Http3ErrorCode.QPACK_DECOMPRESSION_FAILED,
+                    "Decompression of header block failed.", true);
+        } catch (Http3HeadersValidationException e) {
+            error = true;
+            ctx.fireExceptionCaught(e);
+            // We should shutdown the stream with an error.
+            // See https://tools.ietf.org/html/draft-ietf-quic-http-32#section-4.1.3
+            Http3CodecUtils.streamError(ctx, Http3ErrorCode.H3_MESSAGE_ERROR);
+        }
+        clearPendingHeaders();
+        return -1;
+    }
+
+    private void scheduleBlockedStreamTimeout(ChannelHandlerContext ctx) {
+        if (blockedStreamTimeoutMillis > 0 && blockedStreamTimeout == null) {
+            blockedStreamTimeout = ctx.executor().schedule(() -> blockedStreamTimedOut(ctx),
+                    blockedStreamTimeoutMillis, MILLISECONDS);
+        }
+    }
+
+    private void cancelBlockedStreamTimeout() {
+        if (blockedStreamTimeout != null) {
+            blockedStreamTimeout.cancel(false);
+            blockedStreamTimeout = null;
+        }
+    }
+
+    private void blockedStreamTimedOut(ChannelHandlerContext ctx) {
+        blockedStreamTimeout = null;
+        final QuicStreamChannel channel = (QuicStreamChannel) ctx.channel();
+        if (!qpackDecoder.blockedStreamTimedOut(channel.streamId())) {
+            // Unblocked in the meantime.
+            return;
+        }
+        error = true;
+        clearPendingHeaders();
+        // Free the buffered header block, all following bytes are discarded as well.
+        final ByteBuf buffered = internalBuffer();
+        buffered.skipBytes(buffered.readableBytes());
+        discardSomeReadBytes();
+        ctx.fireExceptionCaught(new Http3Exception(Http3ErrorCode.QPACK_DECOMPRESSION_FAILED,
+                "Stream blocked on QPACK dynamic table updates for more than " + blockedStreamTimeoutMillis + "ms."));
+        channel.shutdown(Http3ErrorCode.QPACK_DECOMPRESSION_FAILED.code);
+        assert readResumptionListener != null;
+        // Resume reading, so pending reads are processed and the remaining bytes are discarded.
+        readResumptionListener.run();
+    }
+
+    private void clearPendingHeaders() {
+        if (pendingFieldSectionState != null) {
+            pendingFieldSectionState.releaseRawBlocks();
+        }
+        pendingHeadersFrame = null;
+        pendingHeadersSink = null;
+        pendingFieldSectionState = null;
+    }
+
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
         assert qpackAttributes != null;
@@ -469,22 +620,116 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
         }
     }
 
+    /**
+     * Writes a DATA frame. Payloads smaller than {@link #DATA_FRAME_COPY_THRESHOLD} are copied into a single buffer
+     * together with the frame type and length. Larger payloads get the frame type and length written into their
+     * headroom if the frame was created with {@link DefaultHttp3DataFrame#DefaultHttp3DataFrame(ByteBuf, boolean,
+     * boolean)} to allow it and the headroom is writable, and are only wrapped together with a separate buffer for
+     * the frame type and length otherwise.
+     */
     private static void writeDataFrame(
             ChannelHandlerContext ctx, Http3DataFrame frame, ChannelPromise promise) {
-        ByteBuf out = ctx.alloc().directBuffer(16);
+        final ByteBuf content = frame.content();
+        final int payloadLength = content.readableBytes();
+        final int prefixLength = numBytesForVariableLengthInteger(frame.type()) +
+                numBytesForVariableLengthInteger(payloadLength);
+        if (payloadLength < DATA_FRAME_COPY_THRESHOLD) {
+            ByteBuf out = ctx.alloc().directBuffer(prefixLength + payloadLength);
+            writeVariableLengthInteger(out, frame.type());
+            writeVariableLengthInteger(out, payloadLength);
+            out.writeBytes(content, content.readerIndex(), payloadLength);
+            ctx.write(streamData(out, frame.isLast()), promise);
+            return;
+        }
+        final int prefixIndex = content.readerIndex() - prefixLength;
+        if (prefixIndex >= 0 && frame instanceof DefaultHttp3DataFrame &&
+                ((DefaultHttp3DataFrame) frame).headroomWritable() && content.refCnt() == 1 &&
+                content.unwrap() == null && !content.isReadOnly() && !(content instanceof CompositeByteBuf)) {
+            // The bytes before the readerIndex may be shared with buffers we can not see, for example if the payload
+            // wraps a byte[], so these are only written to if the creator of the frame declared them as unused. The
+            // components of a CompositeByteBuf may be shared with other buffers, hence these are never written to.
+            final int writerIndex = content.writerIndex();
+            content.setIndex(prefixIndex, prefixIndex);
+            writeVariableLengthInteger(content, frame.type());
+            writeVariableLengthInteger(content, payloadLength);
+            content.writerIndex(writerIndex);
+            ctx.write(streamData(content.retain(), frame.isLast()), promise);
+            return;
+        }
+        ByteBuf out = ctx.alloc().directBuffer(prefixLength);
         writeVariableLengthInteger(out, frame.type());
-        writeVariableLengthInteger(out, frame.content().readableBytes());
-        ByteBuf content = frame.content().retain();
-        ctx.write(Unpooled.wrappedUnmodifiableBuffer(out, content), promise);
+        writeVariableLengthInteger(out, payloadLength);
+        ctx.write(streamData(Unpooled.wrappedUnmodifiableBuffer(out, content.retain()), frame.isLast()), promise);
+    }
+
+    /**
+     * Returns the passed encoded frame, wrapped into a {@link QuicStreamFrame} with the FIN bit set if it is the last
+     * frame of the stream.
+     */
+    private static Object streamData(ByteBuf out, boolean last) {
+        return last ? new DefaultQuicStreamFrame(out, true) : out;
     }
 
     private void writeHeadersFrame(ChannelHandlerContext ctx, Http3HeadersFrame frame, ChannelPromise promise) {
+        final Http3PreEncodedHeaders preEncodedHeaders = frame instanceof DefaultHttp3HeadersFrame ?
+                ((DefaultHttp3HeadersFrame) frame).preEncodedHeaders() : null;
+        if (preEncodedHeaders != null && containsPseudoHeader(frame.headers())) {
+            promise.setFailure(new Http3HeadersValidationException(
+                    "Pseudo-header fields can not follow pre-encoded header fields."));
+            return;
+        }
+        writeFieldSectionFrame(ctx, frame.type(), -1, preEncodedHeaders, frame.headers(), frame.isLast(), promise);
+    }
+
+    /**
+     * Writes a frame which carries an encoded field section, optionally preceded by a push id. The field section is
+     * encoded directly into the buffer of the frame, after enough space was reserved for the frame type, the payload
+     * length, the push id and the field section prefix, which are all written once the field section is encoded.
+     */
+    private void writeFieldSectionFrame(ChannelHandlerContext ctx, long type, long pushId,
+                                        @Nullable Http3PreEncodedHeaders preEncodedHeaders, Http3Headers headers,
+                                        boolean last, ChannelPromise promise) {
         assert qpackAttributes != null;
         final QuicStreamChannel channel = (QuicStreamChannel) ctx.channel();
-        writeDynamicFrame(ctx, frame.type(), frame, (f, out) -> {
-            qpackEncoder.encodeHeaders(qpackAttributes, out, ctx.alloc(), channel.streamId(), f.headers());
-            return true;
-        }, promise);
+        ByteBuf out = ctx.alloc().directBuffer();
+        try {
+            // Move 24 bytes forward as this is the maximum amount we could ever need for the type, payload length and
+            // push id.
+            int fieldLinesStartIndex = out.writerIndex() + 24 + QpackEncoder.MAX_FIELD_SECTION_PREFIX_LENGTH;
+            out.writerIndex(fieldLinesStartIndex);
+            int payloadStartIndex = qpackEncoder.encodeHeaders(
+                    qpackAttributes, out, channel.streamId(), preEncodedHeaders, headers);
+            int finalWriterIndex = out.writerIndex();
+            if (pushId >= 0) {
+                int pushIdLength = numBytesForVariableLengthInteger(pushId);
+                payloadStartIndex -= pushIdLength;
+                out.writerIndex(payloadStartIndex);
+                writeVariableLengthInteger(out, pushId, pushIdLength);
+            }
+
+            int payloadLength = finalWriterIndex - payloadStartIndex;
+            int len = numBytesForVariableLengthInteger(payloadLength);
+            out.writerIndex(payloadStartIndex - len);
+            writeVariableLengthInteger(out, payloadLength, len);
+
+            int typeLength = numBytesForVariableLengthInteger(type);
+            int startIndex = payloadStartIndex - len - typeLength;
+            out.writerIndex(startIndex);
+            writeVariableLengthInteger(out, type, typeLength);
+
+            out.setIndex(startIndex, finalWriterIndex);
+        } catch (Throwable cause) {
+            out.release();
+            throw cause;
+        }
+        ctx.write(streamData(out, last), promise);
+    }
+
+    private static boolean containsPseudoHeader(Http3Headers headers) {
+        // Look up each pseudo-header, as Http3Headers implementations are not required to iterate these first.
+        return !headers.isEmpty() && (headers.method() != null || headers.scheme() != null ||
+                headers.authority() != null || headers.path() != null || headers.status() != null ||
+                headers.contains(Http3Headers.PseudoHeaderName.PROTOCOL.value()));
     }
 
     private static void writeCancelPushFrame(
@@ -545,14 +790,7 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
     }
 
     private void writePushPromiseFrame(ChannelHandlerContext ctx, Http3PushPromiseFrame frame, ChannelPromise promise) {
-        assert qpackAttributes != null;
-        final QuicStreamChannel channel = (QuicStreamChannel) ctx.channel();
-        writeDynamicFrame(ctx, frame.type(), frame, (f, out) -> {
-            long id = f.id();
-            writeVariableLengthInteger(out, id);
-            qpackEncoder.encodeHeaders(qpackAttributes, out, ctx.alloc(), channel.streamId(), f.headers());
-            return true;
-        }, promise);
+        writeFieldSectionFrame(ctx, frame.type(), frame.id(), null, frame.headers(), false, promise);
     }
 
     private static void writeGoAwayFrame(
@@ -709,6 +947,7 @@ final class Http3FrameCodec extends ByteToMessageDecoder implements ChannelOutbo
         }
 
         private void resume() {
+            codec.cancelBlockedStreamTimeout();
             unsetState(STATE_SUSPENDED);
             try {
                 codec.channelRead(ctx, Unpooled.EMPTY_BUFFER);
@@ -16,8 +16,9 @@
 
 package io.netty.incubator.codec.http3;
 
-import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandler;
@@ -41,6 +42,7 @@ import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.PromiseCombiner;
 import org.jetbrains.annotations.Nullable;
 
@@ -58,6 +60,13 @@ import java.net.SocketAddress;
 public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInboundHandler
         implements ChannelOutboundHandler {
 
+    private static final ChannelFutureListener SHUTDOWN_OUTPUT_IF_NO_FIN = future -> {
+        QuicStreamChannel channel = (QuicStreamChannel) future.channel();
+        if (!channel.isOutputShutdown()) {
+            channel.shutdownOutput();
+        }
+    };
+
     private final boolean isServer;
     private final boolean validateHeaders;
     private boolean inboundTranslationInProgress;
@@ -79,7 +88,9 @@ public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInbound
 
     @Override
     protected void channelRead(ChannelHandlerContext ctx, Http3HeadersFrame frame) throws Exception {
-        Http3Headers headers = frame.headers();
+        // The frame is consumed here, so copy values that share the received bytes before releasing it.
+        Http3Headers headers = ReferenceCountedHttp3HeadersFrame.detachedHeaders(frame);
+        ReferenceCountUtil.release(frame);
         long id = ((QuicStreamChannel) ctx.channel()).streamId();
 
         final CharSequence status = headers.status();
@@ -87,7 +98,7 @@ public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInbound
         // 100-continue response is a special case where we should not send a fin,
         // but we need to decode it as a FullHttpResponse to play nice with HttpObjectAggregator.
         if (null != status && HttpResponseStatus.CONTINUE.codeAsText().contentEquals(status)) {
-            final FullHttpMessage fullMsg = newFullMessage(id, headers, ctx.alloc());
+            final FullHttpMessage fullMsg = newFullMessage(id, headers, ctx.alloc().buffer());
             ctx.fireChannelRead(fullMsg);
             return;
         }
@@ -99,6 +110,10 @@ public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInbound
                     HttpVersion.HTTP_1_1, true, true);
             inboundTranslationInProgress = false;
             ctx.fireChannelRead(last);
+        } else if (frame.isLast()) {
+            // The FIN was received together with the headers, so there is no content.
+            inboundTranslationInProgress = false;
+            ctx.fireChannelRead(newFullMessage(id, headers, Unpooled.EMPTY_BUFFER));
         } else {
             HttpMessage req = newMessage(id, headers);
             if (!HttpUtil.isContentLengthSet(req)) {
@@ -160,10 +175,13 @@ public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInbound
         // closing. To do that, we need to unvoid the promise. So if we write anything *and* this is the last message
         // we will unvoid.
         boolean isLast = msg instanceof LastHttpContent;
+        boolean readable = isLast && ((LastHttpContent) msg).content().isReadable();
+        boolean hasTrailers = isLast && !((LastHttpContent) msg).trailingHeaders().isEmpty();
 
         if (msg instanceof HttpMessage) {
             Http3Headers headers = toHttp3Headers((HttpMessage) msg);
-            DefaultHttp3HeadersFrame frame = new DefaultHttp3HeadersFrame(headers);
+            // If there is neither content nor trailers the FIN is sent together with the headers.
+            DefaultHttp3HeadersFrame frame = new DefaultHttp3HeadersFrame(headers, isLast && !readable && !hasTrailers);
 
             if (msg instanceof HttpContent && (!promise.isVoid() || isLast)) {
                 combiner = new PromiseCombiner(ctx.executor());
@@ -174,32 +192,30 @@ public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInbound
         if (isLast) {
             LastHttpContent last = (LastHttpContent) msg;
             try {
-                boolean readable = last.content().isReadable();
-                boolean hasTrailers = !last.trailingHeaders().isEmpty();
-
                 if (combiner == null && readable && hasTrailers && !promise.isVoid()) {
                     combiner = new PromiseCombiner(ctx.executor());
                 }
 
                 if (readable) {
-                    promise = writeWithOptionalCombiner(
-                            ctx, new DefaultHttp3DataFrame(last.content().retain()), promise, combiner, true);
+                    promise = writeWithOptionalCombiner(ctx,
+                            new DefaultHttp3DataFrame(last.content().retain(), !hasTrailers), promise, combiner, true);
                 }
                 if (hasTrailers) {
                     Http3Headers headers = HttpConversionUtil.toHttp3Headers(last.trailingHeaders(), validateHeaders);
                     promise = writeWithOptionalCombiner(ctx,
-                            new DefaultHttp3HeadersFrame(headers), promise, combiner, true);
+                            new DefaultHttp3HeadersFrame(headers, true), promise, combiner, true);
                 } else if (!readable) {
                     if (combiner == null) {
                         // We only need to write something if there was no write before.
                         promise = writeWithOptionalCombiner(
-                                ctx, new DefaultHttp3DataFrame(last.content().retain()), promise, combiner, true);
+                                ctx, new DefaultHttp3DataFrame(last.content().retain(), true), promise, combiner, true);
                     }
                 }
-                // The shutdown is always done via the listener to ensure previous written data is correctly drained
-                // before QuicStreamChannel.shutdownOutput() is called. Missing to do so might cause previous queued
-                // data to be failed with a ClosedChannelException.
-                promise = promise.unvoid().addListener(QuicStreamChannel.SHUTDOWN_OUTPUT);
+                // The last frame carries the FIN, which is sent by the Http3FrameCodec together with the frame. If no
+                // Http3FrameCodec handled the frame the output is shut down via the listener, which ensures previous
+                // written data is correctly drained before QuicStreamChannel.shutdownOutput() is called. Missing to do
+                // so might cause previous queued data to be failed with a ClosedChannelException.
+                promise = promise.unvoid().addListener(SHUTDOWN_OUTPUT_IF_NO_FIN);
             } finally {
                 // Release LastHttpContent, we retain the content if we need it.
                 last.release();
@@ -254,10 +270,10 @@ public final class Http3FrameToHttpObjectCodec extends Http3RequestStreamInbound
 
     private FullHttpMessage newFullMessage(final long id,
                                            final Http3Headers headers,
-                                           final ByteBufAllocator alloc) throws Http3Exception {
+                                           final ByteBuf content) throws Http3Exception {
         return isServer ?
-                HttpConversionUtil.toFullHttpRequest(id, headers, alloc, validateHeaders) :
-                HttpConversionUtil.toFullHttpResponse(id, headers, alloc, validateHeaders);
+                HttpConversionUtil.toFullHttpRequest(id, headers, content, validateHeaders) :
+                HttpConversionUtil.toFullHttpResponse(id, headers, content, validateHeaders);
     }
 
     @Override
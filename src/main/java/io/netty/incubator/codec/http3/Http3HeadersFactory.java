@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+
+/**
+ * Factory for the {@link Http3Headers} of received {@link Http3HeadersFrame}s and {@link Http3PushPromiseFrame}s, to
+ * which the decoded header fields are added.
+ */
+@FunctionalInterface
+public interface Http3HeadersFactory {
+
+    /**
+     * Creates a new empty {@link Http3Headers} instance.
+     *
+     * @return new {@link Http3Headers} instance.
+     */
+    Http3Headers newHeaders();
+
+    /**
+     * Returns a {@link Http3HeadersFactory} that creates {@link DefaultHttp3Headers} which validate header names.
+     *
+     * @return A {@link Http3HeadersFactory} that creates {@link DefaultHttp3Headers}.
+     */
+    static Http3HeadersFactory defaultHeadersFactory() {
+        return DefaultHttp3Headers::new;
+    }
+
+    /**
+     * Returns a {@link Http3HeadersFactory} that creates {@link DefaultHttp3Headers} which validate header names.
+     *
+     * @param arraySizeHint A hint as to how large the hash data structure of the headers should be, see
+     * {@link DefaultHttp3Headers#DefaultHttp3Headers(boolean, int)}.
+     * @return A {@link Http3HeadersFactory} that creates {@link DefaultHttp3Headers}.
+     */
+    static Http3HeadersFactory defaultHeadersFactory(int arraySizeHint) {
+        checkPositive(arraySizeHint, "arraySizeHint");
+        return () -> new DefaultHttp3Headers(true, arraySizeHint);
+    }
+
+    /**
+     * Returns a {@link Http3HeadersFactory} that creates {@link CompactHttp3Headers} which validate header names.
+     * These are cheaper to build than {@link DefaultHttp3Headers}, but looking up header fields other than
+     * pseudo-headers is slower.
+     *
+     * @param sizeHint A hint as to how many header fields, excluding pseudo-headers, will be received, see
+     * {@link CompactHttp3Headers#CompactHttp3Headers(boolean, int)}.
+     * @return A {@link Http3HeadersFactory} that creates {@link CompactHttp3Headers}.
+     */
+    static Http3HeadersFactory compactHeadersFactory(int sizeHint) {
+        checkPositive(sizeHint, "sizeHint");
+        return () -> new CompactHttp3Headers(true, sizeHint);
+    }
+}
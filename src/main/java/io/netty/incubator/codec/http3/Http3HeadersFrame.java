@@ -31,4 +31,16 @@ public interface Http3HeadersFrame extends Http3RequestStreamFrame, Http3PushStr
      * @return the carried headers.
      */
     Http3Headers headers();
+
+    /**
+     * Returns {@code true} if this is the last frame written to the stream. The FIN of the stream is then sent
+     * together with this frame, so the output of the stream must not be shut down separately.
+     * <p>
+     * For received frames this returns {@code true} if the FIN of the stream was received together with this frame.
+     *
+     * @return {@code true} if this is the last frame of the stream.
+     */
+    default boolean isLast() {
+        return false;
+    }
 }
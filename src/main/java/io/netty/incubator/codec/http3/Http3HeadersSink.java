@@ -147,8 +147,18 @@ final class Http3HeadersSink implements BiConsumer<CharSequence, CharSequence> {
                 headers.contains(HttpHeaderNames.HOST);
     }
 
+    /**
+     * Returns {@code true} if the value of the header with the passed {@code name} is used for validation and hence
+     * should not be deferred, see {@link QpackDeferredHuffmanValue}.
+     */
+    static boolean isValidationRelevant(CharSequence name) {
+        return hasPseudoHeaderFormat(name) || HttpHeaderNames.CONTENT_LENGTH.contentEqualsIgnoreCase(name) ||
+                HttpHeaderNames.TE.contentEqualsIgnoreCase(name);
+    }
+
     @Override
     public void accept(CharSequence name, CharSequence value) {
+        // The length of a QpackDeferredHuffmanValue is known without decoding it.
         headersLength += QpackHeaderField.sizeOf(name, value);
         exceededMaxLength |= headersLength > maxHeaderListSize;
 
@@ -166,7 +176,12 @@ final class Http3HeadersSink implements BiConsumer<CharSequence, CharSequence> {
             }
         }
 
-        headers.add(name, value);
+        try {
+            headers.add(name, value);
+        } catch (Http3HeadersValidationException ex) {
+            // The headers may validate on their own, for example if created by a custom Http3HeadersFactory.
+            validationException = ex;
+        }
     }
 
     private void validate(Http3Headers headers, CharSequence name) {
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.internal.StringUtil;
+import org.jetbrains.annotations.Nullable;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * An immutable QPACK encoded field section for a fixed set of header fields, which can be sent on any connection
+ * using a {@link DefaultHttp3HeadersFrame#DefaultHttp3HeadersFrame(Http3PreEncodedHeaders, Http3Headers)}.
+ * <p>
+ * The header fields are encoded once, only referencing the static table or as literals. This makes the encoded
+ * field lines independent of the state of the dynamic table of a connection, so the bytes are copied as-is into every
+ * {@link Http3HeadersFrame} which uses them, without looking up or Huffman encoding the header fields again.
+ */
+public final class Http3PreEncodedHeaders {
+
+    private final Http3Headers headers;
+    private final byte[] fieldLines;
+
+    private Http3PreEncodedHeaders(Http3Headers headers, byte[] fieldLines) {
+        this.headers = headers;
+        this.fieldLines = fieldLines;
+    }
+
+    /**
+     * Encodes the passed {@link Http3Headers}. Later modifications of {@code headers} are not reflected by the
+     * returned instance.
+     *
+     * @param headers the header fields to encode.
+     * @return the encoded header fields.
+     */
+    public static Http3PreEncodedHeaders encode(Http3Headers headers) {
+        checkNotNull(headers, "headers");
+        final ByteBuf out = Unpooled.buffer();
+        try {
+            new QpackEncoder().encodeFieldLinesWithoutDynamicTable(out, headers);
+            final Http3Headers copy = new DefaultHttp3Headers(false);
+            copy.add(headers);
+            return new Http3PreEncodedHeaders(copy, ByteBufUtil.getBytes(out));
+        } finally {
+            out.release();
+        }
+    }
+
+    /**
+     * Returns a copy of the {@link Http3Headers} that were encoded.
+     *
+     * @return the encoded header fields.
+     */
+    public Http3Headers headers() {
+        final Http3Headers copy = new DefaultHttp3Headers(false);
+        copy.add(headers);
+        return copy;
+    }
+
+    /**
+     * Returns the value of the passed pseudo-header or {@code null} if it was not encoded.
+     */
+    @Nullable
+    CharSequence pseudoHeader(Http3Headers.PseudoHeaderName name) {
+        return headers.get(name.value());
+    }
+
+    /**
+     * Returns the number of bytes of the encoded field lines.
+     *
+     * @return the number of bytes.
+     */
+    public int encodedLength() {
+        return fieldLines.length;
+    }
+
+    /**
+     * Writes the encoded field lines, without any field section prefix, to the passed {@link ByteBuf}.
+     */
+    void writeFieldLines(ByteBuf out) {
+        out.writeBytes(fieldLines);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return headers.equals(((Http3PreEncodedHeaders) o).headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return headers.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(headers=" + headers + ", encodedLength=" + encodedLength() + ')';
+    }
+}
@@ -119,6 +119,7 @@ final class Http3RequestStreamEncodeStateValidator extends ChannelOutboundHandle
     }
 
     private static boolean isInformationalResponse(Http3HeadersFrame headersFrame) {
-        return HttpStatusClass.valueOf(headersFrame.headers().status()) == HttpStatusClass.INFORMATIONAL;
+        CharSequence status = DefaultHttp3HeadersFrame.pseudoHeader(headersFrame, Http3Headers.PseudoHeaderName.STATUS);
+        return HttpStatusClass.valueOf(status) == HttpStatusClass.INFORMATIONAL;
     }
 }
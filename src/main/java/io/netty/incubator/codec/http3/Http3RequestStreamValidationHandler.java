@@ -77,7 +77,8 @@ final class Http3RequestStreamValidationHandler extends Http3FrameTypeDuplexVali
                 return;
             }
             if (frame instanceof Http3HeadersFrame) {
-                clientHeadRequest = HEAD.asciiName().equals(((Http3HeadersFrame) frame).headers().method());
+                clientHeadRequest = HEAD.asciiName().equals(DefaultHttp3HeadersFrame.pseudoHeader(
+                        (Http3HeadersFrame) frame, Http3Headers.PseudoHeaderName.METHOD));
             }
         }
         ctx.write(frame, promise);
@@ -179,7 +179,17 @@ public final class HttpConversionUtil {
      */
     static FullHttpResponse toFullHttpResponse(long streamId, Http3Headers http3Headers, ByteBufAllocator alloc,
                                                       boolean validateHttpHeaders) throws Http3Exception {
-        ByteBuf content = alloc.buffer();
+        return toFullHttpResponse(streamId, http3Headers, alloc.buffer(), validateHttpHeaders);
+    }
+
+    /**
+     * Create a new object to contain the response data, see
+     * {@link #toFullHttpResponse(long, Http3Headers, ByteBufAllocator, boolean)}.
+     *
+     * @param content the content of the response.
+     */
+    static FullHttpResponse toFullHttpResponse(long streamId, Http3Headers http3Headers, ByteBuf content,
+                                               boolean validateHttpHeaders) throws Http3Exception {
         HttpResponseStatus status = parseStatus(streamId, http3Headers.status());
         // HTTP/3 does not define a way to carry the version or reason phrase that is included in an
         // HTTP/1.1 status line.
@@ -224,7 +234,17 @@ public final class HttpConversionUtil {
      */
     static FullHttpRequest toFullHttpRequest(long streamId, Http3Headers http3Headers, ByteBufAllocator alloc,
                                                     boolean validateHttpHeaders) throws Http3Exception {
-        ByteBuf content = alloc.buffer();
+        return toFullHttpRequest(streamId, http3Headers, alloc.buffer(), validateHttpHeaders);
+    }
+
+    /**
+     * Create a new object to contain the request data, see
+     * {@link #toFullHttpRequest(long, Http3Headers, ByteBufAllocator, boolean)}.
+     *
+     * @param content the content of the request.
+     */
+    static FullHttpRequest toFullHttpRequest(long streamId, Http3Headers http3Headers, ByteBuf content,
+                                             boolean validateHttpHeaders) throws Http3Exception {
         // HTTP/3 does not define a way to carry the version identifier that is included in the HTTP/1.1 request line.
         final CharSequence method = checkNotNull(http3Headers.method(),
                 "method header cannot be null in conversion to HTTP/1.x");
@@ -18,23 +18,26 @@ package io.netty.incubator.codec.http3;
 import io.netty.buffer.ByteBuf;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
 import io.netty.util.AsciiString;
-import io.netty.util.collection.IntObjectHashMap;
 import io.netty.util.internal.logging.InternalLogger;
 import io.netty.util.internal.logging.InternalLoggerFactory;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static io.netty.incubator.codec.http3.Http3CodecUtils.closeOnFailure;
 import static io.netty.incubator.codec.http3.QpackDecoderStateSyncStrategy.ackEachInsert;
 import static io.netty.incubator.codec.http3.QpackUtil.decodePrefixedIntegerAsInt;
 import static io.netty.incubator.codec.http3.QpackUtil.encodePrefixedInteger;
 import static io.netty.incubator.codec.http3.QpackUtil.firstByteEquals;
+import static io.netty.incubator.codec.http3.QpackUtil.getPrefixedInteger;
+import static io.netty.incubator.codec.http3.QpackUtil.prefixedIntegerEndIndex;
 import static io.netty.incubator.codec.http3.QpackUtil.toIntOrThrow;
 import static java.lang.Math.floorDiv;
 
-final class QpackDecoder {
+final class QpackDecoder implements QpackDecoderMetrics {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(QpackDecoder.class);
     private static final QpackException DYNAMIC_TABLE_CAPACITY_EXCEEDS_MAX =
             QpackException.newStatic(QpackDecoder.class, "setDynamicTableCapacity(...)",
@@ -56,22 +59,33 @@ final class QpackDecoder {
 
     private static final QpackException UNKNOWN_TYPE =
             QpackException.newStatic(QpackDecoder.class, "decode(...)", "QPACK - unknown type");
+    private static final QpackException INVALID_LITERAL_LENGTH =
+            QpackException.newStatic(QpackDecoder.class, "stringLiteralEndIndex(...)",
+                    "QPACK - invalid string literal length");
+    private static final QpackException TRUNCATED_FIELD_SECTION =
+            QpackException.newStatic(QpackDecoder.class, "decodeIncrementally(...)",
+                    "QPACK - truncated field section");
 
     private final QpackHuffmanDecoder huffmanDecoder;
+    private final QpackDecoderLiteralCache literalCache = new QpackDecoderLiteralCache();
     private final QpackDecoderDynamicTable dynamicTable;
-    private final long maxTableCapacity;
+    private long maxTableCapacity;
     private final int maxBlockedStreams;
     private final QpackDecoderStateSyncStrategy stateSyncStrategy;
-    /**
-     * Hashmap with key as the required insert count to unblock the stream and the value a {@link List} of
-     * {@link Runnable} to invoke when the stream can be unblocked.
-     */
-    private final IntObjectHashMap<List<Runnable>> blockedStreams;
+    private final QpackDecoderBlockedStreams blockedStreams;
+    private final Consumer<Runnable> resumeBlockedStream = this::resume;
 
-    private final long maxEntries;
-    private final long fullRange;
-    private int blockedStreamsCount;
+    private long maxEntries;
+    private long fullRange;
     private long lastAckInsertCount;
+    /**
+     * Decoder instructions that are buffered till the end of the current read cycle if
+     * {@link QpackDecoderStateSyncStrategy#writeOncePerReadCycle()} returns {@code true}.
+     */
+    private ByteBuf pendingInstructions;
+    private boolean insertCountIncrementPending;
+    private boolean resumptionFailed;
+    private long blockedStreamsTimedOut;
 
     QpackDecoder(long maxTableCapacity, int maxBlockedStreams) {
         this(maxTableCapacity, maxBlockedStreams, new QpackDecoderDynamicTable(), ackEachInsert());
@@ -83,7 +97,7 @@ final class QpackDecoder {
         this.maxTableCapacity = maxTableCapacity;
         this.maxBlockedStreams = maxBlockedStreams;
         this.stateSyncStrategy = stateSyncStrategy;
-        blockedStreams = new IntObjectHashMap<>(Math.min(16, maxBlockedStreams));
+        blockedStreams = new QpackDecoderBlockedStreams(maxBlockedStreams);
         this.dynamicTable = dynamicTable;
         maxEntries = QpackUtil.maxEntries(maxTableCapacity);
         try {
@@ -93,6 +107,20 @@ final class QpackDecoder {
         }
     }
 
+    /**
+     * Lowers the maximum capacity of the dynamic table, which is only allowed before it is advertised to the remote
+     * peer using {@link Http3SettingsFrame#HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY}.
+     *
+     * @param maxTableCapacity the new maximum capacity, which must not be greater than the current one.
+     */
+    void lowerMaxTableCapacity(long maxTableCapacity) {
+        assert maxTableCapacity <= this.maxTableCapacity;
+        assert dynamicTable.insertCount() == 0;
+        this.maxTableCapacity = maxTableCapacity;
+        maxEntries = QpackUtil.maxEntries(maxTableCapacity);
+        fullRange = 2 * maxEntries;
+    }
+
     /**
      * Decode the header block and add these to the {@link BiConsumer}. This method assumes the entire header block is
      * contained in {@code in}. However, this method may not be able to decode the header block if the QPACK dynamic
@@ -112,44 +140,132 @@ final class QpackDecoder {
     public boolean decode(QpackAttributes qpackAttributes, long streamId, ByteBuf in,
                           int length, BiConsumer<CharSequence, CharSequence> sink, Runnable whenDecoded)
             throws QpackException {
-        final int initialReaderIdx = in.readerIndex();
-        final int requiredInsertCount = decodeRequiredInsertCount(qpackAttributes, in);
-        if (shouldWaitForDynamicTableUpdates(requiredInsertCount)) {
-            blockedStreamsCount++;
-            blockedStreams.computeIfAbsent(requiredInsertCount, __ -> new ArrayList<>(2)).add(whenDecoded);
-            in.readerIndex(initialReaderIdx);
-            return false;
+        if (in.readableBytes() < length) {
+            throw TRUNCATED_FIELD_SECTION;
         }
+        final int read = decodeIncrementally(qpackAttributes, streamId, in, length, new FieldSectionState(), sink,
+                whenDecoded);
+        assert read == -1 || read == length;
+        return read == length;
+    }
 
-        in = in.readSlice(length - (in.readerIndex() - initialReaderIdx));
-        final int base = decodeBase(in, requiredInsertCount);
+    /**
+     * Decode all field lines of a header block that are completely readable from {@code in} and add these to the
+     * {@link BiConsumer}. This allows to decode a header block as its bytes arrive, without buffering the whole
+     * header block. Field lines that are only partially readable are not consumed and must be passed again on the next
+     * invocation, along with the following bytes of the header block.
+     * <p>
+     * If the QPACK dynamic table does not contain all entries required to decode the header block, this method will
+     * return {@code -1} without consuming any bytes and would invoke {@code whenUnblocked} when the stream is
+     * unblocked. See <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-blocked-streams">blocked streams</a>.
+     *
+     * @param qpackAttributes {@link QpackAttributes} for the channel.
+     * @param streamId for the stream on which this header block was received.
+     * @param in {@link ByteBuf} containing the next bytes of the header block.
+     * @param length Number of bytes of the header block that are not yet decoded, which may be more than readable
+     * from {@code in}.
+     * @param state {@link FieldSectionState} that must be the same for all invocations for a header block.
+     * @param sink {@link BiConsumer} to which decoded header fields are added.
+     * @param whenUnblocked {@link Runnable} to invoke when a blocked stream is unblocked.
+     * @return Number of bytes consumed from {@code in}, the header block is completely decoded once this is equal to
+     * {@code length}. {@code -1} if the stream is blocked.
+     */
+    int decodeIncrementally(QpackAttributes qpackAttributes, long streamId, ByteBuf in, int length,
+                            FieldSectionState state, BiConsumer<CharSequence, CharSequence> sink,
+                            Runnable whenUnblocked) throws QpackException {
+        final int initialReaderIdx = in.readerIndex();
+        final boolean lastBytes = in.readableBytes() >= length;
+        final int endIdx = initialReaderIdx + (lastBytes ? length : in.readableBytes());
+        if (state.requiredInsertCount < 0) {
+            // https://www.rfc-editor.org/rfc/rfc9204.html#name-encoded-field-section-prefi
+            //   0   1   2   3   4   5   6   7
+            // +---+---+---+---+---+---+---+---+
+            // |   Required Insert Count (8+)  |
+            // +---+---------------------------+
+            // | S |      Delta Base (7+)      |
+            // +---+---------------------------+
+            final int deltaBaseIdx = prefixedIntegerEndIndex(in, initialReaderIdx, endIdx, 8);
+            if (deltaBaseIdx < 0 || prefixedIntegerEndIndex(in, deltaBaseIdx, endIdx, 7) < 0) {
+                if (lastBytes) {
+                    throw TRUNCATED_FIELD_SECTION;
+                }
+                return 0;
+            }
+            final int requiredInsertCount = decodeRequiredInsertCount(qpackAttributes, in);
+            if (shouldWaitForDynamicTableUpdates(requiredInsertCount)) {
+                blockedStreams.add(streamId, requiredInsertCount, whenUnblocked);
+                in.readerIndex(initialReaderIdx);
+                return -1;
+            }
+            state.base = decodeBase(in, requiredInsertCount);
+            state.requiredInsertCount = requiredInsertCount;
+        }
 
-        while (in.isReadable()) {
-            byte b = in.getByte(in.readerIndex());
+        final int base = state.base;
+        state.endIdx = endIdx;
+        while (in.readerIndex() < endIdx) {
+            final int readerIdx = in.readerIndex();
+            if (fieldLineEndIndex(in, readerIdx, endIdx) < 0) {
+                if (lastBytes) {
+                    throw TRUNCATED_FIELD_SECTION;
+                }
+                break;
+            }
+            byte b = in.getByte(readerIdx);
             if (isIndexed(b)) {
                 decodeIndexed(in, sink, base);
             } else if (isIndexedWithPostBase(b)) {
                 decodeIndexedWithPostBase(in, sink, base);
             } else if (isLiteralWithNameRef(b)) {
-                decodeLiteralWithNameRef(in, sink, base);
+                decodeLiteralWithNameRef(in, sink, base, state);
             } else if (isLiteralWithPostBaseNameRef(b)) {
-                decodeLiteralWithPostBaseNameRef(in, sink, base);
-            } else if (isLiteral(b)) {
-                decodeLiteral(in, sink);
+                decodeLiteralWithPostBaseNameRef(in, sink, base, state);
             } else {
-                throw UNKNOWN_TYPE;
+                assert isLiteral(b);
+                decodeLiteral(in, sink, state);
             }
         }
+        // Deferred and raw values keep a reference to the copy or slice, there is no need to retain these in the state.
+        state.encodedBlock = null;
+        state.rawBlock = null;
+        final int read = in.readerIndex() - initialReaderIdx;
+        if (read < length) {
+            return read;
+        }
+        final int requiredInsertCount = state.requiredInsertCount;
         if (requiredInsertCount > 0) {
             assert !qpackAttributes.dynamicTableDisabled();
             assert qpackAttributes.decoderStreamAvailable();
 
             stateSyncStrategy.sectionAcknowledged(requiredInsertCount);
-            final ByteBuf sectionAck = qpackAttributes.decoderStream().alloc().buffer(8);
-            encodePrefixedInteger(sectionAck, (byte) 0b1000_0000, 7, streamId);
-            closeOnFailure(qpackAttributes.decoderStream().writeAndFlush(sectionAck));
+            if (stateSyncStrategy.writeOncePerReadCycle() && lastAckInsertCount < requiredInsertCount) {
+                // A section acknowledgment implicitly acknowledges all inserts up to the required insert count, so
+                // a merged increment written after it must only cover the remaining inserts.
+                // https://www.rfc-editor.org/rfc/rfc9204.html#name-known-received-count
+                lastAckInsertCount = requiredInsertCount;
+            }
+            // https://www.rfc-editor.org/rfc/rfc9204.html#name-section-acknowledgment
+            //   0   1   2   3   4   5   6   7
+            // +---+---+---+---+---+---+---+---+
+            // | 1 |      Stream ID (7+)       |
+            // +---+---------------------------+
+            writeInstruction(qpackAttributes.decoderStream(), (byte) 0b1000_0000, 7, streamId);
         }
-        return true;
+        return read;
+    }
+
+    /**
+     * Writes all decoder instructions that were buffered during the current read cycle. This is a no-op unless
+     * {@link QpackDecoderStateSyncStrategy#writeOncePerReadCycle()} returns {@code true}.
+     *
+     * @param qpackAttributes {@link QpackAttributes} for the channel.
+     */
+    void writePendingInstructions(QpackAttributes qpackAttributes) {
+        if (pendingInstructions == null && !insertCountIncrementPending) {
+            return;
+        }
+        assert qpackAttributes.decoderStreamAvailable();
+        writePendingInstructions(qpackAttributes.decoderStream());
     }
 
     /**
@@ -230,6 +346,7 @@ final class QpackDecoder {
      * @param streamId which is abandoned.
      */
     void streamAbandoned(QuicStreamChannel qpackDecoderStream, long streamId) {
+        blockedStreams.remove(streamId);
         if (maxTableCapacity == 0) {
             return;
         }
@@ -238,9 +355,34 @@ final class QpackDecoder {
         // +---+---+---+---+---+---+---+---+
         // | 0 | 1 |     Stream ID (6+)    |
         // +---+---+-----------------------+
-        final ByteBuf cancel = qpackDecoderStream.alloc().buffer(8);
-        encodePrefixedInteger(cancel, (byte) 0b0100_0000, 6, streamId);
-        closeOnFailure(qpackDecoderStream.writeAndFlush(cancel));
+        writeInstruction(qpackDecoderStream, (byte) 0b0100_0000, 6, streamId);
+        // Stream abandonment may happen outside of a read cycle, so write all buffered instructions now. This also
+        // makes sure a buffered section acknowledgment is never sent after the cancellation of the same stream.
+        writePendingInstructions(qpackDecoderStream);
+    }
+
+    /**
+     * Callback when a blocked stream was blocked for longer than the configured timeout and is reset.
+     *
+     * @param streamId of the blocked stream.
+     * @return {@code true} if the stream was still blocked and is not resumed anymore.
+     */
+    boolean blockedStreamTimedOut(long streamId) {
+        if (!blockedStreams.remove(streamId)) {
+            return false;
+        }
+        blockedStreamsTimedOut++;
+        return true;
+    }
+
+    @Override
+    public int blockedStreams() {
+        return blockedStreams.size();
+    }
+
+    @Override
+    public long blockedStreamsTimedOut() {
+        return blockedStreamsTimedOut;
     }
 
     private static boolean isIndexed(byte b) {
@@ -288,6 +430,48 @@ final class QpackDecoder {
         return (b & 0b1111_0000) == 0b0000_0000;
     }
 
+    /**
+     * Returns the index following the field line that starts at {@code index} or {@code -1} if the field line does not
+     * end before {@code endIndex}.
+     */
+    private static int fieldLineEndIndex(ByteBuf in, int index, int endIndex) throws QpackException {
+        final byte b = in.getByte(index);
+        if (isIndexed(b)) {
+            return prefixedIntegerEndIndex(in, index, endIndex, 6);
+        }
+        if (isIndexedWithPostBase(b)) {
+            return prefixedIntegerEndIndex(in, index, endIndex, 4);
+        }
+        final int valueIdx;
+        if (isLiteralWithNameRef(b)) {
+            valueIdx = prefixedIntegerEndIndex(in, index, endIndex, 4);
+        } else if (isLiteralWithPostBaseNameRef(b)) {
+            valueIdx = prefixedIntegerEndIndex(in, index, endIndex, 3);
+        } else if (isLiteral(b)) {
+            valueIdx = stringLiteralEndIndex(in, index, endIndex, 3);
+        } else {
+            throw UNKNOWN_TYPE;
+        }
+        return valueIdx < 0 ? -1 : stringLiteralEndIndex(in, valueIdx, endIndex, 7);
+    }
+
+    /**
+     * Returns the index following the length prefixed string literal that starts at {@code index} or {@code -1} if
+     * the string literal does not end before {@code endIndex}.
+     */
+    private static int stringLiteralEndIndex(ByteBuf in, int index, int endIndex, int prefix)
+            throws QpackException {
+        final int stringIdx = prefixedIntegerEndIndex(in, index, endIndex, prefix);
+        if (stringIdx < 0) {
+            return -1;
+        }
+        final long length = getPrefixedInteger(in, index, prefix);
+        if (length < 0) {
+            throw INVALID_LITERAL_LENGTH;
+        }
+        return length > endIndex - stringIdx ? -1 : stringIdx + (int) length;
+    }
+
     private void decodeIndexed(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink, int base)
             throws QpackException {
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-indexed-field-line
@@ -326,8 +510,8 @@ final class QpackDecoder {
         sink.accept(field.name, field.value);
     }
 
-    private void decodeLiteralWithNameRef(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink, int base)
-            throws QpackException {
+    private void decodeLiteralWithNameRef(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink, int base,
+                                          FieldSectionState state) throws QpackException {
         final CharSequence name;
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-literal-field-line-with-nam
         //    0   1   2   3   4   5   6   7
@@ -352,12 +536,12 @@ final class QpackDecoder {
             assert idx >= 0;
             name = dynamicTable.getEntryRelativeEncodedField(base - idx - 1).name;
         }
-        final CharSequence value = decodeHuffmanEncodedLiteral(in, 7);
+        final CharSequence value = decodeLiteralValue(in, name, state);
         sink.accept(name, value);
     }
 
-    private void decodeLiteralWithPostBaseNameRef(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink, int base)
-            throws QpackException {
+    private void decodeLiteralWithPostBaseNameRef(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink, int base,
+                                                  FieldSectionState state) throws QpackException {
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-literal-field-line-with-nam
         //   0   1   2   3   4   5   6   7
         // +---+---+---+---+---+---+---+---+
@@ -370,11 +554,12 @@ final class QpackDecoder {
         final int idx = decodePrefixedIntegerAsInt(in, 3);
         assert idx >= 0;
         CharSequence name = dynamicTable.getEntryRelativeEncodedField(base + idx).name;
-        final CharSequence value = decodeHuffmanEncodedLiteral(in, 7);
+        final CharSequence value = decodeLiteralValue(in, name, state);
         sink.accept(name, value);
     }
 
-    private void decodeLiteral(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink) throws QpackException {
+    private void decodeLiteral(ByteBuf in, BiConsumer<CharSequence, CharSequence> sink, FieldSectionState state)
+            throws QpackException {
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-literal-field-line-with-lit
         //   0   1   2   3   4   5   6   7
         // +---+---+---+---+---+---+---+---+
@@ -387,15 +572,75 @@ final class QpackDecoder {
         // |  Value String (Length bytes)  |
         // +-------------------------------+
         final CharSequence name = decodeHuffmanEncodedLiteral(in, 3);
-        final CharSequence value = decodeHuffmanEncodedLiteral(in, 7);
+        final CharSequence value = decodeLiteralValue(in, name, state);
         sink.accept(name, value);
     }
 
+    private CharSequence decodeLiteralValue(ByteBuf in, CharSequence name, FieldSectionState state)
+            throws QpackException {
+        final boolean huffmanEncoded = firstByteEquals(in, (byte) 0b1000_0000);
+        if (!(huffmanEncoded ? state.deferHuffmanDecoding : state.retainRawValues) ||
+                Http3HeadersSink.isValidationRelevant(name)) {
+            return decodeHuffmanEncodedLiteral(in, 7);
+        }
+        final int lengthIdx = in.readerIndex();
+        final int length = decodePrefixedIntegerAsInt(in, 7);
+        assert length >= 0;
+        if (!huffmanEncoded) {
+            if (length <= QpackDecoderLiteralCache.MAX_LITERAL_LENGTH) {
+                // Copying short values is cheap and these may be interned.
+                in.readerIndex(lengthIdx);
+                return decodeHuffmanEncodedLiteral(in, 7);
+            }
+            if (state.rawBlock == null) {
+                // Retain the remaining bytes once, so all raw values of this invocation can share the slice.
+                state.rawBlockStartIdx = in.readerIndex();
+                state.rawBlock = in.retainedSlice(state.rawBlockStartIdx, state.endIdx - state.rawBlockStartIdx);
+                if (state.rawBlocks == null) {
+                    state.rawBlocks = new ArrayList<>(1);
+                }
+                state.rawBlocks.add(state.rawBlock);
+            }
+            final CharSequence value = new QpackRawHeaderValue(state.rawBlock,
+                    in.readerIndex() - state.rawBlockStartIdx, length);
+            in.skipBytes(length);
+            return value;
+        }
+        if (state.encodedBlock == null) {
+            // Copy the remaining bytes once, so all deferred values of this invocation can share the copy.
+            state.encodedBlockStartIdx = in.readerIndex();
+            state.encodedBlock = new byte[state.endIdx - state.encodedBlockStartIdx];
+            in.getBytes(state.encodedBlockStartIdx, state.encodedBlock);
+        }
+        final int offset = in.readerIndex() - state.encodedBlockStartIdx;
+        // Validate now, so an invalid encoding fails the field section instead of the later access of the value.
+        final int decodedLength = QpackHuffmanDecoder.decodedLength(state.encodedBlock, offset, length);
+        final CharSequence value = new QpackDeferredHuffmanValue(state.encodedBlock, offset, length, decodedLength);
+        in.skipBytes(length);
+        return value;
+    }
+
     private CharSequence decodeHuffmanEncodedLiteral(ByteBuf in, int prefix) throws QpackException {
         assert prefix < 8;
         final boolean huffmanEncoded = firstByteEquals(in, (byte) (1 << prefix));
         final int length = decodePrefixedIntegerAsInt(in, prefix);
         assert length >= 0;
+        if (length > QpackDecoderLiteralCache.MAX_LITERAL_LENGTH) {
+            return decodeStringLiteral(in, length, huffmanEncoded);
+        }
+        final int hash = QpackDecoderLiteralCache.hash(in, length, huffmanEncoded);
+        final AsciiString cached = literalCache.get(in, length, huffmanEncoded, hash);
+        if (cached != null) {
+            in.skipBytes(length);
+            return cached;
+        }
+        final int startIdx = in.readerIndex();
+        final AsciiString literal = decodeStringLiteral(in, length, huffmanEncoded);
+        literalCache.put(in, startIdx, length, huffmanEncoded, hash, literal);
+        return literal;
+    }
+
+    private AsciiString decodeStringLiteral(ByteBuf in, int length, boolean huffmanEncoded) throws QpackException {
         if (huffmanEncoded) {
             return huffmanDecoder.decode(in, length);
         }
@@ -476,7 +721,7 @@ final class QpackDecoder {
 
     private boolean shouldWaitForDynamicTableUpdates(int requiredInsertCount) throws QpackException {
         if (requiredInsertCount > dynamicTable.insertCount()) {
-            if (blockedStreamsCount == maxBlockedStreams - 1) {
+            if (blockedStreams.size() >= maxBlockedStreams) {
                 throw MAX_BLOCKED_STREAMS_EXCEEDED;
             }
             return true;
@@ -486,22 +731,18 @@ final class QpackDecoder {
 
     private void sendInsertCountIncrementIfRequired(QuicStreamChannel qpackDecoderStream) throws QpackException {
         final int insertCount = dynamicTable.insertCount();
-        final List<Runnable> runnables = this.blockedStreams.get(insertCount);
-        if (runnables != null) {
-            boolean failed = false;
-            for (Runnable runnable : runnables) {
-                try {
-                    runnable.run();
-                } catch (Exception e) {
-                    failed = true;
-                    logger.error("Failed to resume a blocked stream {}.", runnable, e);
-                }
-            }
-            if (failed) {
-                throw BLOCKED_STREAM_RESUMPTION_FAILED;
-            }
+        // Resume all streams whose Required Insert Count is now reached.
+        resumptionFailed = false;
+        blockedStreams.unblock(insertCount, resumeBlockedStream);
+        if (resumptionFailed) {
+            throw BLOCKED_STREAM_RESUMPTION_FAILED;
         }
         if (stateSyncStrategy.entryAdded(insertCount)) {
+            if (stateSyncStrategy.writeOncePerReadCycle()) {
+                // Merged with other increments in this read cycle, see writePendingInstructions(...)
+                insertCountIncrementPending = true;
+                return;
+            }
             // https://www.rfc-editor.org/rfc/rfc9204.html#name-insert-count-increment
             //   0   1   2   3   4   5   6   7
             // +---+---+---+---+---+---+---+---+
@@ -513,4 +754,122 @@ final class QpackDecoder {
             closeOnFailure(qpackDecoderStream.writeAndFlush(incr));
         }
     }
+
+    private void resume(Runnable whenUnblocked) {
+        try {
+            whenUnblocked.run();
+        } catch (Exception e) {
+            resumptionFailed = true;
+            logger.error("Failed to resume a blocked stream {}.", whenUnblocked, e);
+        }
+    }
+
+    private void writeInstruction(QuicStreamChannel qpackDecoderStream, byte mask, int prefix, long value) {
+        if (stateSyncStrategy.writeOncePerReadCycle()) {
+            if (pendingInstructions == null) {
+                pendingInstructions = qpackDecoderStream.alloc().buffer();
+            }
+            encodePrefixedInteger(pendingInstructions, mask, prefix, value);
+            return;
+        }
+        final ByteBuf instruction = qpackDecoderStream.alloc().buffer(8);
+        encodePrefixedInteger(instruction, mask, prefix, value);
+        closeOnFailure(qpackDecoderStream.writeAndFlush(instruction));
+    }
+
+    private void writePendingInstructions(QuicStreamChannel qpackDecoderStream) {
+        ByteBuf instructions = pendingInstructions;
+        pendingInstructions = null;
+        if (insertCountIncrementPending) {
+            insertCountIncrementPending = false;
+            final int insertCount = dynamicTable.insertCount();
+            // Section acknowledgments are written before the increment, so any insert they acknowledged implicitly
+            // is already accounted for in lastAckInsertCount.
+            if (insertCount > lastAckInsertCount) {
+                if (instructions == null) {
+                    instructions = qpackDecoderStream.alloc().buffer(8);
+                }
+                // https://www.rfc-editor.org/rfc/rfc9204.html#name-insert-count-increment
+                encodePrefixedInteger(instructions, (byte) 0b0, 6, insertCount - lastAckInsertCount);
+                lastAckInsertCount = insertCount;
+            }
+        }
+        if (instructions != null) {
+            closeOnFailure(qpackDecoderStream.writeAndFlush(instructions));
+        }
+    }
+
+    /**
+     * State of a header block that is decoded by
+     * {@link #decodeIncrementally(QpackAttributes, long, ByteBuf, int, FieldSectionState, BiConsumer, Runnable)}.
+     */
+    static final class FieldSectionState {
+        /**
+         * If Huffman encoded values are decoded on first access, see {@link QpackDeferredHuffmanValue}.
+         */
+        private final boolean deferHuffmanDecoding;
+        /**
+         * Required insert count of the header block or {@code -1} if the encoded field section prefix was not yet
+         * decoded.
+         */
+        private int requiredInsertCount = -1;
+        private int base;
+        private int endIdx;
+        /**
+         * Copy of the bytes, starting at {@link #encodedBlockStartIdx}, that are decoded by the current invocation or
+         * {@code null} if no value was deferred yet.
+         */
+        private byte[] encodedBlock;
+        private int encodedBlockStartIdx;
+        /**
+         * If values that are not Huffman encoded share the received bytes, see {@link QpackRawHeaderValue}.
+         */
+        private final boolean retainRawValues;
+        /**
+         * Retained slice of the bytes, starting at {@link #rawBlockStartIdx}, that are decoded by the current
+         * invocation or {@code null} if no raw value was decoded yet.
+         */
+        private ByteBuf rawBlock;
+        private int rawBlockStartIdx;
+        /**
+         * All slices that were retained for raw values of this field section or {@code null} if none.
+         */
+        private List<ByteBuf> rawBlocks;
+
+        FieldSectionState() {
+            this(false);
+        }
+
+        FieldSectionState(boolean deferHuffmanDecoding) {
+            this(deferHuffmanDecoding, false);
+        }
+
+        FieldSectionState(boolean deferHuffmanDecoding, boolean retainRawValues) {
+            this.deferHuffmanDecoding = deferHuffmanDecoding;
+            this.retainRawValues = retainRawValues;
+        }
+
+        /**
+         * Returns the slices that were retained for raw values, which must be released by the caller, or {@code null}
+         * if no value shares the received bytes.
+         */
+        @Nullable
+        List<ByteBuf> takeRawBlocks() {
+            final List<ByteBuf> rawBlocks = this.rawBlocks;
+            this.rawBlocks = null;
+            return rawBlocks;
+        }
+
+        /**
+         * Releases the slices that were retained for raw values, if these were not taken.
+         */
+        void releaseRawBlocks() {
+            if (rawBlocks != null) {
+                for (ByteBuf rawBlock : rawBlocks) {
+                    rawBlock.release();
+                }
+                rawBlocks = null;
+            }
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.internal.DefaultPriorityQueue;
+import io.netty.util.internal.PriorityQueueNode;
+
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * The <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-blocked-streams">blocked streams</a> of a
+ * {@link QpackDecoder}, ordered by the Required Insert Count that unblocks them.
+ * <p>
+ * Streams are kept in a min-heap, so all streams that are unblocked by an insertion are resumed in
+ * {@code O(k log n)}, independent of by how much the insert count advanced. Streams are also indexed by stream ID, so
+ * a blocked stream that is abandoned is removed in {@code O(log n)}.
+ */
+final class QpackDecoderBlockedStreams {
+    private static final Comparator<BlockedStream> COMPARATOR =
+            (s1, s2) -> Integer.compare(s1.requiredInsertCount, s2.requiredInsertCount);
+
+    private final DefaultPriorityQueue<BlockedStream> queue;
+    private final LongObjectHashMap<BlockedStream> streams;
+
+    QpackDecoderBlockedStreams(int maxBlockedStreams) {
+        final int initialSize = Math.min(16, maxBlockedStreams);
+        queue = new DefaultPriorityQueue<>(COMPARATOR, initialSize);
+        streams = new LongObjectHashMap<>(Math.max(initialSize, 1));
+    }
+
+    /**
+     * Returns the number of blocked streams.
+     */
+    int size() {
+        return queue.size();
+    }
+
+    /**
+     * Adds a blocked stream.
+     *
+     * @param streamId of the blocked stream.
+     * @param requiredInsertCount that unblocks the stream.
+     * @param whenUnblocked {@link Runnable} to invoke once the stream is unblocked.
+     */
+    void add(long streamId, int requiredInsertCount, Runnable whenUnblocked) {
+        final BlockedStream stream = new BlockedStream(streamId, requiredInsertCount, whenUnblocked);
+        final BlockedStream previous = streams.put(streamId, stream);
+        if (previous != null) {
+            queue.removeTyped(previous);
+        }
+        queue.offer(stream);
+    }
+
+    /**
+     * Removes the passed stream, if blocked.
+     *
+     * @param streamId of the stream to remove.
+     * @return {@code true} if the stream was blocked.
+     */
+    boolean remove(long streamId) {
+        final BlockedStream stream = streams.remove(streamId);
+        return stream != null && queue.removeTyped(stream);
+    }
+
+    /**
+     * Removes all streams that are unblocked by the passed insert count, in order of their Required Insert Count, and
+     * passes these to the {@link Consumer}.
+     *
+     * @param insertCount the current insert count of the dynamic table.
+     * @param unblocked {@link Consumer} which is passed the {@link Runnable} of each unblocked stream.
+     */
+    void unblock(int insertCount, Consumer<Runnable> unblocked) {
+        for (;;) {
+            final BlockedStream stream = queue.peek();
+            if (stream == null || stream.requiredInsertCount > insertCount) {
+                return;
+            }
+            queue.poll();
+            streams.remove(stream.streamId);
+            unblocked.accept(stream.whenUnblocked);
+        }
+    }
+
+    private static final class BlockedStream implements PriorityQueueNode {
+        private final long streamId;
+        private final int requiredInsertCount;
+        private final Runnable whenUnblocked;
+        private int queueIndex = INDEX_NOT_IN_QUEUE;
+
+        BlockedStream(long streamId, int requiredInsertCount, Runnable whenUnblocked) {
+            this.streamId = streamId;
+            this.requiredInsertCount = requiredInsertCount;
+            this.whenUnblocked = whenUnblocked;
+        }
+
+        @Override
+        public int priorityQueueIndex(DefaultPriorityQueue<?> queue) {
+            return queueIndex;
+        }
+
+        @Override
+        public void priorityQueueIndex(DefaultPriorityQueue<?> queue, int i) {
+            queueIndex = i;
+        }
+
+        @Override
+        public String toString() {
+            return "BlockedStream(streamId=" + streamId + ", requiredInsertCount=" + requiredInsertCount + ')';
+        }
+    }
+}
@@ -16,14 +16,31 @@
 
 package io.netty.incubator.codec.http3;
 
-import java.util.Arrays;
+import io.netty.util.AsciiString;
 
-import static io.netty.incubator.codec.http3.QpackHeaderField.ENTRY_OVERHEAD;
 import static io.netty.incubator.codec.http3.QpackUtil.MAX_HEADER_TABLE_SIZE;
 import static io.netty.incubator.codec.http3.QpackUtil.MIN_HEADER_TABLE_SIZE;
-import static io.netty.incubator.codec.http3.QpackUtil.toIntOrThrow;
-import static java.lang.Math.floorDiv;
 
+/**
+ * The dynamic table of a {@link QpackDecoder}.
+ * <p>
+ * The bytes of the names and values of all entries are appended to shared byte arrays (chunks) and entries are
+ * kept in a circular queue, indexed by absolute index. Chunks and the queue are allocated on demand, so memory is
+ * proportional to the actual use of the table rather than to its capacity.
+ * <p>
+ * The {@link QpackHeaderField} of an entry is created once when the entry is inserted and its name and value are
+ * {@link AsciiString}s that share the bytes of a chunk. Hence looking up an entry does not allocate and hash codes
+ * of names and values are only computed once. Bytes of a chunk are never overwritten, so these stay valid after the
+ * entry was evicted. A chunk can be garbage collected once it is neither used for appending nor referenced by any
+ * entry or returned {@link AsciiString}.
+ * <p>
+ * The flip side of not copying is that an application which retains a decoded header value also retains the whole
+ * chunk that holds it. Copying values out of the table whenever they are emitted would allow to reuse the chunks as a
+ * ring, but costs an allocation and a copy for every field line that references the table. Instead, retention is
+ * bounded by keeping chunks small: they never exceed {@link #MAX_CHUNK_SIZE} bytes, and entries larger than
+ * {@link #MAX_SHARED_ENTRY_LENGTH} bytes get an array of their own, so a retained value pins at most
+ * {@link #MAX_CHUNK_SIZE} bytes besides its own. The price is an allocation every few KiB of inserted entries.
+ */
 final class QpackDecoderDynamicTable {
     private static final QpackException GET_ENTRY_ILLEGAL_INDEX_VALUE =
             QpackException.newStatic(QpackDecoderDynamicTable.class, "getEntry(...)",
@@ -31,140 +48,170 @@ final class QpackDecoderDynamicTable {
     private static final QpackException HEADER_TOO_LARGE =
             QpackException.newStatic(QpackDecoderDynamicTable.class, "add(...)", "QPACK - header entry too large.");
 
-    // a circular queue of header fields
+    private static final int INITIAL_ENTRIES = 8; // must be a power of 2
+    private static final int MIN_CHUNK_SIZE = 256;
+    private static final int MAX_CHUNK_SIZE = 4 * 1024;
+    private static final int MAX_SHARED_ENTRY_LENGTH = MAX_CHUNK_SIZE / 4;
+
+    // a circular queue of entries indexed by absolute index, its length is always a power of 2
     private QpackHeaderField[] fields;
-    private int head;
-    private int tail;
-    private long size;
-    private long capacity = -1; // ensure setCapacity creates the array
+
+    // the chunk to which the bytes of new entries are appended
+    private byte[] chunk;
+    private int chunkPosition;
+
+    // absolute index of the oldest entry
+    private int evictedCount;
     private int insertCount;
+    private long size;
+    private long capacity;
 
     int length() {
-        return head < tail ? fields.length - tail + head : head - tail;
+        return insertCount - evictedCount;
     }
 
     long size() {
         return size;
     }
 
+    long capacity() {
+        return capacity;
+    }
+
     int insertCount() {
         return insertCount;
     }
 
     QpackHeaderField getEntry(int index) throws QpackException {
-        if (index < 0 || fields == null || index >= fields.length) {
-            throw GET_ENTRY_ILLEGAL_INDEX_VALUE;
-        }
-        QpackHeaderField entry = fields[index];
-        if (entry == null) {
+        // https://www.rfc-editor.org/rfc/rfc9204.html#name-absolute-indexing
+        if (index < evictedCount || index >= insertCount) {
             throw GET_ENTRY_ILLEGAL_INDEX_VALUE;
         }
-        return entry;
+        return fields[index & fields.length - 1];
     }
 
     QpackHeaderField getEntryRelativeEncodedField(int index) throws QpackException {
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-relative-indexing
-        return getEntry(moduloIndex(index));
+        // The index is already converted to an absolute index using the base of the field section.
+        return getEntry(index);
     }
 
     QpackHeaderField getEntryRelativeEncoderInstructions(int index) throws QpackException {
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-relative-indexing
         // Name index is the relative index, relative to the last added entry.
-        return getEntry(index > tail ? fields.length - index + tail : tail - index);
+        if (index < 0) {
+            throw GET_ENTRY_ILLEGAL_INDEX_VALUE;
+        }
+        return getEntry(insertCount - 1 - index);
     }
 
     void add(QpackHeaderField header) throws QpackException {
-        long headerSize = header.size();
+        add(header.name, header.value);
+    }
+
+    void add(CharSequence name, CharSequence value) throws QpackException {
+        long headerSize = QpackHeaderField.sizeOf(name, value);
         if (headerSize > capacity) {
             throw HEADER_TOO_LARGE;
         }
         while (capacity - size < headerSize) {
             remove();
         }
+        final int nameLength = name.length();
+        final int valueLength = value.length();
+        if (length() == fields.length) {
+            growEntries();
+        }
+        final int length = nameLength + valueLength;
+        final byte[] bytes;
+        final int offset;
+        if (length > MAX_SHARED_ENTRY_LENGTH) {
+            // Neither pin a chunk by a large entry nor waste the rest of the current chunk.
+            bytes = new byte[length];
+            offset = 0;
+        } else {
+            offset = allocate(length);
+            bytes = chunk;
+        }
+        copy(name, bytes, offset);
+        copy(value, bytes, offset + nameLength);
+
+        fields[insertCount & fields.length - 1] = new QpackHeaderField(
+                new AsciiString(bytes, offset, nameLength, false),
+                new AsciiString(bytes, offset + nameLength, valueLength, false));
         insertCount++;
-        fields[getAndIncrementHead()] = header;
         size += headerSize;
     }
 
     private void remove() {
-        QpackHeaderField removed = fields[tail];
-        if (removed == null) {
+        if (length() == 0) {
             return;
         }
-        size -= removed.size();
-        fields[getAndIncrementTail()] = null;
+        final int slot = evictedCount & fields.length - 1;
+        size -= fields[slot].size();
+        fields[slot] = null;
+        evictedCount++;
     }
 
     void clear() {
-        if (fields != null) {
-            Arrays.fill(fields, null);
+        while (length() > 0) {
+            remove();
         }
-        head = 0;
-        tail = 0;
         size = 0;
+        chunk = null;
+        chunkPosition = 0;
     }
 
     void setCapacity(long capacity) throws QpackException {
         if (capacity < MIN_HEADER_TABLE_SIZE || capacity > MAX_HEADER_TABLE_SIZE) {
             throw new IllegalArgumentException("capacity is invalid: " + capacity);
         }
-        // initially capacity will be -1 so init won't return here
-        if (this.capacity == capacity) {
-            return;
-        }
         this.capacity = capacity;
 
         if (capacity == 0) {
             clear();
+            fields = null;
         } else {
-            // initially size will be 0 so remove won't be called
             while (size > capacity) {
                 remove();
             }
-        }
-
-        int maxEntries = toIntOrThrow(2 * floorDiv(capacity, ENTRY_OVERHEAD));
-
-        // check if capacity change requires us to reallocate the array
-        if (fields != null && fields.length == maxEntries) {
-            return;
-        }
-
-        QpackHeaderField[] tmp = new QpackHeaderField[maxEntries];
-
-        // initially length will be 0 so there will be no copy
-        int len = length();
-        if (fields != null && tail != head) {
-            if (head > tail) {
-                System.arraycopy(fields, tail, tmp, 0, head - tail);
-            } else {
-                System.arraycopy(fields, 0, tmp, 0, head);
-                System.arraycopy(fields, tail, tmp, head, fields.length - tail);
+            if (fields == null) {
+                fields = new QpackHeaderField[INITIAL_ENTRIES];
             }
         }
-
-        tail = 0;
-        head = tail + len;
-        fields = tmp;
     }
 
-    private int getAndIncrementHead() {
-        int val = this.head;
-        this.head = safeIncrementIndex(val);
-        return val;
-    }
-
-    private int getAndIncrementTail() {
-        int val = this.tail;
-        this.tail = safeIncrementIndex(val);
-        return val;
+    private void growEntries() {
+        final int newLength = fields.length << 1;
+        final QpackHeaderField[] newFields = new QpackHeaderField[newLength];
+        for (int i = evictedCount; i != insertCount; i++) {
+            newFields[i & newLength - 1] = fields[i & fields.length - 1];
+        }
+        fields = newFields;
     }
 
-    private int safeIncrementIndex(int index) {
-        return ++index % fields.length;
+    private int allocate(int length) {
+        if (chunk == null || chunk.length - chunkPosition < length) {
+            // Grow chunks with the use of the table, but never beyond the capacity.
+            int chunkSize = chunk == null ? MIN_CHUNK_SIZE : Math.min(chunk.length << 1, MAX_CHUNK_SIZE);
+            chunkSize = (int) Math.min(chunkSize, capacity);
+            chunk = new byte[Math.max(chunkSize, length)];
+            chunkPosition = 0;
+        }
+        final int offset = chunkPosition;
+        chunkPosition += length;
+        return offset;
     }
 
-    private int moduloIndex(int index) {
-        return fields == null ? index : index % fields.length;
+    // This method can only be used if the passed CharSequence is ISO-8859-1 encoded.
+    private static void copy(CharSequence src, byte[] dst, int offset) {
+        if (src instanceof AsciiString) {
+            final AsciiString ascii = (AsciiString) src;
+            System.arraycopy(ascii.array(), ascii.arrayOffset(), dst, offset, ascii.length());
+        } else {
+            for (int i = 0; i < src.length(); i++) {
+                dst[offset + i] = AsciiString.c2b(src.charAt(i));
+            }
+        }
     }
 }
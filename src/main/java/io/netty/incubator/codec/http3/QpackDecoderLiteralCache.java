@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AsciiString;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded cache of the string literals decoded by a {@link QpackDecoder}, keyed by their encoded bytes. Repeated
+ * literals, like custom header names or common values, are then returned as the same {@link AsciiString} instance,
+ * which avoids decoding and allocating them again and shares their cached hash code.
+ * <p>
+ * The cache is direct-mapped by the hash of the encoded bytes, so lookups and insertions are {@code O(1)}. A literal
+ * is only cached once it was seen twice in a row for its slot, so literals that are unique per field section (like
+ * request IDs) do not replace literals that repeat.
+ * <p>
+ * This class is not thread-safe, it is used by a single connection.
+ */
+final class QpackDecoderLiteralCache {
+    static final int MAX_LITERAL_LENGTH = 64;
+    private static final int SLOTS = 128; // must be a power of 2
+
+    private final byte[][] keys = new byte[SLOTS][];
+    private final boolean[] huffmanEncoded = new boolean[SLOTS];
+    private final AsciiString[] literals = new AsciiString[SLOTS];
+    private final int[] candidateHashes = new int[SLOTS];
+
+    /**
+     * Returns the hash of {@code length} encoded bytes, starting at the {@link ByteBuf#readerIndex()} of {@code in}.
+     */
+    static int hash(ByteBuf in, int length, boolean huffmanEncoded) {
+        assert length <= MAX_LITERAL_LENGTH;
+        int hash = huffmanEncoded ? 1 : 0;
+        final int startIdx = in.readerIndex();
+        for (int i = startIdx; i < startIdx + length; i++) {
+            hash = 31 * hash + in.getByte(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the cached literal for the {@code length} encoded bytes, starting at the {@link ByteBuf#readerIndex()}
+     * of {@code in}, or {@code null} if the literal is not cached. The reader index is not changed.
+     */
+    @Nullable
+    AsciiString get(ByteBuf in, int length, boolean huffmanEncoded, int hash) {
+        final int slot = slot(hash);
+        final byte[] key = keys[slot];
+        if (key == null || key.length != length || this.huffmanEncoded[slot] != huffmanEncoded) {
+            return null;
+        }
+        final int startIdx = in.readerIndex();
+        for (int i = 0; i < length; i++) {
+            if (key[i] != in.getByte(startIdx + i)) {
+                return null;
+            }
+        }
+        return literals[slot];
+    }
+
+    /**
+     * Caches the {@code literal} decoded from the {@code length} encoded bytes starting at {@code index} of
+     * {@code in}, if the same hash was seen before for its slot.
+     */
+    void put(ByteBuf in, int index, int length, boolean huffmanEncoded, int hash, AsciiString literal) {
+        final int slot = slot(hash);
+        if (candidateHashes[slot] != hash) {
+            candidateHashes[slot] = hash;
+            return;
+        }
+        final byte[] key = new byte[length];
+        in.getBytes(index, key);
+        keys[slot] = key;
+        this.huffmanEncoded[slot] = huffmanEncoded;
+        literals[slot] = literal;
+    }
+
+    private static int slot(int hash) {
+        return (hash ^ hash >>> 16) & SLOTS - 1;
+    }
+}
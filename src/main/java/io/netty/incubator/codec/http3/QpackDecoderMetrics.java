@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+/**
+ * Metrics of the QPACK decoder of a connection.
+ * <p>
+ * A request stream is <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-blocked-streams">blocked</a> while
+ * its field section references dynamic table entries that were not received yet. If a timeout for blocked streams is
+ * configured, streams that stay blocked for longer are reset.
+ * <p>
+ * The values are updated from the {@link io.netty.channel.EventLoop} of the connection, so values read from other
+ * threads may be stale.
+ */
+public interface QpackDecoderMetrics {
+
+    /**
+     * Returns the number of streams that are currently blocked.
+     *
+     * @return the number of blocked streams.
+     */
+    int blockedStreams();
+
+    /**
+     * Returns the number of blocked streams that were reset, because they were blocked for longer than the configured
+     * timeout.
+     *
+     * @return the number of timed out blocked streams.
+     */
+    long blockedStreamsTimedOut();
+}
@@ -42,6 +42,18 @@ public interface QpackDecoderStateSyncStrategy {
      */
     boolean entryAdded(int insertCount);
 
+    /**
+     * Returns {@code true} if instructions for the QPACK decoder stream should be buffered and written once the
+     * current read cycle completes, instead of being written and flushed as soon as they are generated.
+     * Consecutive <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-insert-count-increment">insert count
+     * increments</a> generated during the same read cycle are merged into a single instruction.
+     *
+     * @return {@code true} if decoder instructions should be written once per read cycle.
+     */
+    default boolean writeOncePerReadCycle() {
+        return false;
+    }
+
     /**
      * Returns a {@link QpackDecoderStateSyncStrategy} that will acknowledge each entry added via
      * {@link #entryAdded(int)} unless a prior {@link #sectionAcknowledged(int)} call has implicitly acknowledged the
@@ -72,4 +84,31 @@ public interface QpackDecoderStateSyncStrategy {
             }
         };
     }
+
+    /**
+     * Returns a {@link QpackDecoderStateSyncStrategy} that acknowledges entries in the same way as
+     * {@link #ackEachInsert()} but buffers all decoder instructions and writes them once per read cycle, see
+     * {@link #writeOncePerReadCycle()}.
+     *
+     * @return A {@link QpackDecoderStateSyncStrategy} that writes all decoder instructions once per read cycle.
+     */
+    static QpackDecoderStateSyncStrategy ackOncePerReadCycle() {
+        final QpackDecoderStateSyncStrategy ackEachInsert = ackEachInsert();
+        return new QpackDecoderStateSyncStrategy() {
+            @Override
+            public void sectionAcknowledged(int requiredInsertCount) {
+                ackEachInsert.sectionAcknowledged(requiredInsertCount);
+            }
+
+            @Override
+            public boolean entryAdded(int insertCount) {
+                return ackEachInsert.entryAdded(insertCount);
+            }
+
+            @Override
+            public boolean writeOncePerReadCycle() {
+                return true;
+            }
+        };
+    }
 }
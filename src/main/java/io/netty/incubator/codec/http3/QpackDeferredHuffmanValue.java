@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+
+/**
+ * A Huffman encoded header value that is only decoded when it is accessed for the first time.
+ * <p>
+ * The encoded bytes are a range of a copy of the encoded field section, which is shared by all deferred values that
+ * were decoded from it. The encoding is validated when the field section is decoded, see
+ * {@link QpackHuffmanDecoder#decodedLength(byte[], int, int)}, so only the allocation of the decoded value is
+ * deferred and accessing the value never fails.
+ */
+final class QpackDeferredHuffmanValue implements CharSequence {
+    private final byte[] encoded;
+    private final int offset;
+    private final int length;
+    private final int decodedLength;
+    private AsciiString decoded;
+
+    QpackDeferredHuffmanValue(byte[] encoded, int offset, int length, int decodedLength) {
+        this.encoded = encoded;
+        this.offset = offset;
+        this.length = length;
+        this.decodedLength = decodedLength;
+    }
+
+    /**
+     * Returns {@code true} if the value was already decoded.
+     */
+    boolean isDecoded() {
+        return decoded != null;
+    }
+
+    AsciiString decoded() {
+        AsciiString decoded = this.decoded;
+        if (decoded == null) {
+            decoded = QpackHuffmanDecoder.decodeValidated(encoded, offset, length, decodedLength);
+            this.decoded = decoded;
+        }
+        return decoded;
+    }
+
+    @Override
+    public int length() {
+        return decodedLength;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return decoded().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return decoded().subSequence(start, end);
+    }
+
+    @Override
+    public int hashCode() {
+        return decoded().hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof CharSequence && AsciiString.contentEquals(decoded(), (CharSequence) obj);
+    }
+
+    @Override
+    public String toString() {
+        return decoded().toString();
+    }
+}
@@ -16,64 +16,148 @@
 package io.netty.incubator.codec.http3;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.EventLoop;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
-import io.netty.util.ReferenceCountUtil;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
 import io.netty.util.collection.LongObjectHashMap;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.netty.incubator.codec.http3.Http3CodecUtils.closeOnFailure;
 import static io.netty.incubator.codec.http3.QpackHeaderField.sizeOf;
 import static io.netty.incubator.codec.http3.QpackUtil.encodePrefixedInteger;
+import static io.netty.incubator.codec.http3.QpackUtil.prefixedIntegerLength;
 
 /**
  * A QPACK encoder.
  */
-final class QpackEncoder {
+final class QpackEncoder implements QpackEncoderMetrics {
     private static final QpackException INVALID_SECTION_ACKNOWLEDGMENT =
             QpackException.newStatic(QpackDecoder.class, "sectionAcknowledgment(...)",
                     "QPACK - section acknowledgment received for unknown stream.");
+    /**
+     * Maximum number of bytes of an encoded field section prefix, which consists of two prefixed integers. Each of them
+     * is at most {@link QpackUtil#MAX_UNSIGNED_INT} and hence requires at most 6 bytes.
+     */
+    static final int MAX_FIELD_SECTION_PREFIX_LENGTH = 2 * 6;
+    /**
+     * Default maximum number of inserts that are not yet acknowledged by the remote peer, before the encoder stream is
+     * considered congested.
+     */
+    static final int DEFAULT_MAX_UNACKNOWLEDGED_INSERTS = 32;
     private static final int DYNAMIC_TABLE_ENCODE_NOT_DONE = -1;
     private static final int DYNAMIC_TABLE_ENCODE_NOT_POSSIBLE = -2;
 
     private final QpackHuffmanEncoder huffmanEncoder;
     private final QpackEncoderDynamicTable dynamicTable;
+    private final QpackEncoderAdmissionPolicy admissionPolicy;
+    private final QpackEncoderWarmSet warmSet;
+    private final int maxUnacknowledgedInserts;
+    @Nullable
+    private final QpackMemoryBudget memoryBudget;
+    private final AtomicBoolean capacityAdjustmentScheduled = new AtomicBoolean();
+    private long reservedCapacity;
+    private long maxTableCapacity;
+    /**
+     * Adjusts the capacity of the dynamic table to the fair share of the {@link #memoryBudget}, {@code null} if the
+     * dynamic table does not use the budget.
+     */
+    @Nullable
+    private Runnable budgetCapacityListener;
+    @Nullable
+    private QuicStreamChannel encoderStream;
     private int maxBlockedStreams;
     private int blockedStreams;
     private LongObjectHashMap<Queue<Indices>> streamSectionTrackers;
+    /**
+     * Encoder instructions generated while encoding a single field section. All instructions for a field section are
+     * accumulated here and written to the encoder stream at once.
+     */
+    private ByteBuf pendingInstructions;
+    private long insertions;
+    private long congestedInsertionsSkipped;
+    private long congestedReferencesSkipped;
 
     QpackEncoder() {
-        this(new QpackEncoderDynamicTable());
+        this(QpackOptions.defaults(), new QpackEncoderDynamicTable());
     }
 
-    QpackEncoder(QpackEncoderDynamicTable dynamicTable) {
+    QpackEncoder(QpackOptions options, QpackEncoderDynamicTable dynamicTable) {
         huffmanEncoder = new QpackHuffmanEncoder();
         this.dynamicTable = dynamicTable;
+        admissionPolicy = options.newEncoderAdmissionPolicy();
+        warmSet = options.encoderWarmSet();
+        maxUnacknowledgedInserts = options.encoderMaxUnacknowledgedInserts();
+        memoryBudget = options.memoryBudget();
+    }
+
+    @Override
+    public long insertions() {
+        return insertions;
+    }
+
+    @Override
+    public long congestedInsertionsSkipped() {
+        return congestedInsertionsSkipped;
+    }
+
+    @Override
+    public long congestedReferencesSkipped() {
+        return congestedReferencesSkipped;
+    }
+
+    @Override
+    public int unacknowledgedInsertions() {
+        return dynamicTable.unacknowledgedInsertCount();
     }
 
     /**
      * Encode the header field into the header block.
+     * <p>
+     * The field lines are written at the {@link ByteBuf#writerIndex()} of {@code out} and the encoded field section
+     * prefix is written directly before them, once the Required Insert Count is known. Hence, the caller must reserve
+     * {@link #MAX_FIELD_SECTION_PREFIX_LENGTH} bytes before the {@link ByteBuf#writerIndex()}, which avoids encoding
+     * the field lines into a temporary buffer and copying them.
      *
      * TODO: do we need to support sensitivity detector?
+     *
+     * @return the index in {@code out} at which the encoded field section starts.
      */
-    void encodeHeaders(QpackAttributes qpackAttributes, ByteBuf out, ByteBufAllocator allocator, long streamId,
-                       Http3Headers headers) {
+    int encodeHeaders(QpackAttributes qpackAttributes, ByteBuf out, long streamId, Http3Headers headers) {
+        return encodeHeaders(qpackAttributes, out, streamId, null, headers);
+    }
+
+    /**
+     * Encode the header field into the header block, after the field lines of the passed
+     * {@link Http3PreEncodedHeaders}. See {@link #encodeHeaders(QpackAttributes, ByteBuf, long, Http3Headers)} for
+     * the space that must be reserved in {@code out}.
+     *
+     * @param preEncodedHeaders the field lines to copy before encoding {@code headers} or {@code null}.
+     * @return the index in {@code out} at which the encoded field section starts.
+     */
+    int encodeHeaders(QpackAttributes qpackAttributes, ByteBuf out, long streamId,
+                      @Nullable Http3PreEncodedHeaders preEncodedHeaders, Http3Headers headers) {
+        final int fieldLinesStartIdx = out.writerIndex();
+        assert fieldLinesStartIdx >= MAX_FIELD_SECTION_PREFIX_LENGTH;
         final int base = dynamicTable.insertCount();
-        // Allocate a new buffer as we have to go back and write a variable length base and required insert count
-        // later.
-        ByteBuf tmp = allocator.buffer();
         try {
+            if (preEncodedHeaders != null) {
+                // Pre-encoded field lines only reference the static table, so they are valid for any Base.
+                preEncodedHeaders.writeFieldLines(out);
+            }
             int maxDynamicTblIdx = -1;
             int requiredInsertCount = 0;
             Indices dynamicTableIndices = null;
             for (Map.Entry<CharSequence, CharSequence> header : headers) {
                 CharSequence name = header.getKey();
                 CharSequence value = header.getValue();
-                int dynamicTblIdx = encodeHeader(qpackAttributes, tmp, base, name, value);
+                int dynamicTblIdx = encodeHeader(qpackAttributes, out, base, name, value);
                 if (dynamicTblIdx >= 0) {
                     int req = dynamicTable.addReferenceToEntry(name, value, dynamicTblIdx);
                     if (dynamicTblIdx > maxDynamicTblIdx) {
@@ -101,15 +185,27 @@ final class QpackEncoder {
             // +---+---------------------------+
             // | S |      Delta Base (7+)      |
             // +---+---------------------------+
-            encodePrefixedInteger(out, (byte) 0b0, 8, dynamicTable.encodedRequiredInsertCount(requiredInsertCount));
+            final int encodedRequiredInsertCount = dynamicTable.encodedRequiredInsertCount(requiredInsertCount);
+            final byte signMask;
+            final int deltaBase;
             if (base >= requiredInsertCount) {
-                encodePrefixedInteger(out, (byte) 0b0, 7, base - requiredInsertCount);
+                signMask = 0b0;
+                deltaBase = base - requiredInsertCount;
             } else {
-                encodePrefixedInteger(out, (byte) 0b1000_0000, 7, requiredInsertCount - base - 1);
+                signMask = (byte) 0b1000_0000;
+                deltaBase = requiredInsertCount - base - 1;
             }
-            out.writeBytes(tmp);
+            final int endIdx = out.writerIndex();
+            final int startIdx = fieldLinesStartIdx - prefixedIntegerLength(8, encodedRequiredInsertCount) -
+                    prefixedIntegerLength(7, deltaBase);
+            out.writerIndex(startIdx);
+            encodePrefixedInteger(out, (byte) 0b0, 8, encodedRequiredInsertCount);
+            encodePrefixedInteger(out, signMask, 7, deltaBase);
+            assert out.writerIndex() == fieldLinesStartIdx;
+            out.writerIndex(endIdx);
+            return startIdx;
         } finally {
-            tmp.release();
+            writeEncoderInstructions(qpackAttributes);
         }
     }
 
@@ -118,18 +214,135 @@ final class QpackEncoder {
         if (maxTableCapacity > 0) {
             assert attributes.encoderStreamAvailable();
             final QuicStreamChannel encoderStream = attributes.encoderStream();
-            dynamicTable.maxTableCapacity(maxTableCapacity);
-            final ByteBuf tableCapacity = encoderStream.alloc().buffer(8);
-            // https://www.rfc-editor.org/rfc/rfc9204.html#name-set-dynamic-table-capacity
-            //  0   1   2   3   4   5   6   7
-            // +---+---+---+---+---+---+---+---+
-            // | 0 | 0 | 1 |   Capacity (5+)   |
-            // +---+---+---+-------------------+
-            encodePrefixedInteger(tableCapacity, (byte) 0b0010_0000, 5, maxTableCapacity);
-            closeOnFailure(encoderStream.writeAndFlush(tableCapacity));
+            final long capacity;
+            if (memoryBudget == null) {
+                capacity = maxTableCapacity;
+            } else {
+                // Use less than the maximum capacity permitted by the remote peer if the budget is exhausted.
+                capacity = memoryBudget.reserve(maxTableCapacity);
+                reservedCapacity = capacity;
+            }
+            dynamicTable.maxTableCapacity(maxTableCapacity, capacity);
+            writeDynamicTableCapacity(encoderStream, capacity);
+            if (memoryBudget != null) {
+                final EventLoop eventLoop = encoderStream.eventLoop();
+                this.encoderStream = encoderStream;
+                this.maxTableCapacity = maxTableCapacity;
+                budgetCapacityListener = () -> {
+                    if (eventLoop.inEventLoop()) {
+                        adjustDynamicTableCapacity();
+                    } else if (capacityAdjustmentScheduled.compareAndSet(false, true)) {
+                        // Coalesce notifications, the current fair share is used once the task runs.
+                        eventLoop.execute(() -> {
+                            capacityAdjustmentScheduled.set(false);
+                            adjustDynamicTableCapacity();
+                        });
+                    }
+                };
+                memoryBudget.addCapacityListener(budgetCapacityListener);
+            }
 
             streamSectionTrackers = new LongObjectHashMap<>();
             maxBlockedStreams = blockedStreams;
+            warmDynamicTable(attributes);
+        }
+    }
+
+    /**
+     * Releases the capacity of the dynamic table that was reserved from the {@link QpackMemoryBudget}, once the
+     * connection is closed.
+     */
+    void releaseMemoryBudget() {
+        if (memoryBudget != null) {
+            if (budgetCapacityListener != null) {
+                memoryBudget.removeCapacityListener(budgetCapacityListener);
+                budgetCapacityListener = null;
+                encoderStream = null;
+            }
+            memoryBudget.release(reservedCapacity);
+            reservedCapacity = 0;
+        }
+    }
+
+    /**
+     * Starts shrinking the dynamic table if it is larger than the fair share of the {@link QpackMemoryBudget}, or grows
+     * it up to the fair share if the budget permits.
+     */
+    private void adjustDynamicTableCapacity() {
+        if (budgetCapacityListener == null) {
+            // The memory budget was released already.
+            return;
+        }
+        assert memoryBudget != null && encoderStream != null;
+        final long capacity = Math.min(maxTableCapacity, memoryBudget.fairShare());
+        if (capacity < dynamicTable.targetCapacity()) {
+            dynamicTable.shrinkCapacity(capacity);
+            lowerDynamicTableCapacity();
+        } else if (capacity > dynamicTable.targetCapacity()) {
+            if (capacity > reservedCapacity) {
+                reservedCapacity += memoryBudget.tryReserve(capacity - reservedCapacity);
+            }
+            if (dynamicTable.growCapacity(Math.min(capacity, reservedCapacity))) {
+                writeDynamicTableCapacity(encoderStream, dynamicTable.capacity());
+            }
+        }
+    }
+
+    /**
+     * Lowers the capacity of the dynamic table once the entries that do not fit into the capacity passed to
+     * {@link QpackEncoderDynamicTable#shrinkCapacity(long)} are acknowledged and evicted, and releases the difference
+     * to the {@link QpackMemoryBudget}.
+     */
+    private void lowerDynamicTableCapacity() {
+        if (encoderStream == null || !dynamicTable.applyTargetCapacity()) {
+            return;
+        }
+        assert memoryBudget != null;
+        final long capacity = dynamicTable.capacity();
+        memoryBudget.release(reservedCapacity - capacity);
+        reservedCapacity = capacity;
+        writeDynamicTableCapacity(encoderStream, capacity);
+    }
+
+    private static void writeDynamicTableCapacity(QuicStreamChannel encoderStream, long capacity) {
+        final ByteBuf tableCapacity = encoderStream.alloc().buffer(8);
+        // https://www.rfc-editor.org/rfc/rfc9204.html#name-set-dynamic-table-capacity
+        //  0   1   2   3   4   5   6   7
+        // +---+---+---+---+---+---+---+---+
+        // | 0 | 0 | 1 |   Capacity (5+)   |
+        // +---+---+---+-------------------+
+        encodePrefixedInteger(tableCapacity, (byte) 0b0010_0000, 5, capacity);
+        closeOnFailure(encoderStream.writeAndFlush(tableCapacity));
+    }
+
+    /**
+     * Inserts the header fields of the {@link QpackEncoderWarmSet} into the dynamic table, until a header field does
+     * not fit without evicting previously inserted header fields.
+     *
+     * @param attributes {@link QpackAttributes} for the channel.
+     */
+    private void warmDynamicTable(QpackAttributes attributes) {
+        try {
+            for (Map.Entry<? extends CharSequence, ? extends CharSequence> headerField : warmSet.headerFields()) {
+                final CharSequence name = headerField.getKey();
+                final CharSequence value = headerField.getValue();
+                final int staticIdx = QpackStaticTable.findFieldIndex(name, value);
+                if (staticIdx != QpackStaticTable.NOT_FOUND &&
+                        (staticIdx & QpackStaticTable.MASK_NAME_REF) != QpackStaticTable.MASK_NAME_REF ||
+                        dynamicTable.getEntryIndex(name, value) >= 0) {
+                    continue;
+                }
+                if (!dynamicTable.fitsWithoutEviction(sizeOf(name, value))) {
+                    break;
+                }
+                final boolean staticTableNameRef = staticIdx != QpackStaticTable.NOT_FOUND;
+                if (insert(attributes, staticTableNameRef,
+                        staticTableNameRef ? staticIdx ^ QpackStaticTable.MASK_NAME_REF : -1, name, value) < 0) {
+                    break;
+                }
+            }
+        } finally {
+            writeEncoderInstructions(attributes);
         }
     }
 
@@ -157,6 +370,7 @@ final class QpackEncoder {
         }
 
         dynamicTableIndices.forEach(dynamicTable::acknowledgeInsertCountOnAck);
+        lowerDynamicTableCapacity();
     }
 
     /**
@@ -181,6 +395,7 @@ final class QpackEncoder {
                 }
                 dynamicTableIndices.forEach(dynamicTable::acknowledgeInsertCountOnCancellation);
             }
+            lowerDynamicTableCapacity();
         }
     }
 
@@ -192,6 +407,29 @@ final class QpackEncoder {
      */
     void insertCountIncrement(int increment) throws QpackException {
         dynamicTable.incrementKnownReceivedCount(increment);
+        lowerDynamicTableCapacity();
+    }
+
+    /**
+     * Encode the header fields into field lines that only reference the static table or are literals, so they can be
+     * used with any dynamic table state. No field section prefix is written.
+     *
+     * @param out {@link ByteBuf} to which the field lines are written.
+     * @param headers the header fields to encode.
+     */
+    void encodeFieldLinesWithoutDynamicTable(ByteBuf out, Http3Headers headers) {
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            CharSequence name = header.getKey();
+            CharSequence value = header.getValue();
+            int index = QpackStaticTable.findFieldIndex(name, value);
+            if (index == QpackStaticTable.NOT_FOUND) {
+                encodeLiteral(out, name, value);
+            } else if ((index & QpackStaticTable.MASK_NAME_REF) == QpackStaticTable.MASK_NAME_REF) {
+                encodeLiteralWithNameRefStaticTable(out, index ^ QpackStaticTable.MASK_NAME_REF, value);
+            } else {
+                encodeIndexedStaticTable(out, index);
+            }
+        }
     }
 
     /**
@@ -219,7 +457,11 @@ final class QpackEncoder {
                 return dynamicTblIdx;
             }
             final int nameIdx = index ^ QpackStaticTable.MASK_NAME_REF;
-            dynamicTblIdx = tryAddToDynamicTable(qpackAttributes, true, nameIdx, name, value);
+            if (dynamicTblIdx == DYNAMIC_TABLE_ENCODE_NOT_DONE) {
+                // Only insert with a static table name reference if the dynamic table was not consulted for this
+                // header field yet, the admission policy must only see each header field once.
+                dynamicTblIdx = tryAddToDynamicTable(qpackAttributes, true, nameIdx, name, value);
+            }
             if (dynamicTblIdx >= 0) {
                 if (dynamicTblIdx >= base) {
                     encodePostBaseIndexed(out, base, dynamicTblIdx);
@@ -294,18 +536,28 @@ final class QpackEncoder {
             return DYNAMIC_TABLE_ENCODE_NOT_DONE;
         }
         if (idx >= 0) {
+            if (!dynamicTable.isAcknowledged(idx) && isEncoderStreamCongested(encoderStream)) {
+                // Referencing an entry that the remote peer may not have received yet could block the stream.
+                congestedReferencesSkipped++;
+                return DYNAMIC_TABLE_ENCODE_NOT_POSSIBLE;
+            }
             if (dynamicTable.requiresDuplication(idx, sizeOf(name, value))) {
+                if (isEncoderStreamCongested(encoderStream)) {
+                    // The duplicate would not be acknowledged before the field section referencing it arrives.
+                    congestedInsertionsSkipped++;
+                    return DYNAMIC_TABLE_ENCODE_NOT_POSSIBLE;
+                }
+                // The relative index refers to the entry that is duplicated, so compute it before adding the copy.
+                final int relativeIdx = dynamicTable.relativeIndexForEncoderInstructions(idx);
                 idx = dynamicTable.add(name, value, sizeOf(name, value));
                 assert idx >= 0;
+                insertions++;
                 // https://www.rfc-editor.org/rfc/rfc9204.html#section-4.3.4
                 //  0   1   2   3   4   5   6   7
                 // +---+---+---+---+---+---+---+---+
                 // | 0 | 0 | 0 |    Index (5+)     |
                 // +---+---+---+-------------------+
-                ByteBuf duplicate = encoderStream.alloc().buffer(8);
-                encodePrefixedInteger(duplicate, (byte) 0b0000_0000, 5,
-                        dynamicTable.relativeIndexForEncoderInstructions(idx));
-                closeOnFailure(encoderStream.writeAndFlush(duplicate));
+                encodePrefixedInteger(encoderInstructions(encoderStream, 8), (byte) 0b0000_0000, 5, relativeIdx);
                 if (mayNotBlockStream()) {
                     // Add to the table but do not use the entry in the header block to avoid blocking.
                     return DYNAMIC_TABLE_ENCODE_NOT_POSSIBLE;
@@ -335,7 +587,7 @@ final class QpackEncoder {
     }
 
     /**
-     * Try adding the header field to the dynamic table.
+     * Try adding the header field to the dynamic table, if admitted by the {@link QpackEncoderAdmissionPolicy}.
      *
      * @param qpackAttributes {@link QpackAttributes} for the channel.
      * @param staticTableNameRef if {@code nameIdx} is an index in the static table.
@@ -350,16 +602,50 @@ final class QpackEncoder {
         if (qpackAttributes.dynamicTableDisabled()) {
             return DYNAMIC_TABLE_ENCODE_NOT_POSSIBLE;
         }
+        if (!admissionPolicy.admit(name, value)) {
+            return DYNAMIC_TABLE_ENCODE_NOT_DONE;
+        }
+        assert qpackAttributes.encoderStreamAvailable();
+        if (isEncoderStreamCongested(qpackAttributes.encoderStream())) {
+            congestedInsertionsSkipped++;
+            return DYNAMIC_TABLE_ENCODE_NOT_DONE;
+        }
+        int idx = insert(qpackAttributes, staticTableNameRef, nameIdx, name, value);
+        if (idx >= 0) {
+            if (mayNotBlockStream()) {
+                // Add to the table but do not use the entry in the header block to avoid blocking.
+                return DYNAMIC_TABLE_ENCODE_NOT_DONE;
+            }
+            blockedStreams++;
+        }
+        return idx;
+    }
+
+    /**
+     * Adds the header field to the dynamic table and writes the insert instruction.
+     *
+     * @return Index in the dynamic table if the header field was inserted, {@link #DYNAMIC_TABLE_ENCODE_NOT_DONE}
+     * otherwise.
+     */
+    private int insert(QpackAttributes qpackAttributes, boolean staticTableNameRef, int nameIdx, CharSequence name,
+                       CharSequence value) {
         assert qpackAttributes.encoderStreamAvailable();
         final QuicStreamChannel encoderStream = qpackAttributes.encoderStream();
 
         int idx = dynamicTable.add(name, value, sizeOf(name, value));
         if (idx >= 0) {
-            ByteBuf insert = null;
+            insertions++;
+            final ByteBuf insert;
+            if (nameIdx >= 0) {
+                // 2 prefixed integers (name index and value length) each requires a maximum of 8 bytes
+                insert = encoderInstructions(encoderStream, value.length() + 16);
+            } else {
+                // 2 prefixed integers (name and value length) each requires a maximum of 8 bytes
+                insert = encoderInstructions(encoderStream, name.length() + value.length() + 16);
+            }
+            final int insertStartIdx = insert.writerIndex();
             try {
                 if (nameIdx >= 0) {
-                    // 2 prefixed integers (name index and value length) each requires a maximum of 8 bytes
-                    insert = encoderStream.alloc().buffer(value.length() + 16);
                     // https://www.rfc-editor.org/rfc/rfc9204.html#name-insert-with-name-reference
                     //    0   1   2   3   4   5   6   7
                     // +---+---+---+---+---+---+---+---+
@@ -367,8 +653,6 @@ final class QpackEncoder {
                     // +---+---+-----------------------+
                     encodePrefixedInteger(insert, (byte) (staticTableNameRef ? 0b1100_0000 : 0b1000_0000), 6, nameIdx);
                 } else {
-                    // 2 prefixed integers (name and value length) each requires a maximum of 8 bytes
-                    insert = encoderStream.alloc().buffer(name.length() + value.length() + 16);
                     // https://www.rfc-editor.org/rfc/rfc9204.html#name-insert-with-literal-name
                     //     0   1   2   3   4   5   6   7
                     //   +---+---+---+---+---+---+---+---+
@@ -376,8 +660,7 @@ final class QpackEncoder {
                     //   +---+---+---+-------------------+
                     //   |  Name String (Length bytes)   |
                     //   +---+---------------------------+
-                    // TODO: Force H = 1 till we support sensitivity detector
-                    encodeLengthPrefixedHuffmanEncodedLiteral(insert, (byte) 0b0110_0000, 5, name);
+                    encodeLengthPrefixedLiteral(insert, (byte) 0b0110_0000, 5, name);
                 }
                 //    0   1   2   3   4   5   6   7
                 // +---+---+-----------------------+
@@ -387,15 +670,10 @@ final class QpackEncoder {
                 // +-------------------------------+
                 encodeStringLiteral(insert, value);
             } catch (Exception e) {
-                ReferenceCountUtil.release(insert);
-                return DYNAMIC_TABLE_ENCODE_NOT_DONE;
-            }
-            closeOnFailure(encoderStream.writeAndFlush(insert));
-            if (mayNotBlockStream()) {
-                // Add to the table but do not use the entry in the header block to avoid blocking.
+                // Discard the partially written instruction, other instructions for this field section are retained.
+                insert.writerIndex(insertStartIdx);
                 return DYNAMIC_TABLE_ENCODE_NOT_DONE;
             }
-            blockedStreams++;
         }
         return idx;
     }
@@ -484,8 +762,8 @@ final class QpackEncoder {
         //   +---+---------------------------+
         //   |  Value String (Length bytes)  |
         //   +-------------------------------+
-        // TODO: Force N = 0 & H = 1 till we support sensitivity detector
-        encodeLengthPrefixedHuffmanEncodedLiteral(out, (byte) 0b0010_1000, 3, name);
+        // TODO: Force N = 0 till we support sensitivity detector
+        encodeLengthPrefixedLiteral(out, (byte) 0b0010_1000, 3, name);
         encodeStringLiteral(out, value);
     }
 
@@ -500,17 +778,84 @@ final class QpackEncoder {
         // +---+---------------------------+
         // |  String Data (Length octets)  |
         // +-------------------------------+
-        // TODO: Force H = 1 till we support sensitivity detector
-        encodeLengthPrefixedHuffmanEncodedLiteral(out, (byte) 0b1000_0000, 7, value);
+        encodeLengthPrefixedLiteral(out, (byte) 0b1000_0000, 7, value);
     }
 
     /**
-     * Encode a string literal.
+     * Encode a string literal, Huffman encoded if that is shorter than the raw octets. The passed {@code mask} must
+     * have the H bit, which precedes the length prefix, set.
      */
-    private void encodeLengthPrefixedHuffmanEncodedLiteral(ByteBuf out, byte mask, int prefix, CharSequence value) {
-        int huffmanLength = huffmanEncoder.getEncodedLength(value);
+    private void encodeLengthPrefixedLiteral(ByteBuf out, byte mask, int prefix, CharSequence value) {
+        final int length = value.length();
+        final int reserved = prefixedIntegerLength(prefix, length);
+        final int startIdx = out.writerIndex();
+        out.ensureWritable(reserved + length);
+        // Huffman encode after the space reserved for the length, which is the longest possible length as Huffman
+        // encoding is only used if it is shorter than the raw octets.
+        out.writerIndex(startIdx + reserved);
+        final int huffmanLength = length == 0 ? -1 : huffmanEncoder.encode(out, value, length);
+        out.writerIndex(startIdx);
+        if (huffmanLength < 0) {
+            encodePrefixedInteger(out, (byte) (mask & ~(1 << prefix)), prefix, length);
+            if (value instanceof AsciiString) {
+                final AsciiString string = (AsciiString) value;
+                out.writeBytes(string.array(), string.arrayOffset(), length);
+            } else {
+                out.writeCharSequence(value, CharsetUtil.ISO_8859_1);
+            }
+            return;
+        }
+        final int lengthSize = prefixedIntegerLength(prefix, huffmanLength);
+        if (lengthSize != reserved) {
+            // Move the Huffman encoded octets back, as the length requires less space than reserved.
+            out.setBytes(startIdx + lengthSize, out, startIdx + reserved, huffmanLength);
+        }
         encodePrefixedInteger(out, mask, prefix, huffmanLength);
-        huffmanEncoder.encode(out, value);
+        out.writerIndex(startIdx + lengthSize + huffmanLength);
+    }
+
+    /**
+     * Returns the {@link ByteBuf} to which encoder instructions for the field section that is currently encoded should
+     * be written.
+     *
+     * @param encoderStream the QPACK encoder stream.
+     * @param sizeHint the maximum number of bytes required by the next instruction.
+     * @return the {@link ByteBuf} accumulating encoder instructions.
+     */
+    private ByteBuf encoderInstructions(QuicStreamChannel encoderStream, int sizeHint) {
+        if (pendingInstructions == null) {
+            pendingInstructions = encoderStream.alloc().buffer(sizeHint);
+        } else {
+            pendingInstructions.ensureWritable(sizeHint);
+        }
+        return pendingInstructions;
+    }
+
+    /**
+     * Writes and flushes all encoder instructions accumulated while encoding a field section with a single write.
+     *
+     * @param qpackAttributes {@link QpackAttributes} for the channel.
+     */
+    private void writeEncoderInstructions(QpackAttributes qpackAttributes) {
+        final ByteBuf instructions = pendingInstructions;
+        if (instructions == null) {
+            return;
+        }
+        pendingInstructions = null;
+        if (!instructions.isReadable()) {
+            instructions.release();
+            return;
+        }
+        closeOnFailure(qpackAttributes.encoderStream().writeAndFlush(instructions));
+    }
+
+    /**
+     * Returns {@code true} if the encoder stream is not writable or too many inserts are not yet acknowledged. New
+     * inserts would then likely not reach the remote peer before the field sections referencing them, which blocks
+     * the request streams carrying these field sections.
+     */
+    private boolean isEncoderStreamCongested(QuicStreamChannel encoderStream) {
+        return !encoderStream.isWritable() || dynamicTable.unacknowledgedInsertCount() >= maxUnacknowledgedInserts;
     }
 
     private boolean mayNotBlockStream() {
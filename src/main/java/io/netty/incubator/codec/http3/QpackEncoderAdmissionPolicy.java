@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+/**
+ * A policy that determines if a header field, which is not yet present in the QPACK encoder dynamic table, should be
+ * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-dynamic-table-insertion-str">inserted</a> into the
+ * dynamic table. Header fields that are not admitted are encoded as literals.
+ * <p>
+ * Instances may be stateful and hence must not be shared between connections.
+ */
+@FunctionalInterface
+public interface QpackEncoderAdmissionPolicy {
+
+    /**
+     * Callback when a header field is encoded and the dynamic table contains no entry with the same name and value.
+     *
+     * @param name of the header field.
+     * @param value of the header field.
+     * @return {@code true} if the header field should be inserted into the dynamic table.
+     */
+    boolean admit(CharSequence name, CharSequence value);
+
+    /**
+     * Returns a {@link QpackEncoderAdmissionPolicy} that admits every header field into the dynamic table.
+     *
+     * @return A {@link QpackEncoderAdmissionPolicy} that admits every header field into the dynamic table.
+     */
+    static QpackEncoderAdmissionPolicy admitAll() {
+        return (name, value) -> true;
+    }
+
+    /**
+     * Returns a {@link QpackEncoderAdmissionPolicy} that admits a header field into the dynamic table only once the
+     * same name and value was seen at least {@code minOccurrences} times. Occurrences are estimated with a compact
+     * frequency sketch that periodically ages its counters, so header fields that were frequent in the past but are
+     * no longer used lose their advantage over time.
+     *
+     * @param minOccurrences number of times a header field has to be seen before it is admitted. Must be between
+     * {@code 1} and {@code 15}.
+     * @param neverInsertNames names (case-insensitive) of header fields that are never admitted, irrespective of
+     * their frequency.
+     * @return A {@link QpackEncoderAdmissionPolicy} that admits frequently used header fields.
+     */
+    static QpackEncoderAdmissionPolicy frequencyBased(int minOccurrences, CharSequence... neverInsertNames) {
+        return new QpackFrequencyAdmissionPolicy(minOccurrences, neverInsertNames);
+    }
+}
@@ -18,11 +18,12 @@ package io.netty.incubator.codec.http3;
 import io.netty.util.AsciiString;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
+
 import static io.netty.incubator.codec.http3.QpackHeaderField.ENTRY_OVERHEAD;
 import static io.netty.incubator.codec.http3.QpackUtil.MAX_HEADER_TABLE_SIZE;
 import static io.netty.incubator.codec.http3.QpackUtil.MIN_HEADER_TABLE_SIZE;
 import static io.netty.incubator.codec.http3.QpackUtil.equalsVariableTime;
-import static io.netty.util.AsciiString.EMPTY_STRING;
 import static io.netty.util.internal.MathUtil.findNextPositivePowerOfTwo;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
@@ -47,9 +48,14 @@ final class QpackEncoderDynamicTable {
     public static final int NOT_FOUND = Integer.MIN_VALUE;
 
     /**
-     * A hashmap of header entries.
+     * Marker for an unused slot in {@link #fieldIndex} and {@link #nameIndex}.
      */
-    private final HeaderEntry[] fields;
+    private static final int EMPTY_SLOT = -1;
+
+    /**
+     * Maximum length of the hash indexes, see {@link #ensureIndexCapacity()}.
+     */
+    private static final int MAX_INDEX_LENGTH = 1 << 30;
 
     /**
      * Percentage of capacity that we expect to be free after eviction of old entries.
@@ -57,9 +63,28 @@ final class QpackEncoderDynamicTable {
     private final int expectedFreeCapacityPercentage;
 
     /**
-     * Hash mask for all entries in the hashmap.
+     * A ring buffer of all entries in the table, such that the entry with absolute index {@code i} is stored at
+     * {@code entries[i & (entries.length - 1)]}.
+     */
+    private HeaderEntry[] entries;
+
+    /**
+     * An open addressing hash index using linear probing that maps a name and value to the absolute index of the most
+     * recently inserted entry with that name and value.
+     */
+    private int[] fieldIndex;
+
+    /**
+     * An open addressing hash index using linear probing that maps a name to the absolute index of the most recently
+     * inserted entry with that name.
      */
-    private final byte hashMask;
+    private int[] nameIndex;
+
+    /**
+     * Number of keys stored in {@link #fieldIndex}, which is always greater or equal than the number of keys stored in
+     * {@link #nameIndex}.
+     */
+    private int indexedFields;
 
     /**
      * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-dynamic-table-size">Current size of the table</a>.
@@ -73,6 +98,18 @@ final class QpackEncoderDynamicTable {
      */
     private long maxTableCapacity = -1;
 
+    /**
+     * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-dynamic-table-capacity-and-">Capacity of the
+     * table</a> used by the encoder, which is at most {@link #maxTableCapacity}.
+     */
+    private long capacity = -1;
+
+    /**
+     * Capacity that the table is shrinking to, see {@link #shrinkCapacity(long)}. Entries are only added up to this
+     * capacity, which is equal to {@link #capacity} if the table is not shrinking.
+     */
+    private long targetCapacity = -1;
+
     /*
      * The below indexes follow the suggested heuristics in Section 2.1.1.1 Avoiding Prohibited insertions
      * https://www.rfc-editor.org/rfc/rfc9204.html#name-avoiding-prohibited-inserti
@@ -87,45 +124,45 @@ final class QpackEncoderDynamicTable {
      *                ^                                 ^          ^
      *                |                                 |          |
      *          Insertion Index                 Draining Index  Dropping Index
+     *
+     * All indexes are absolute indexes. An index that is smaller than droppingIndex refers to an entry that is
+     * already evicted.
      */
 
     /**
-     * Head of the entries, such that {@link HeaderEntry#index} is the {@code droppingIndex}.
+     * Absolute index of the next entry that will be added, which is also the number of entries inserted.
      */
-    private final HeaderEntry head;
+    private int insertionIndex;
 
     /**
-     * Pointer before which entries are marked for eviction post {@link #incrementKnownReceivedCount(int)}.
-     * {@link HeaderEntry#index} is the {@code drainingIndex}.
+     * Absolute index of the oldest entry in the table. The table is empty if this is equal to {@link #insertionIndex}.
      */
-    private HeaderEntry drain;
+    private int droppingIndex;
 
-     /**
-     * Pointer to the entry representing the <a
-     * href="https://quicwg.org/base-drafts/draft-ietf-quic-qpack.html#name-known-received-count">
-     * known received count</a>.
+    /**
+     * Absolute index of the newest entry that is marked for eviction post {@link #incrementKnownReceivedCount(int)}.
+     * No entry is marked for eviction if this is smaller than {@link #droppingIndex}.
      */
-    private HeaderEntry knownReceived;
+    private int drainingIndex;
 
     /**
-     * Tail of the entries, such that {@link HeaderEntry#index} is the {@code insertionIndex}.
+     * Absolute index of the entry representing the <a
+     * href="https://quicwg.org/base-drafts/draft-ietf-quic-qpack.html#name-known-received-count">
+     * known received count</a>. If this is smaller than {@link #droppingIndex} then the entry is already evicted.
      */
-    private HeaderEntry tail;
+    private int knownReceivedIndex;
 
     QpackEncoderDynamicTable() {
         this(16, 10);
     }
 
     QpackEncoderDynamicTable(int arraySizeHint, int expectedFreeCapacityPercentage) {
-        // Enforce a bound of [2, 128] because hashMask is a byte. The max possible value of hashMask is one less
-        // than the length of this array, and we want the mask to be > 0.
-        fields = new HeaderEntry[findNextPositivePowerOfTwo(max(2, min(arraySizeHint, 128)))];
-        hashMask = (byte) (fields.length - 1);
-        // Start with index -1 so the first added header will have the index of 0.
-        // See https://www.rfc-editor.org/rfc/rfc9204.html#name-absolute-indexing
-        head = new HeaderEntry(-1, EMPTY_STRING, EMPTY_STRING, -1, null);
+        final int length = findNextPositivePowerOfTwo(max(2, min(arraySizeHint, MAX_INDEX_LENGTH)));
+        entries = new HeaderEntry[length];
+        fieldIndex = newIndex(length << 1);
+        nameIndex = newIndex(length << 1);
         this.expectedFreeCapacityPercentage = expectedFreeCapacityPercentage;
-        resetIndicesToHead();
+        resetIndices();
     }
 
     /**
@@ -137,28 +174,60 @@ final class QpackEncoderDynamicTable {
      * @return              the absolute index or {@code -1) if it could not be added.
      */
     int add(CharSequence name, CharSequence value, long headerSize) {
-        if (maxTableCapacity - size < headerSize) {
+        if (targetCapacity - size < headerSize) {
             return -1;
         }
 
-        if (tail.index == Integer.MAX_VALUE) {
+        if (insertionIndex == Integer.MAX_VALUE) {
             // Wait for all entries to evict before we restart indexing from zero
             evictUnreferencedEntries();
             return -1;
         }
-        int h = AsciiString.hashCode(name);
-        int i = index(h);
-        HeaderEntry old = fields[i];
-        HeaderEntry e = new HeaderEntry(h, name, value, tail.index + 1, old);
-        fields[i] = e;
-        e.addNextTo(tail);
-        tail = e;
+        ensureEntriesCapacity();
+        ensureIndexCapacity();
+
+        final int nameHash = AsciiString.hashCode(name);
+        final HeaderEntry e = new HeaderEntry(nameHash, fieldHash(nameHash, value), name, value, insertionIndex);
+        entries[slot(e.index)] = e;
+        insertionIndex++;
         size += headerSize;
 
+        // The new entry is now the most recent entry for its name and name-value pair.
+        if (putIndex(fieldIndex, e.hash, e, true)) {
+            indexedFields++;
+        }
+        putIndex(nameIndex, e.nameHash, e, false);
+
         ensureFreeCapacity();
         return e.index;
     }
 
+    /**
+     * Returns the number of entries that were inserted but are not yet known to be received by the remote peer.
+     */
+    int unacknowledgedInsertCount() {
+        return insertionIndex - 1 - max(knownReceivedIndex, droppingIndex - 1);
+    }
+
+    /**
+     * Returns {@code true} if the entry at the passed {@code idx} is known to be received by the remote peer, so
+     * referencing it can not block a stream.
+     */
+    boolean isAcknowledged(int idx) {
+        return idx <= knownReceivedIndex;
+    }
+
+    /**
+     * Returns {@code true} if an entry of the passed {@code headerSize} can be added without marking any existing entry
+     * for eviction.
+     *
+     * @param headerSize    the size of the header.
+     * @return              {@code true} if the entry fits without evicting existing entries.
+     */
+    boolean fitsWithoutEviction(long headerSize) {
+        return size + headerSize <= maxDesiredSize();
+    }
+
     /**
      * Callback when a header block which had a {@link #insertCount()}} greater than {@code 0} is
      * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-section-acknowledgment">acknowledged</a>
@@ -184,27 +253,21 @@ final class QpackEncoderDynamicTable {
     }
 
     private void acknowledgeInsertCount(int entryIndex, boolean updateKnownReceived) throws QpackException {
-        if (entryIndex < 0) {
+        if (entryIndex < droppingIndex || entryIndex >= insertionIndex) {
+            // The index does not refer to an entry in the table and hence the connection should be closed.
+            // https://www.rfc-editor.org/rfc/rfc9204.html#section-4.4
             throw INVALID_REQUIRED_INSERT_COUNT_INCREMENT;
         }
-        for (HeaderEntry e = head.next; e != null; e = e.next) {
-            if (e.index == entryIndex) {
-                assert e.refCount > 0;
-                e.refCount--;
-                if (updateKnownReceived && e.index > knownReceived.index) {
-                    // https://www.rfc-editor.org/rfc/rfc9204.html#name-known-received-count
-                    // If the Required Insert Count of the acknowledged field section is greater than the current Known
-                    // Received Count, Known Received Count is updated to that Required Insert Count value.
-                    knownReceived = e;
-                }
-                evictUnreferencedEntries();
-                return;
-            }
+        final HeaderEntry e = entries[slot(entryIndex)];
+        assert e.refCount > 0;
+        e.refCount--;
+        if (updateKnownReceived && entryIndex > knownReceivedIndex) {
+            // https://www.rfc-editor.org/rfc/rfc9204.html#name-known-received-count
+            // If the Required Insert Count of the acknowledged field section is greater than the current Known
+            // Received Count, Known Received Count is updated to that Required Insert Count value.
+            knownReceivedIndex = entryIndex;
         }
-        // We have reached the end of the linked list so the index was invalid and hence the connection should
-        // be closed.
-        // https://www.rfc-editor.org/rfc/rfc9204.html#section-4.4
-        throw INVALID_REQUIRED_INSERT_COUNT_INCREMENT;
+        evictUnreferencedEntries();
     }
 
     /**
@@ -219,18 +282,17 @@ final class QpackEncoderDynamicTable {
         if (knownReceivedCountIncr <= 0) {
             throw INVALID_KNOW_RECEIVED_COUNT_INCREMENT;
         }
-        while (knownReceived.next != null && knownReceivedCountIncr > 0) {
-            knownReceived = knownReceived.next;
-            knownReceivedCountIncr--;
-        }
-        if (knownReceivedCountIncr == 0) {
-            evictUnreferencedEntries();
-            return;
+        // If the known received entry was evicted, the increment is relative to the oldest entry in the table.
+        final int current = max(knownReceivedIndex, droppingIndex - 1);
+        if (knownReceivedCountIncr > insertionIndex - 1 - current) {
+            // The increment goes beyond the last added entry so it is invalid and hence the connection should be
+            // closed.
+            // https://www.rfc-editor.org/rfc/rfc9204.html#name-decoder-instructions
+            knownReceivedIndex = insertionIndex - 1;
+            throw INVALID_KNOW_RECEIVED_COUNT_INCREMENT;
         }
-        // We have reached the end of the linked list so the index was invalid and hence the connection should be
-        // closed.
-        // https://www.rfc-editor.org/rfc/rfc9204.html#name-decoder-instructions
-        throw INVALID_KNOW_RECEIVED_COUNT_INCREMENT;
+        knownReceivedIndex = current + knownReceivedCountIncr;
+        evictUnreferencedEntries();
     }
 
     /**
@@ -239,7 +301,7 @@ final class QpackEncoderDynamicTable {
      * @return number the added entries.
      */
     int insertCount() {
-        return tail.index + 1;
+        return insertionIndex;
     }
 
     /**
@@ -261,7 +323,7 @@ final class QpackEncoderDynamicTable {
     // Visible for tests
     int encodedKnownReceivedCount() {
         // https://www.rfc-editor.org/rfc/rfc9204.html#name-known-received-count
-        return encodedRequiredInsertCount(knownReceived.index + 1);
+        return knownReceivedIndex < droppingIndex ? 0 : encodedRequiredInsertCount(knownReceivedIndex + 1);
     }
 
     /**
@@ -270,11 +332,91 @@ final class QpackEncoderDynamicTable {
      * @throws QpackException   if capacity was set before.
      */
     void maxTableCapacity(long capacity) throws QpackException {
-        validateCapacity(capacity);
+        maxTableCapacity(capacity, capacity);
+    }
+
+    /**
+     * Set the maximum capacity of the dynamic table and the capacity that is actually used. This can only be set once.
+     * @param maxTableCapacity  the maximum capacity, as received from the remote peer.
+     * @param capacity          the capacity used, which must not be greater than {@code maxTableCapacity}.
+     * @throws QpackException   if capacity was set before or is invalid.
+     */
+    void maxTableCapacity(long maxTableCapacity, long capacity) throws QpackException {
+        validateCapacity(maxTableCapacity);
+        if (capacity < 0 || capacity > maxTableCapacity) {
+            throw INVALID_TABLE_CAPACITY;
+        }
         if (this.maxTableCapacity >= 0) {
             throw CAPACITY_ALREADY_SET;
         }
-        this.maxTableCapacity = capacity;
+        this.maxTableCapacity = maxTableCapacity;
+        this.capacity = capacity;
+        targetCapacity = capacity;
+    }
+
+    /**
+     * Returns the <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-dynamic-table-capacity-and-">capacity
+     * of the table</a> as known by the remote peer.
+     */
+    long capacity() {
+        return capacity;
+    }
+
+    /**
+     * Starts shrinking the capacity of the table to the passed {@code capacity}. Entries that do not fit are marked for
+     * eviction and new entries are only added if they fit. The capacity is lowered by {@link #applyTargetCapacity()}
+     * once all these entries are evicted.
+     *
+     * @param capacity the capacity to shrink to, ignored if not smaller than the capacity the table is shrinking to.
+     */
+    void shrinkCapacity(long capacity) {
+        assert capacity >= 0;
+        if (capacity < targetCapacity) {
+            targetCapacity = capacity;
+            drain(capacity);
+        }
+    }
+
+    /**
+     * Returns the capacity that the table is shrinking to, which is equal to {@link #capacity()} if the table is not
+     * shrinking.
+     */
+    long targetCapacity() {
+        return targetCapacity;
+    }
+
+    /**
+     * Raises the capacity of the table to the passed {@code capacity}. If the table is shrinking, it only shrinks to
+     * the passed {@code capacity} from now on.
+     *
+     * @param capacity the capacity to grow to, ignored if not larger than the capacity the table is shrinking to.
+     * @return {@code true} if the capacity was raised, so it must be sent to the remote peer.
+     */
+    boolean growCapacity(long capacity) {
+        assert capacity <= maxTableCapacity;
+        if (capacity <= targetCapacity) {
+            return false;
+        }
+        targetCapacity = capacity;
+        if (capacity <= this.capacity) {
+            return false;
+        }
+        this.capacity = capacity;
+        return true;
+    }
+
+    /**
+     * Lowers the capacity of the table to the capacity passed to {@link #shrinkCapacity(long)}, if the entries that did
+     * not fit are evicted.
+     *
+     * @return {@code true} if the capacity was lowered, so it must be sent to the remote peer.
+     */
+    boolean applyTargetCapacity() {
+        if (targetCapacity == capacity || size > targetCapacity) {
+            return false;
+        }
+        capacity = targetCapacity;
+        return true;
     }
 
     /**
@@ -287,8 +429,8 @@ final class QpackEncoderDynamicTable {
      */
     int relativeIndexForEncoderInstructions(int entryIndex) {
         assert entryIndex >= 0;
-        assert entryIndex <= tail.index;
-        return tail.index - entryIndex;
+        assert entryIndex < insertionIndex;
+        return insertionIndex - 1 - entryIndex;
     }
 
     /**
@@ -301,26 +443,24 @@ final class QpackEncoderDynamicTable {
      * returned.
      */
     int getEntryIndex(@Nullable CharSequence name, @Nullable CharSequence value) {
-        if (tail != head && name != null && value != null) {
-            int h = AsciiString.hashCode(name);
-            int i = index(h);
-            HeaderEntry firstNameMatch = null;
-            HeaderEntry entry = null;
-            for (HeaderEntry e = fields[i]; e != null; e = e.nextSibling) {
-                if (e.hash == h && equalsVariableTime(value, e.value)) {
-                    if (equalsVariableTime(name, e.name)) {
-                        entry = e;
-                        break;
-                    }
-                } else if (firstNameMatch == null && equalsVariableTime(name, e.name)) {
-                    firstNameMatch = e;
+        if (droppingIndex != insertionIndex && name != null && value != null) {
+            final int nameHash = AsciiString.hashCode(name);
+            final int hash = fieldHash(nameHash, value);
+            final int[] fieldIndex = this.fieldIndex;
+            final int mask = fieldIndex.length - 1;
+            for (int i = mix(hash) & mask;; i = (i + 1) & mask) {
+                final int idx = fieldIndex[i];
+                if (idx == EMPTY_SLOT) {
+                    break;
+                }
+                final HeaderEntry e = entries[slot(idx)];
+                if (e.hash == hash && equalsVariableTime(value, e.value) && equalsVariableTime(name, e.name)) {
+                    return idx;
                 }
             }
-            if (entry != null) {
-                return entry.index;
-            }
-            if (firstNameMatch != null) {
-                return -firstNameMatch.index - 1;
+            final int idx = findName(nameHash, name);
+            if (idx != EMPTY_SLOT) {
+                return -idx - 1;
             }
         }
         return NOT_FOUND;
@@ -336,34 +476,26 @@ final class QpackEncoderDynamicTable {
      * insert count</a> if the passed entry has to be referenced in a header block.
      */
     int addReferenceToEntry(@Nullable CharSequence name, @Nullable CharSequence value, int idx) {
-        if (tail != head && name != null && value != null) {
-            int h = AsciiString.hashCode(name);
-            int i = index(h);
-            for (HeaderEntry e = fields[i]; e != null; e = e.nextSibling) {
-                if (e.hash == h && idx == e.index) {
-                    e.refCount++;
-                    return e.index + 1;
-                }
-            }
+        if (name != null && value != null && idx >= droppingIndex && idx < insertionIndex) {
+            entries[slot(idx)].refCount++;
+            return idx + 1;
         }
         throw new IllegalArgumentException("Index " + idx + " not found");
     }
 
     boolean requiresDuplication(int idx, long size) {
-        assert head != tail;
+        assert droppingIndex != insertionIndex;
 
-        if (this.size + size > maxTableCapacity || head == drain) {
+        if (this.size + size > targetCapacity || drainingIndex < droppingIndex) {
             return false;
         }
-        return idx >= head.next.index && idx <= drain.index;
+        return idx >= droppingIndex && idx <= drainingIndex;
     }
 
     private void evictUnreferencedEntries() {
-        if (head == knownReceived || head == drain) {
-            return;
-        }
-
-        while (head.next != null && head.next != knownReceived.next && head.next != drain.next) {
+        // Only entries that are known to be received by the decoder and are draining can be evicted.
+        while (droppingIndex != insertionIndex && droppingIndex <= knownReceivedIndex &&
+                droppingIndex <= drainingIndex) {
             if (!removeIfUnreferenced()) {
                 return;
             }
@@ -371,63 +503,185 @@ final class QpackEncoderDynamicTable {
     }
 
     private boolean removeIfUnreferenced() {
-        final HeaderEntry toRemove = head.next;
+        final int slot = slot(droppingIndex);
+        final HeaderEntry toRemove = entries[slot];
         if (toRemove.refCount != 0) {
             return false;
         }
         size -= toRemove.size();
 
-        // Remove from the hash map
-        final int i = index(toRemove.hash);
-        HeaderEntry e = fields[i];
-        HeaderEntry prev = null;
-        while (e != null && e != toRemove) {
-            prev = e;
-            e = e.nextSibling;
-        }
-        if (e == toRemove) {
-            if (prev == null) {
-                fields[i] = e.nextSibling;
-            } else {
-                prev.nextSibling = e.nextSibling;
-            }
+        // toRemove is the oldest entry in the table, so if it is still indexed there is no other entry with the same
+        // key that would need to take its place.
+        if (removeIndex(fieldIndex, toRemove.hash, toRemove.index)) {
+            indexedFields--;
         }
+        removeIndex(nameIndex, toRemove.nameHash, toRemove.index);
+        entries[slot] = null;
 
-        // Remove from the linked list
-        toRemove.remove(head);
-        if (toRemove == tail) {
-            resetIndicesToHead();
-        }
-        if (toRemove == drain) {
-            drain = head;
-        }
-        if (toRemove == knownReceived) {
-            knownReceived = head;
+        if (++droppingIndex == insertionIndex) {
+            resetIndices();
         }
         return true;
     }
 
-    private void resetIndicesToHead() {
-        tail = head;
-        drain = head;
-        knownReceived = head;
+    private void resetIndices() {
+        // Table is empty, so we can restart indexing from zero.
+        insertionIndex = 0;
+        droppingIndex = 0;
+        drainingIndex = -1;
+        knownReceivedIndex = -1;
+    }
+
+    private long maxDesiredSize() {
+        return max(ENTRY_OVERHEAD, ((100 - expectedFreeCapacityPercentage) * targetCapacity) / 100);
     }
 
     private void ensureFreeCapacity() {
-        long maxDesiredSize = max(ENTRY_OVERHEAD, ((100 - expectedFreeCapacityPercentage) * maxTableCapacity) / 100);
+        drain(maxDesiredSize());
+    }
+
+    /**
+     * Marks the oldest entries for eviction, until the size of the remaining entries is at most {@code maxSize}.
+     */
+    private void drain(long maxSize) {
         long cSize = size;
-        HeaderEntry nDrain;
-        for (nDrain = head; nDrain.next != null && cSize > maxDesiredSize; nDrain = nDrain.next) {
-            cSize -= nDrain.next.size();
+        int nDrain;
+        for (nDrain = droppingIndex - 1; nDrain + 1 < insertionIndex && cSize > maxSize; nDrain++) {
+            cSize -= entries[slot(nDrain + 1)].size();
         }
         if (cSize != size) {
-            drain = nDrain;
+            drainingIndex = nDrain;
             evictUnreferencedEntries();
         }
     }
 
-    private int index(int h) {
-        return h & hashMask;
+    private void ensureEntriesCapacity() {
+        final int length = insertionIndex - droppingIndex;
+        if (length < entries.length) {
+            return;
+        }
+        final HeaderEntry[] newEntries = new HeaderEntry[entries.length << 1];
+        for (int i = droppingIndex; i < insertionIndex; i++) {
+            newEntries[i & (newEntries.length - 1)] = entries[slot(i)];
+        }
+        entries = newEntries;
+    }
+
+    private void ensureIndexCapacity() {
+        // Keep the load factor of the indexes below 0.5, so probe sequences stay short.
+        if ((indexedFields + 1) << 1 <= fieldIndex.length || fieldIndex.length == MAX_INDEX_LENGTH) {
+            return;
+        }
+        final int length = fieldIndex.length << 1;
+        fieldIndex = newIndex(length);
+        nameIndex = newIndex(length);
+        indexedFields = 0;
+        // Re-index from the oldest to the newest, so the newest entry for a key is retained.
+        for (int i = droppingIndex; i < insertionIndex; i++) {
+            final HeaderEntry e = entries[slot(i)];
+            if (putIndex(fieldIndex, e.hash, e, true)) {
+                indexedFields++;
+            }
+            putIndex(nameIndex, e.nameHash, e, false);
+        }
+    }
+
+    private int findName(int nameHash, CharSequence name) {
+        final int[] nameIndex = this.nameIndex;
+        final int mask = nameIndex.length - 1;
+        for (int i = mix(nameHash) & mask;; i = (i + 1) & mask) {
+            final int idx = nameIndex[i];
+            if (idx == EMPTY_SLOT) {
+                return EMPTY_SLOT;
+            }
+            final HeaderEntry e = entries[slot(idx)];
+            if (e.nameHash == nameHash && equalsVariableTime(name, e.name)) {
+                return idx;
+            }
+        }
+    }
+
+    /**
+     * Points the key of the passed {@link HeaderEntry} in the passed index to this entry.
+     *
+     * @return {@code true} if the key was not present in the index before.
+     */
+    private boolean putIndex(int[] index, int hash, HeaderEntry entry, boolean matchValue) {
+        final int mask = index.length - 1;
+        for (int i = mix(hash) & mask;; i = (i + 1) & mask) {
+            final int idx = index[i];
+            if (idx == EMPTY_SLOT) {
+                index[i] = entry.index;
+                return true;
+            }
+            final HeaderEntry e = entries[slot(idx)];
+            if (matchValue) {
+                if (e.hash == hash && equalsVariableTime(entry.value, e.value) &&
+                        equalsVariableTime(entry.name, e.name)) {
+                    index[i] = entry.index;
+                    return false;
+                }
+            } else if (e.nameHash == hash && equalsVariableTime(entry.name, e.name)) {
+                index[i] = entry.index;
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes the passed {@code entryIndex} from the passed index if it is present, using backward shift deletion to
+     * keep probe sequences intact.
+     *
+     * @return {@code true} if the {@code entryIndex} was removed.
+     */
+    private boolean removeIndex(int[] index, int hash, int entryIndex) {
+        final int mask = index.length - 1;
+        int i = mix(hash) & mask;
+        for (;; i = (i + 1) & mask) {
+            final int idx = index[i];
+            if (idx == EMPTY_SLOT) {
+                return false;
+            }
+            if (idx == entryIndex) {
+                break;
+            }
+        }
+        final boolean nameIndex = index == this.nameIndex;
+        for (int j = (i + 1) & mask;; j = (j + 1) & mask) {
+            final int idx = index[j];
+            if (idx == EMPTY_SLOT) {
+                break;
+            }
+            final HeaderEntry e = entries[slot(idx)];
+            final int home = mix(nameIndex ? e.nameHash : e.hash) & mask;
+            // Move the entry at j to the free slot at i if i lies cyclically between its home slot and j.
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                index[i] = idx;
+                i = j;
+            }
+        }
+        index[i] = EMPTY_SLOT;
+        return true;
+    }
+
+    private int slot(int index) {
+        return index & (entries.length - 1);
+    }
+
+    private static int[] newIndex(int length) {
+        final int[] index = new int[length];
+        Arrays.fill(index, EMPTY_SLOT);
+        return index;
+    }
+
+    private static int fieldHash(int nameHash, CharSequence value) {
+        return 31 * nameHash + AsciiString.hashCode(value);
+    }
+
+    private static int mix(int hash) {
+        // Spread the bits as AsciiString.hashCode(...) is not well distributed in the lower bits.
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
     }
 
     private static void validateCapacity(long capacity) throws QpackException {
@@ -437,19 +691,9 @@ final class QpackEncoderDynamicTable {
     }
 
     /**
-     * An entry for the {@link #fields} HashMap. This entry provides insertion order iteration using {@link #next}.
+     * An entry in the {@link #entries} ring buffer.
      */
     private static final class HeaderEntry extends QpackHeaderField {
-        /**
-         * Pointer to the next entry in insertion order with a different {@link #hash} than this entry.
-         */
-        HeaderEntry next;
-
-        /**
-         * Pointer to the next entry in insertion order with the same {@link #hash} as this entry, a.k.a hash collisions
-         */
-        HeaderEntry nextSibling;
-
         /**
          * Number of header blocks that refer to this entry as the value for its <a
          * href="https://www.rfc-editor.org/rfc/rfc9204.html#name-required-insert-count">
@@ -458,7 +702,12 @@ final class QpackEncoderDynamicTable {
         int refCount;
 
         /**
-         * Hashcode for this entry.
+         * Hashcode for the name of this entry.
+         */
+        final int nameHash;
+
+        /**
+         * Hashcode for the name and value of this entry.
          */
         final int hash;
 
@@ -467,24 +716,11 @@ final class QpackEncoderDynamicTable {
          */
         final int index;
 
-        HeaderEntry(int hash, CharSequence name, CharSequence value, int index, @Nullable HeaderEntry nextSibling) {
+        HeaderEntry(int nameHash, int hash, CharSequence name, CharSequence value, int index) {
             super(name, value);
             this.index = index;
+            this.nameHash = nameHash;
             this.hash = hash;
-            this.nextSibling = nextSibling;
-        }
-
-        void remove(HeaderEntry prev) {
-            assert prev != this;
-            prev.next = next;
-            next = null; // null references to prevent nepotism in generational GC.
-            nextSibling = null;
-        }
-
-        void addNextTo(HeaderEntry prev) {
-            assert prev != this;
-            this.next = prev.next;
-            prev.next = this;
         }
     }
 }
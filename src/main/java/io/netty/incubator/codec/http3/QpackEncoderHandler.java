@@ -31,12 +31,39 @@ import static io.netty.incubator.codec.http3.QpackUtil.MAX_UNSIGNED_INT;
 import static io.netty.incubator.codec.http3.QpackUtil.decodePrefixedIntegerAsInt;
 import static io.netty.util.internal.ObjectUtil.checkInRange;
 
+/**
+ * Decodes the instructions received on the QPACK encoder stream.
+ * <p>
+ * Instructions may be split across any number of reads, so the position within the current instruction (the
+ * instruction type, already decoded integers and string literals) is kept between invocations of
+ * {@link #decode(ChannelHandlerContext, ByteBuf, List)}. Incomplete prefixed integers are left in the cumulation and
+ * string literals are only decoded once all of their bytes have been received, hence no byte is decoded twice.
+ */
 final class QpackEncoderHandler extends ByteToMessageDecoder {
 
+    // Waiting for the first byte of the next instruction.
+    private static final int STATE_INSTRUCTION = 0;
+    // Waiting for the name string of an Insert With Literal Name.
+    private static final int STATE_NAME = 1;
+    // Waiting for the value length of an Insert With Name Reference or Insert With Literal Name.
+    private static final int STATE_VALUE_LENGTH = 2;
+    // Waiting for the value string of an Insert With Name Reference or Insert With Literal Name.
+    private static final int STATE_VALUE = 3;
+
     private final QpackHuffmanDecoder huffmanDecoder;
     private final QpackDecoder qpackDecoder;
     private boolean discard;
 
+    private int state = STATE_INSTRUCTION;
+    // true for an Insert With Literal Name, false for an Insert With Name Reference.
+    private boolean literalName;
+    private boolean isStaticTableIndex;
+    private int nameIdx;
+    @Nullable
+    private CharSequence name;
+    private boolean literalHuffEncoded;
+    private int literalLength;
+
     QpackEncoderHandler(@Nullable Long maxTableCapacity, QpackDecoder qpackDecoder) {
         checkInRange(maxTableCapacity == null ? 0 : maxTableCapacity, 0, MAX_UNSIGNED_INT, "maxTableCapacity");
         huffmanDecoder = new QpackHuffmanDecoder();
@@ -45,14 +72,65 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> __) throws Exception {
-        if (!in.isReadable()) {
-            return;
+        // Consume as many instructions as are available.
+        while (!discard) {
+            if (!decodeNext(ctx, in)) {
+                break;
+            }
         }
         if (discard) {
             in.skipBytes(in.readableBytes());
-            return;
         }
+    }
 
+    /**
+     * Advances the parser by one step.
+     *
+     * @return {@code true} if the parser made progress, {@code false} if more bytes are needed.
+     */
+    private boolean decodeNext(ChannelHandlerContext ctx, ByteBuf in) throws QpackException {
+        switch (state) {
+            case STATE_INSTRUCTION:
+                return decodeInstruction(ctx, in);
+            case STATE_NAME:
+                if (in.readableBytes() < literalLength) {
+                    // Not enough readable bytes
+                    return false;
+                }
+                name = decodeStringLiteral(in, literalHuffEncoded, literalLength);
+                state = STATE_VALUE_LENGTH;
+                return true;
+            case STATE_VALUE_LENGTH:
+                if (!in.isReadable()) {
+                    return false;
+                }
+                final boolean valueHuffEncoded = QpackUtil.firstByteEquals(in, (byte) 0b1000_0000);
+                final int valueLength = decodePrefixedIntegerAsInt(in, 7);
+                if (valueLength < 0) {
+                    // Not enough readable bytes
+                    return false;
+                }
+                literalHuffEncoded = valueHuffEncoded;
+                literalLength = valueLength;
+                state = STATE_VALUE;
+                return true;
+            case STATE_VALUE:
+                if (in.readableBytes() < literalLength) {
+                    // Not enough readable bytes
+                    return false;
+                }
+                CharSequence value = decodeStringLiteral(in, literalHuffEncoded, literalLength);
+                insert(ctx, value);
+                return true;
+            default:
+                throw new IllegalStateException("Unexpected state: " + state);
+        }
+    }
+
+    private boolean decodeInstruction(ChannelHandlerContext ctx, ByteBuf in) throws QpackException {
+        if (!in.isReadable()) {
+            return false;
+        }
         byte b = in.getByte(in.readerIndex());
 
         // 4.3.1. Set Dynamic Table Capacity
@@ -66,7 +144,7 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
             long capacity = QpackUtil.decodePrefixedInteger(in, 5);
             if (capacity < 0) {
                 // Not enough readable bytes
-                return;
+                return false;
             }
 
             try {
@@ -74,16 +152,15 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
             } catch (QpackException e) {
                 handleDecodeFailure(ctx, e, "setDynamicTableCapacity failed.");
             }
-            return;
+            return true;
         }
 
         final QpackAttributes qpackAttributes = Http3.getQpackAttributes(ctx.channel().parent());
         assert qpackAttributes != null;
         if (!qpackAttributes.dynamicTableDisabled() && !qpackAttributes.decoderStreamAvailable()) {
             // We need the decoder stream to update the decoder with these instructions.
-            return;
+            return false;
         }
-        final QuicStreamChannel decoderStream = qpackAttributes.decoderStream();
 
         // 4.3.2. Insert With Name Reference
         //
@@ -96,30 +173,19 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
         //   |  Value String (Length bytes)  |
         //   +-------------------------------+
         if ((b & 0b1000_0000) == 0b1000_0000) {
-            int readerIndex = in.readerIndex();
             // T == 1 implies static table index.
             // https://www.rfc-editor.org/rfc/rfc9204.html#name-insert-with-name-reference
             final boolean isStaticTableIndex = QpackUtil.firstByteEquals(in, (byte) 0b1100_0000);
             final int nameIdx = decodePrefixedIntegerAsInt(in, 6);
             if (nameIdx < 0) {
                 // Not enough readable bytes
-                return;
+                return false;
             }
-
-            CharSequence value = decodeLiteralValue(in);
-            if (value == null) {
-                // Reset readerIndex
-                in.readerIndex(readerIndex);
-                // Not enough readable bytes
-                return;
-            }
-            try {
-                qpackDecoder.insertWithNameReference(decoderStream, isStaticTableIndex, nameIdx,
-                        value);
-            } catch (QpackException e) {
-                handleDecodeFailure(ctx, e, "insertWithNameReference failed.");
-            }
-            return;
+            literalName = false;
+            this.isStaticTableIndex = isStaticTableIndex;
+            this.nameIdx = nameIdx;
+            state = STATE_VALUE_LENGTH;
+            return true;
         }
         // 4.3.3. Insert With Literal Name
         //
@@ -134,36 +200,17 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
         //   |  Value String (Length bytes)  |
         //   +-------------------------------+
         if ((b & 0b1100_0000) == 0b0100_0000) {
-            int readerIndex = in.readerIndex();
             final boolean nameHuffEncoded = QpackUtil.firstByteEquals(in, (byte) 0b0110_0000);
-            int nameLength = decodePrefixedIntegerAsInt(in, 5);
+            final int nameLength = decodePrefixedIntegerAsInt(in, 5);
             if (nameLength < 0) {
-                // Reset readerIndex
-                in.readerIndex(readerIndex);
                 // Not enough readable bytes
-                return;
-            }
-            if (in.readableBytes() < nameLength) {
-                // Reset readerIndex
-                in.readerIndex(readerIndex);
-                // Not enough readable bytes
-                return;
-            }
-
-            CharSequence name = decodeStringLiteral(in, nameHuffEncoded, nameLength);
-            CharSequence value = decodeLiteralValue(in);
-            if (value == null) {
-                // Reset readerIndex
-                in.readerIndex(readerIndex);
-                // Not enough readable bytes
-                return;
-            }
-            try {
-                qpackDecoder.insertLiteral(decoderStream, name, value);
-            } catch (QpackException e) {
-                handleDecodeFailure(ctx, e, "insertLiteral failed.");
+                return false;
             }
-            return;
+            literalName = true;
+            literalHuffEncoded = nameHuffEncoded;
+            literalLength = nameLength;
+            state = STATE_NAME;
+            return true;
         }
         // 4.3.4. Duplicate
         //
@@ -172,29 +219,55 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
         //   | 0 | 0 | 0 |    Index (5+)     |
         //   +---+---+---+-------------------+
         if ((b & 0b1110_0000) == 0b0000_0000) {
-            int readerIndex = in.readerIndex();
             int index = decodePrefixedIntegerAsInt(in, 5);
             if (index < 0) {
-                // Reset readerIndex
-                in.readerIndex(readerIndex);
                 // Not enough readable bytes
-                return;
+                return false;
             }
             try {
-                qpackDecoder.duplicate(decoderStream, index);
+                qpackDecoder.duplicate(qpackAttributes.decoderStream(), index);
             } catch (QpackException e) {
                 handleDecodeFailure(ctx, e, "duplicate failed.");
             }
-            return;
+            return true;
         }
 
         discard = true;
         Http3CodecUtils.connectionError(ctx, Http3ErrorCode.QPACK_ENCODER_STREAM_ERROR,
                 "Unknown encoder instruction '" + b + "'.",  false);
+        return false;
+    }
+
+    private void insert(ChannelHandlerContext ctx, CharSequence value) {
+        final QpackAttributes qpackAttributes = Http3.getQpackAttributes(ctx.channel().parent());
+        assert qpackAttributes != null;
+        final QuicStreamChannel decoderStream = qpackAttributes.decoderStream();
+        final CharSequence name = this.name;
+        this.name = null;
+        state = STATE_INSTRUCTION;
+        if (literalName) {
+            assert name != null;
+            try {
+                qpackDecoder.insertLiteral(decoderStream, name, value);
+            } catch (QpackException e) {
+                handleDecodeFailure(ctx, e, "insertLiteral failed.");
+            }
+        } else {
+            try {
+                qpackDecoder.insertWithNameReference(decoderStream, isStaticTableIndex, nameIdx, value);
+            } catch (QpackException e) {
+                handleDecodeFailure(ctx, e, "insertWithNameReference failed.");
+            }
+        }
     }
 
     @Override
     public void channelReadComplete(ChannelHandlerContext ctx) {
+        final QpackAttributes qpackAttributes = Http3.getQpackAttributes(ctx.channel().parent());
+        if (qpackAttributes != null && qpackAttributes.decoderStreamAvailable()) {
+            // Write all insert count increments generated by the instructions read in this read cycle.
+            qpackDecoder.writePendingInstructions(qpackAttributes);
+        }
         ctx.fireChannelReadComplete();
 
         // QPACK streams should always be processed, no matter what the user is doing in terms of configuration
@@ -223,18 +296,6 @@ final class QpackEncoderHandler extends ByteToMessageDecoder {
         connectionError(ctx, new Http3Exception(QPACK_ENCODER_STREAM_ERROR, message, cause), true);
     }
 
-    @Nullable
-    private CharSequence decodeLiteralValue(ByteBuf in) throws QpackException {
-        final boolean valueHuffEncoded = QpackUtil.firstByteEquals(in, (byte) 0b1000_0000);
-        int valueLength = decodePrefixedIntegerAsInt(in, 7);
-        if (valueLength < 0 || in.readableBytes() < valueLength) {
-            // Not enough readable bytes
-            return null;
-        }
-
-        return decodeStringLiteral(in, valueHuffEncoded, valueLength);
-    }
-
     private CharSequence decodeStringLiteral(ByteBuf in, boolean huffmanEncoded, int length)
             throws QpackException {
         if (huffmanEncoded) {
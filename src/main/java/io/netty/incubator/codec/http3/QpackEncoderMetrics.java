@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+/**
+ * Metrics of the QPACK encoder of a connection.
+ * <p>
+ * The QPACK encoder avoids using the dynamic table while the encoder stream is congested, which is the case if the
+ * encoder stream is not writable or too many inserts are not yet acknowledged by the remote peer. Field sections
+ * referencing entries that the remote peer did not receive yet would block the request streams carrying them.
+ * <p>
+ * The values are updated from the {@link io.netty.channel.EventLoop} of the connection, so values read from other
+ * threads may be stale.
+ */
+public interface QpackEncoderMetrics {
+
+    /**
+     * Returns the number of header fields inserted into the dynamic table, including duplicates of existing entries.
+     *
+     * @return the number of inserts.
+     */
+    long insertions();
+
+    /**
+     * Returns the number of header fields that were encoded without inserting or duplicating them in the dynamic table,
+     * because the encoder stream was congested.
+     *
+     * @return the number of skipped inserts.
+     */
+    long congestedInsertionsSkipped();
+
+    /**
+     * Returns the number of header fields that were encoded without referencing an unacknowledged entry of the dynamic
+     * table, because the encoder stream was congested.
+     *
+     * @return the number of skipped references.
+     */
+    long congestedReferencesSkipped();
+
+    /**
+     * Returns the number of inserts that are not yet acknowledged by the remote peer.
+     *
+     * @return the number of unacknowledged inserts.
+     */
+    int unacknowledgedInsertions();
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A set of header fields that the QPACK encoder
+ * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-dynamic-table-insertion-str">inserts</a> into the dynamic
+ * table as soon as the dynamic table of a connection is configured, so that the first field sections sent on the
+ * connection can already reference them.
+ * <p>
+ * Header fields are inserted in iteration order until the next header field does not fit into the dynamic table
+ * anymore. Header fields that are present in the static table are skipped.
+ * <p>
+ * Instances are usually shared between connections and hence must be thread-safe.
+ */
+@FunctionalInterface
+public interface QpackEncoderWarmSet {
+
+    /**
+     * Returns the header fields to insert into the dynamic table of a new connection, in order of priority.
+     *
+     * @return the header fields to insert.
+     */
+    Iterable<? extends Map.Entry<? extends CharSequence, ? extends CharSequence>> headerFields();
+
+    /**
+     * Returns a {@link QpackEncoderWarmSet} that inserts no header fields.
+     *
+     * @return A {@link QpackEncoderWarmSet} that inserts no header fields.
+     */
+    static QpackEncoderWarmSet none() {
+        return Collections::emptyList;
+    }
+
+    /**
+     * Returns a {@link QpackEncoderWarmSet} that always inserts the passed header fields. Later modifications of
+     * {@code headerFields} are not reflected by the returned instance.
+     *
+     * @param headerFields the header fields to insert, in order of priority.
+     * @return A {@link QpackEncoderWarmSet} that inserts the passed header fields.
+     */
+    static QpackEncoderWarmSet of(Http3Headers headerFields) {
+        checkNotNull(headerFields, "headerFields");
+        final Http3Headers copy = new DefaultHttp3Headers(false);
+        copy.add(headerFields);
+        return () -> copy;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+
+import static io.netty.util.internal.ObjectUtil.checkInRange;
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+
+/**
+ * A {@link QpackEncoderAdmissionPolicy} that admits header fields which have been seen a minimum number of times.
+ * <p>
+ * The number of occurrences is estimated using a <a href="https://en.wikipedia.org/wiki/Count%E2%80%93min_sketch">
+ * count-min sketch</a> with {@link #DEPTH} rows of 4-bit counters packed into {@code long}s. As in
+ * <a href="https://arxiv.org/abs/1512.00727">TinyLFU</a>, only the smallest counters for a header field are
+ * incremented and all counters are halved once {@link #SAMPLE_SIZE} header fields have been recorded, so the sketch
+ * adapts to changes in the header fields used.
+ */
+final class QpackFrequencyAdmissionPolicy implements QpackEncoderAdmissionPolicy {
+    private static final int DEPTH = 4;
+    private static final int COUNTERS = 2048;
+    private static final int COUNTER_MASK = COUNTERS - 1;
+    private static final int MAX_COUNT = 15;
+    private static final int SAMPLE_SIZE = 10 * COUNTERS;
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = { 0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0x2b8e9f0d };
+
+    private final int minOccurrences;
+    private final AsciiString[] neverInsertNames;
+    // 16 counters per long.
+    private final long[] table = new long[COUNTERS >>> 4];
+    private final int[] counterIndexes = new int[DEPTH];
+    private int additions;
+
+    QpackFrequencyAdmissionPolicy(int minOccurrences, CharSequence... neverInsertNames) {
+        this.minOccurrences = checkInRange(minOccurrences, 1, MAX_COUNT, "minOccurrences");
+        checkNotNull(neverInsertNames, "neverInsertNames");
+        this.neverInsertNames = new AsciiString[neverInsertNames.length];
+        for (int i = 0; i < neverInsertNames.length; i++) {
+            this.neverInsertNames[i] = AsciiString.of(checkNotNull(neverInsertNames[i], "neverInsertNames[" + i + ']'));
+        }
+    }
+
+    @Override
+    public boolean admit(CharSequence name, CharSequence value) {
+        for (AsciiString neverInsertName : neverInsertNames) {
+            if (neverInsertName.contentEqualsIgnoreCase(name)) {
+                return false;
+            }
+        }
+        if (minOccurrences == 1) {
+            return true;
+        }
+        return increment(31 * AsciiString.hashCode(name) + AsciiString.hashCode(value)) >= minOccurrences;
+    }
+
+    /**
+     * Records an occurrence of the passed {@code hash} and returns the estimated number of occurrences, including
+     * this one.
+     */
+    // Visible for tests
+    int increment(int hash) {
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            final int counterIndex = counterIndex(hash, i);
+            counterIndexes[i] = counterIndex;
+            frequency = Math.min(frequency, counter(counterIndex));
+        }
+        if (frequency < MAX_COUNT) {
+            // Conservative update: only increment the counters that determine the estimate.
+            for (int i = 0; i < DEPTH; i++) {
+                final int counterIndex = counterIndexes[i];
+                if (counter(counterIndex) == frequency) {
+                    table[counterIndex >>> 4] += 1L << shift(counterIndex);
+                }
+            }
+            frequency++;
+        }
+        if (++additions == SAMPLE_SIZE) {
+            reset();
+        }
+        return frequency;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int counter(int counterIndex) {
+        return (int) (table[counterIndex >>> 4] >>> shift(counterIndex)) & MAX_COUNT;
+    }
+
+    private static int shift(int counterIndex) {
+        return (counterIndex & 15) << 2;
+    }
+
+    private static int counterIndex(int hash, int row) {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return h & COUNTER_MASK;
+    }
+}
@@ -18,6 +18,7 @@ package io.netty.incubator.codec.http3;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.AsciiString;
 import io.netty.util.ByteProcessor;
+import io.netty.util.concurrent.FastThreadLocal;
 
 final class QpackHuffmanDecoder implements ByteProcessor {
 
@@ -4649,6 +4650,21 @@ final class QpackHuffmanDecoder implements ByteProcessor {
     private static final QpackException BAD_ENCODING =  QpackException.newStatic(QpackHuffmanDecoder.class,
             "decode(...)", "QPACK - Bad Encoding");
 
+    /**
+     * Maximum size of the {@link #SCRATCH} buffer that is retained between calls to {@link #decode(ByteBuf, int)}.
+     */
+    private static final int MAX_RETAINED_SCRATCH_SIZE = 8192;
+
+    /**
+     * Buffer to decode into, which is shared by all decoders of a thread as the decoded bytes are always copied.
+     */
+    private static final FastThreadLocal<byte[]> SCRATCH = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[64];
+        }
+    };
+
     private byte[] dest;
     private int k;
     private int state;
@@ -4666,7 +4682,17 @@ final class QpackHuffmanDecoder implements ByteProcessor {
         if (length == 0) {
             return AsciiString.EMPTY_STRING;
         }
-        dest = new byte[length * 8 / 5];
+        // The shortest code is 5 bits.
+        final int maxDecodedLength = length * 8 / 5;
+        final byte[] scratch = SCRATCH.get();
+        if (scratch.length >= maxDecodedLength) {
+            dest = scratch;
+        } else {
+            dest = new byte[maxDecodedLength];
+            if (maxDecodedLength <= MAX_RETAINED_SCRATCH_SIZE) {
+                SCRATCH.set(dest);
+            }
+        }
         try {
             int readerIndex = buf.readerIndex();
             // Using ByteProcessor to reduce bounds-checking and reference-count checking during byte-by-byte
@@ -4678,7 +4704,8 @@ final class QpackHuffmanDecoder implements ByteProcessor {
                 if ((state & HUFFMAN_COMPLETE_SHIFT) != HUFFMAN_COMPLETE_SHIFT) {
                     throw BAD_ENCODING;
                 }
-                return new AsciiString(dest, 0, k, false);
+                // Copy as the scratch buffer is reused.
+                return new AsciiString(dest, 0, k, true);
             }
 
             // The process(...) method returned before the requested length was requested. This means there
@@ -4692,6 +4719,69 @@ final class QpackHuffmanDecoder implements ByteProcessor {
         }
     }
 
+    /**
+     * Checks that the given Huffman coded string literal is valid without decoding it.
+     *
+     * @param src the array that contains the string literal
+     * @param offset the index of the first byte of the string literal in {@code src}
+     * @param length the length of the string literal
+     * @return the length of the decoded string literal
+     * @throws QpackException EOS Decoded or invalid padding
+     */
+    static int decodedLength(byte[] src, int offset, int length) throws QpackException {
+        if (length == 0) {
+            return 0;
+        }
+        int state = 0;
+        int decodedLength = 0;
+        for (int i = offset; i < offset + length; i++) {
+            state = HUFFS[state >> 12 | (src[i] >> 4 & 0x0F)];
+            if ((state & HUFFMAN_FAIL_SHIFT) != 0) {
+                throw BAD_ENCODING;
+            }
+            decodedLength += (state & HUFFMAN_EMIT_SYMBOL_SHIFT) >> 9;
+            state = HUFFS[state >> 12 | (src[i] & 0x0F)];
+            if ((state & HUFFMAN_FAIL_SHIFT) != 0) {
+                throw BAD_ENCODING;
+            }
+            decodedLength += (state & HUFFMAN_EMIT_SYMBOL_SHIFT) >> 9;
+        }
+        if ((state & HUFFMAN_COMPLETE_SHIFT) != HUFFMAN_COMPLETE_SHIFT) {
+            throw BAD_ENCODING;
+        }
+        return decodedLength;
+    }
+
+    /**
+     * Decompresses the given Huffman coded string literal, which must have been checked by
+     * {@link #decodedLength(byte[], int, int)} before.
+     *
+     * @param src the array that contains the string literal
+     * @param offset the index of the first byte of the string literal in {@code src}
+     * @param length the length of the string literal
+     * @param decodedLength the length returned by {@link #decodedLength(byte[], int, int)}
+     * @return the decoded string literal
+     */
+    static AsciiString decodeValidated(byte[] src, int offset, int length, int decodedLength) {
+        final byte[] dest = new byte[decodedLength];
+        int state = 0;
+        int k = 0;
+        for (int i = offset; i < offset + length; i++) {
+            state = HUFFS[state >> 12 | (src[i] >> 4 & 0x0F)];
+            assert (state & HUFFMAN_FAIL_SHIFT) == 0;
+            if ((state & HUFFMAN_EMIT_SYMBOL_SHIFT) != 0) {
+                dest[k++] = (byte) state;
+            }
+            state = HUFFS[state >> 12 | (src[i] & 0x0F)];
+            assert (state & HUFFMAN_FAIL_SHIFT) == 0;
+            if ((state & HUFFMAN_EMIT_SYMBOL_SHIFT) != 0) {
+                dest[k++] = (byte) state;
+            }
+        }
+        assert k == decodedLength;
+        return new AsciiString(dest, false);
+    }
+
     /**
      * <strong>This should never be called from anything but this class itself!</strong>
      */
@@ -17,15 +17,12 @@ package io.netty.incubator.codec.http3;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.util.AsciiString;
-import io.netty.util.ByteProcessor;
 import io.netty.util.internal.ObjectUtil;
 
 final class QpackHuffmanEncoder {
 
     private final int[] codes;
     private final byte[] lengths;
-    private final EncodedLengthProcessor encodedLengthProcessor = new EncodedLengthProcessor();
-    private final EncodeProcessor encodeProcessor = new EncodeProcessor();
 
     QpackHuffmanEncoder() {
         this(QpackUtil.HUFFMAN_CODES, QpackUtil.HUFFMAN_CODE_LENGTHS);
@@ -49,128 +46,75 @@ final class QpackHuffmanEncoder {
      * @param data the string literal to be Huffman encoded
      */
     public void encode(ByteBuf out, CharSequence data) {
-        ObjectUtil.checkNotNull(out, "out");
-        if (data instanceof AsciiString) {
-            AsciiString string = (AsciiString) data;
-            try {
-                encodeProcessor.out = out;
-                string.forEachByte(encodeProcessor);
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
-            } finally {
-                encodeProcessor.end();
-            }
-        } else {
-            encodeSlowPath(out, data);
-        }
-    }
-
-    private void encodeSlowPath(ByteBuf out, CharSequence data) {
-        long current = 0;
-        int n = 0;
-
-        for (int i = 0; i < data.length(); i++) {
-            int b = data.charAt(i) & 0xFF;
-            int code = codes[b];
-            int nbits = lengths[b];
-
-            current <<= nbits;
-            current |= code;
-            n += nbits;
-
-            while (n >= 8) {
-                n -= 8;
-                out.writeByte((int) (current >> n));
-            }
-        }
-
-        if (n > 0) {
-            current <<= 8 - n;
-            current |= 0xFF >>> n; // this should be EOS symbol
-            out.writeByte((int) current);
-        }
+        encode(out, data, Integer.MAX_VALUE);
     }
 
     /**
-     * Returns the number of bytes required to Huffman encode the input string literal.
+     * Compresses the input string literal using the Huffman coding, in a single pass over {@code data}, if the
+     * compressed data is shorter than {@code limit} bytes.
      *
+     * @param out the output stream for the compressed data
      * @param data the string literal to be Huffman encoded
-     * @return the number of bytes required to Huffman encode {@code data}
+     * @param limit the number of bytes which the compressed data must not reach.
+     * @return the number of bytes written to {@code out} or {@code -1} if the compressed data would have required
+     * {@code limit} bytes or more, in which case nothing is written to {@code out}.
      */
-    int getEncodedLength(CharSequence data) {
+    int encode(ByteBuf out, CharSequence data, int limit) {
+        ObjectUtil.checkNotNull(out, "out");
+        final int startIndex = out.writerIndex();
+        // Codes are at most 30 bits long and less than 32 bits are pending after each symbol, so the pending bits
+        // always fit into the accumulator and are written out a whole int at a time.
+        long current = 0;
+        int n = 0;
+        int written = 0;
         if (data instanceof AsciiString) {
-            AsciiString string = (AsciiString) data;
-            try {
-                encodedLengthProcessor.reset();
-                string.forEachByte(encodedLengthProcessor);
-                return encodedLengthProcessor.length();
-            } catch (Exception e) {
-                throw new IllegalStateException(e);
+            final AsciiString string = (AsciiString) data;
+            final byte[] array = string.array();
+            final int end = string.arrayOffset() + string.length();
+            for (int i = string.arrayOffset(); i < end; i++) {
+                final int b = array[i] & 0xFF;
+                final int nbits = lengths[b];
+                current = (current << nbits) | codes[b];
+                n += nbits;
+                if (n >= 32) {
+                    n -= 32;
+                    if ((written += 4) >= limit) {
+                        out.writerIndex(startIndex);
+                        return -1;
+                    }
+                    out.writeInt((int) (current >>> n));
+                }
             }
         } else {
-            return getEncodedLengthSlowPath(data);
-        }
-    }
-
-    private int getEncodedLengthSlowPath(CharSequence data) {
-        long len = 0;
-        for (int i = 0; i < data.length(); i++) {
-            len += lengths[data.charAt(i) & 0xFF];
-        }
-        return (int) ((len + 7) >> 3);
-    }
-
-    private final class EncodeProcessor implements ByteProcessor {
-        ByteBuf out;
-        private long current;
-        private int n;
-
-        @Override
-        public boolean process(byte value) {
-            int b = value & 0xFF;
-            int nbits = lengths[b];
-
-            current <<= nbits;
-            current |= codes[b];
-            n += nbits;
-
-            while (n >= 8) {
-                n -= 8;
-                out.writeByte((int) (current >> n));
-            }
-            return true;
-        }
-
-        void end() {
-            try {
-                if (n > 0) {
-                    current <<= 8 - n;
-                    current |= 0xFF >>> n; // this should be EOS symbol
-                    out.writeByte((int) current);
+            for (int i = 0; i < data.length(); i++) {
+                final int b = data.charAt(i) & 0xFF;
+                final int nbits = lengths[b];
+                current = (current << nbits) | codes[b];
+                n += nbits;
+                if (n >= 32) {
+                    n -= 32;
+                    if ((written += 4) >= limit) {
+                        out.writerIndex(startIndex);
+                        return -1;
+                    }
+                    out.writeInt((int) (current >>> n));
                 }
-            } finally {
-                out = null;
-                current = 0;
-                n = 0;
             }
         }
-    }
-
-    private final class EncodedLengthProcessor implements ByteProcessor {
-        private long len;
 
-        @Override
-        public boolean process(byte value) {
-            len += lengths[value & 0xFF];
-            return true;
+        if ((written += (n + 7) >> 3) >= limit) {
+            out.writerIndex(startIndex);
+            return -1;
         }
-
-        void reset() {
-            len = 0;
+        while (n >= 8) {
+            n -= 8;
+            out.writeByte((int) (current >>> n));
         }
-
-        int length() {
-            return (int) ((len + 7) >> 3);
+        if (n > 0) {
+            current <<= 8 - n;
+            current |= 0xFF >>> n; // this should be EOS symbol
+            out.writeByte((int) current);
         }
+        return written;
     }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package io.netty.incubator.codec.http3;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A budget for the capacity of all QPACK dynamic tables, which is shared between connections.
+ * <p>
+ * Each connection reserves the capacity of its decoder dynamic table, which is advertised using
+ * {@link Http3SettingsFrame#HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY}, when its {@link Http3ConnectionHandler}
+ * is added to the pipeline. This capacity is fixed, as the advertised capacity can not be lowered later on. It
+ * reserves the capacity of its encoder dynamic table once the settings of the remote peer are received. A connection
+ * is granted less capacity than it requests if the remaining budget is not sufficient, down to {@code 0}, which
+ * disables the dynamic table. Reserved capacity is released once the connection is closed.
+ * <p>
+ * The capacity that is not reserved by decoders is shared fairly between the encoders, leaving room for one more
+ * connection. If a reservation can not be granted in full, the encoders of existing connections are asked to shrink
+ * their dynamic tables to this fair share. An encoder lowers its capacity using the
+ * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-set-dynamic-table-capacity">Set Dynamic Table
+ * Capacity</a> instruction once the entries that do not fit are acknowledged and evicted, and releases the difference.
+ * Once connections are closed, the encoders are asked to grow their dynamic tables up to the fair share again.
+ * <p>
+ * Encoders are only notified once the fair share changed by more than an eighth since the last notification, so a
+ * burst of new or closed connections notifies each encoder a logarithmic number of times only.
+ */
+public final class QpackMemoryBudget {
+
+    private final long maxCapacity;
+    private final AtomicLong reservedCapacity = new AtomicLong();
+    private final AtomicLong fixedCapacity = new AtomicLong();
+    private final Set<Runnable> capacityListeners = ConcurrentHashMap.newKeySet();
+    /**
+     * The fair share that the listeners were notified about last, {@link Long#MAX_VALUE} if these were never asked to
+     * shrink their dynamic tables.
+     */
+    private final AtomicLong notifiedFairShare = new AtomicLong(Long.MAX_VALUE);
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxCapacity the maximum capacity in bytes of all dynamic tables, as defined by
+     * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-dynamic-table-size">RFC 9204</a>.
+     */
+    public QpackMemoryBudget(long maxCapacity) {
+        this.maxCapacity = checkPositiveOrZero(maxCapacity, "maxCapacity");
+    }
+
+    /**
+     * Returns the maximum capacity of all dynamic tables.
+     *
+     * @return the maximum capacity in bytes.
+     */
+    public long maxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Returns the capacity that is currently reserved by dynamic tables.
+     *
+     * @return the reserved capacity in bytes.
+     */
+    public long reservedCapacity() {
+        return reservedCapacity.get();
+    }
+
+    /**
+     * Reserves up to {@code capacity} bytes for an encoder dynamic table, which can be shrunk later on. Encoders are
+     * asked to shrink their dynamic tables if the capacity can not be granted in full.
+     *
+     * @param capacity the requested capacity.
+     * @return the reserved capacity, which is smaller than {@code capacity} if the remaining budget is not sufficient.
+     */
+    long reserve(long capacity) {
+        final long granted = tryReserve(capacity);
+        if (granted < capacity) {
+            notifyIfFairShareDropped();
+        }
+        return granted;
+    }
+
+    /**
+     * Reserves up to {@code capacity} bytes, without asking encoders to shrink their dynamic tables if the capacity
+     * can not be granted in full.
+     *
+     * @param capacity the requested capacity.
+     * @return the reserved capacity, which is smaller than {@code capacity} if the remaining budget is not sufficient.
+     */
+    long tryReserve(long capacity) {
+        for (;;) {
+            final long reserved = reservedCapacity.get();
+            final long granted = max(0, min(capacity, maxCapacity - reserved));
+            if (granted == 0 || reservedCapacity.compareAndSet(reserved, reserved + granted)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Reserves up to {@code capacity} bytes for a decoder dynamic table, which can not be shrunk later on. Encoders
+     * are asked to shrink their dynamic tables if the capacity can not be granted in full.
+     *
+     * @param capacity the requested capacity.
+     * @return the reserved capacity, which is smaller than {@code capacity} if the remaining budget is not sufficient.
+     */
+    long reserveFixed(long capacity) {
+        final long granted = tryReserve(capacity);
+        fixedCapacity.addAndGet(granted);
+        if (granted < capacity) {
+            notifyIfFairShareDropped();
+        }
+        return granted;
+    }
+
+    /**
+     * Releases {@code capacity} bytes that were returned by {@link #reserve(long)} or {@link #tryReserve(long)}.
+     *
+     * @param capacity the capacity to release.
+     */
+    void release(long capacity) {
+        if (capacity > 0) {
+            final long reserved = reservedCapacity.addAndGet(-capacity);
+            assert reserved >= 0;
+        }
+    }
+
+    /**
+     * Releases {@code capacity} bytes that were returned by {@link #reserveFixed(long)}.
+     *
+     * @param capacity the capacity to release.
+     */
+    void releaseFixed(long capacity) {
+        if (capacity > 0) {
+            final long fixed = fixedCapacity.addAndGet(-capacity);
+            assert fixed >= 0;
+            release(capacity);
+            notifyIfFairShareRose();
+        }
+    }
+
+    /**
+     * Returns the capacity each encoder dynamic table should use, which is the capacity not reserved by decoder dynamic
+     * tables divided between all encoders and one more connection.
+     *
+     * @return the fair share in bytes.
+     */
+    long fairShare() {
+        return max(0, maxCapacity - fixedCapacity.get()) / (capacityListeners.size() + 1);
+    }
+
+    /**
+     * Adds a listener of an encoder, which is notified once the {@link #fairShare()} changed and the encoder should
+     * adjust the capacity of its dynamic table. The listener may be called from any thread.
+     *
+     * @param listener the listener to add.
+     */
+    void addCapacityListener(Runnable listener) {
+        capacityListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was added by {@link #addCapacityListener(Runnable)}.
+     *
+     * @param listener the listener to remove.
+     */
+    void removeCapacityListener(Runnable listener) {
+        if (capacityListeners.remove(listener)) {
+            notifyIfFairShareRose();
+        }
+    }
+
+    private void notifyIfFairShareDropped() {
+        if (capacityListeners.isEmpty()) {
+            return;
+        }
+        final long fairShare = fairShare();
+        for (;;) {
+            final long notified = notifiedFairShare.get();
+            if (fairShare >= notified - (notified >>> 3)) {
+                // Coalesce small drops, the listeners use the current fair share once they are notified again.
+                return;
+            }
+            if (notifiedFairShare.compareAndSet(notified, fairShare)) {
+                break;
+            }
+        }
+        notifyListeners();
+    }
+
+    private void notifyIfFairShareRose() {
+        final long fairShare = fairShare();
+        for (;;) {
+            final long notified = notifiedFairShare.get();
+            if (notified == Long.MAX_VALUE || fairShare <= notified + (notified >>> 3)) {
+                // No encoder was asked to shrink yet or the rise is too small to be worth a notification.
+                return;
+            }
+            if (notifiedFairShare.compareAndSet(notified, fairShare)) {
+                break;
+            }
+        }
+        notifyListeners();
+    }
+
+    private void notifyListeners() {
+        for (Runnable listener : capacityListeners) {
+            listener.run();
+        }
+    }
+}
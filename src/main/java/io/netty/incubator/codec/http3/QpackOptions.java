@@ -0,0 +1,255 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Supplier;
+
+import static io.netty.util.internal.ObjectUtil.checkNotNull;
+import static io.netty.util.internal.ObjectUtil.checkPositive;
+import static io.netty.util.internal.ObjectUtil.checkPositiveOrZero;
+
+/**
+ * Options that tune how the QPACK encoder and decoder of a connection work and how received header fields are
+ * represented. Instances are immutable and can be shared between connections, stateful parts like the
+ * {@link QpackEncoderAdmissionPolicy} are created for each connection.
+ */
+public final class QpackOptions {
+
+    private static final QpackOptions DEFAULT = builder().build();
+
+    private final Supplier<? extends QpackDecoderStateSyncStrategy> decoderStateSyncStrategyFactory;
+    private final Supplier<? extends QpackEncoderAdmissionPolicy> encoderAdmissionPolicyFactory;
+    private final QpackEncoderWarmSet encoderWarmSet;
+    private final int encoderMaxUnacknowledgedInserts;
+    @Nullable
+    private final QpackMemoryBudget memoryBudget;
+    private final Http3HeadersFactory headersFactory;
+    private final boolean deferHeaderValueDecoding;
+    private final boolean retainRawHeaderValues;
+    private final long blockedStreamTimeoutMillis;
+
+    private QpackOptions(Builder builder) {
+        decoderStateSyncStrategyFactory = builder.decoderStateSyncStrategyFactory;
+        encoderAdmissionPolicyFactory = builder.encoderAdmissionPolicyFactory;
+        encoderWarmSet = builder.encoderWarmSet;
+        encoderMaxUnacknowledgedInserts = builder.encoderMaxUnacknowledgedInserts;
+        memoryBudget = builder.memoryBudget;
+        headersFactory = builder.headersFactory;
+        deferHeaderValueDecoding = builder.deferHeaderValueDecoding;
+        retainRawHeaderValues = builder.retainRawHeaderValues;
+        blockedStreamTimeoutMillis = builder.blockedStreamTimeoutMillis;
+    }
+
+    /**
+     * Returns the default options.
+     *
+     * @return the default options.
+     */
+    public static QpackOptions defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns a new {@link Builder} which starts with the default options.
+     *
+     * @return a new {@link Builder}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    QpackDecoderStateSyncStrategy newDecoderStateSyncStrategy() {
+        return decoderStateSyncStrategyFactory.get();
+    }
+
+    QpackEncoderAdmissionPolicy newEncoderAdmissionPolicy() {
+        return encoderAdmissionPolicyFactory.get();
+    }
+
+    QpackEncoderWarmSet encoderWarmSet() {
+        return encoderWarmSet;
+    }
+
+    int encoderMaxUnacknowledgedInserts() {
+        return encoderMaxUnacknowledgedInserts;
+    }
+
+    @Nullable
+    QpackMemoryBudget memoryBudget() {
+        return memoryBudget;
+    }
+
+    Http3HeadersFactory headersFactory() {
+        return headersFactory;
+    }
+
+    boolean deferHeaderValueDecoding() {
+        return deferHeaderValueDecoding;
+    }
+
+    boolean retainRawHeaderValues() {
+        return retainRawHeaderValues;
+    }
+
+    long blockedStreamTimeoutMillis() {
+        return blockedStreamTimeoutMillis;
+    }
+
+    /**
+     * Builder for {@link QpackOptions}.
+     */
+    public static final class Builder {
+        private Supplier<? extends QpackDecoderStateSyncStrategy> decoderStateSyncStrategyFactory =
+                QpackDecoderStateSyncStrategy::ackEachInsert;
+        private Supplier<? extends QpackEncoderAdmissionPolicy> encoderAdmissionPolicyFactory =
+                QpackEncoderAdmissionPolicy::admitAll;
+        private QpackEncoderWarmSet encoderWarmSet = QpackEncoderWarmSet.none();
+        private int encoderMaxUnacknowledgedInserts = QpackEncoder.DEFAULT_MAX_UNACKNOWLEDGED_INSERTS;
+        @Nullable
+        private QpackMemoryBudget memoryBudget;
+        private Http3HeadersFactory headersFactory = Http3HeadersFactory.defaultHeadersFactory();
+        private boolean deferHeaderValueDecoding;
+        private boolean retainRawHeaderValues;
+        private long blockedStreamTimeoutMillis;
+
+        private Builder() { }
+
+        /**
+         * Sets the factory of the {@link QpackDecoderStateSyncStrategy} that determines when the QPACK decoder of a
+         * connection acknowledges dynamic table state to the remote peer. Defaults to
+         * {@link QpackDecoderStateSyncStrategy#ackEachInsert()}.
+         *
+         * @param factory called once per connection.
+         * @return this builder.
+         */
+        public Builder decoderStateSyncStrategy(Supplier<? extends QpackDecoderStateSyncStrategy> factory) {
+            decoderStateSyncStrategyFactory = checkNotNull(factory, "factory");
+            return this;
+        }
+
+        /**
+         * Sets the factory of the {@link QpackEncoderAdmissionPolicy} that determines which header fields the QPACK
+         * encoder of a connection inserts into the dynamic table. Defaults to
+         * {@link QpackEncoderAdmissionPolicy#admitAll()}.
+         *
+         * @param factory called once per connection.
+         * @return this builder.
+         */
+        public Builder encoderAdmissionPolicy(Supplier<? extends QpackEncoderAdmissionPolicy> factory) {
+            encoderAdmissionPolicyFactory = checkNotNull(factory, "factory");
+            return this;
+        }
+
+        /**
+         * Sets the {@link QpackEncoderWarmSet} whose header fields the QPACK encoder inserts into the dynamic table
+         * once it is configured. Defaults to {@link QpackEncoderWarmSet#none()}.
+         *
+         * @param warmSet the header fields to insert.
+         * @return this builder.
+         */
+        public Builder encoderWarmSet(QpackEncoderWarmSet warmSet) {
+            encoderWarmSet = checkNotNull(warmSet, "warmSet");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of dynamic table insertions that the QPACK encoder leaves unacknowledged by the
+         * remote peer. Once reached, the encoder stream is considered congested and header fields are encoded without
+         * inserting into or referencing unacknowledged entries of the dynamic table. Defaults to {@code 32}.
+         *
+         * @param maxUnacknowledgedInserts the maximum number of unacknowledged insertions, must be positive.
+         * @return this builder.
+         */
+        public Builder encoderMaxUnacknowledgedInserts(int maxUnacknowledgedInserts) {
+            encoderMaxUnacknowledgedInserts = checkPositive(maxUnacknowledgedInserts, "maxUnacknowledgedInserts");
+            return this;
+        }
+
+        /**
+         * Sets the {@link QpackMemoryBudget} from which the capacity of the QPACK dynamic tables is reserved, or
+         * {@code null} if the capacity should not be limited across connections, which is the default.
+         *
+         * @param memoryBudget the budget shared by connections.
+         * @return this builder.
+         */
+        public Builder memoryBudget(@Nullable QpackMemoryBudget memoryBudget) {
+            this.memoryBudget = memoryBudget;
+            return this;
+        }
+
+        /**
+         * Sets the {@link Http3HeadersFactory} that creates the {@link Http3Headers} of received
+         * {@link Http3HeadersFrame}s and {@link Http3PushPromiseFrame}s. Defaults to
+         * {@link Http3HeadersFactory#defaultHeadersFactory()}.
+         *
+         * @param headersFactory the factory to use.
+         * @return this builder.
+         */
+        public Builder headersFactory(Http3HeadersFactory headersFactory) {
+            this.headersFactory = checkNotNull(headersFactory, "headersFactory");
+            return this;
+        }
+
+        /**
+         * Sets if Huffman encoded values of received headers, that are not used for validation, should only be
+         * decoded when these are accessed for the first time. Defaults to {@code false}.
+         *
+         * @param deferHeaderValueDecoding {@code true} to defer decoding.
+         * @return this builder.
+         */
+        public Builder deferHeaderValueDecoding(boolean deferHeaderValueDecoding) {
+            this.deferHeaderValueDecoding = deferHeaderValueDecoding;
+            return this;
+        }
+
+        /**
+         * Sets if long values of received headers that are not Huffman encoded should share the received bytes
+         * instead of being copied. {@link Http3HeadersFrame}s that contain such values are
+         * {@link io.netty.util.ReferenceCounted} and must be released. Defaults to {@code false}.
+         *
+         * @param retainRawHeaderValues {@code true} to share the received bytes.
+         * @return this builder.
+         */
+        public Builder retainRawHeaderValues(boolean retainRawHeaderValues) {
+            this.retainRawHeaderValues = retainRawHeaderValues;
+            return this;
+        }
+
+        /**
+         * Sets the number of milliseconds after which a request stream that is blocked on QPACK dynamic table updates
+         * is reset, or {@code 0} if blocked streams should never time out, which is the default.
+         *
+         * @param blockedStreamTimeoutMillis the timeout in milliseconds.
+         * @return this builder.
+         */
+        public Builder blockedStreamTimeoutMillis(long blockedStreamTimeoutMillis) {
+            this.blockedStreamTimeoutMillis =
+                    checkPositiveOrZero(blockedStreamTimeoutMillis, "blockedStreamTimeoutMillis");
+            return this;
+        }
+
+        /**
+         * Returns new {@link QpackOptions} with the options of this builder.
+         *
+         * @return the options.
+         */
+        public QpackOptions build() {
+            return new QpackOptions(this);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AsciiString;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * A header value that was not Huffman encoded and is read directly from the received bytes, without copying these.
+ * <p>
+ * The bytes are a range of a retained slice of the received field section, which is shared by all raw values that
+ * were decoded from it. The slice is released together with the {@link ReferenceCountedHttp3HeadersFrame} that
+ * carries the value, after which the value must not be accessed anymore.
+ */
+final class QpackRawHeaderValue implements CharSequence {
+    private final ByteBuf bytes;
+    private final int offset;
+    private final int length;
+
+    QpackRawHeaderValue(ByteBuf bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + " (expected: 0 <= index < " + length + ')');
+        }
+        return AsciiString.b2c(bytes.getByte(offset + index));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new AsciiString(toString().substring(start, end));
+    }
+
+    @Override
+    public int hashCode() {
+        return AsciiString.hashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        return obj instanceof CharSequence && AsciiString.contentEquals(this, (CharSequence) obj);
+    }
+
+    @Override
+    public String toString() {
+        return bytes.toString(offset, length, ISO_8859_1);
+    }
+}
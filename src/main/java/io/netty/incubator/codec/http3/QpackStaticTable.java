@@ -15,13 +15,17 @@
  */
 package io.netty.incubator.codec.http3;
 
-import io.netty.handler.codec.UnsupportedValueConverter;
 import io.netty.util.AsciiString;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
 
+/**
+ * The <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-static-table-2">QPACK static table</a>.
+ * <p>
+ * Header fields are looked up using two perfect hash tables, which are computed when this class is loaded: one for
+ * the header fields and one for the distinct header names. Each slot of these tables holds at most one index of the
+ * static table, so a lookup requires at most one comparison per table and does not allocate.
+ */
 final class QpackStaticTable {
 
     static final int NOT_FOUND = -1;
@@ -38,7 +42,7 @@ final class QpackStaticTable {
     /**
      * <a href="https://www.rfc-editor.org/rfc/rfc9204.html#name-static-table-2>Appendix A: Static Table</a>
      */
-    private static final List<QpackHeaderField> STATIC_TABLE = Arrays.asList(
+    private static final QpackHeaderField[] STATIC_TABLE = {
         newEmptyHeaderField(":authority"),
         newHeaderField(":path", "/"),
         newHeaderField("age", "0"),
@@ -137,14 +141,49 @@ final class QpackStaticTable {
         newEmptyHeaderField("user-agent"),
         newEmptyHeaderField("x-forwarded-for"),
         newHeaderField("x-frame-options", "deny"),
-        newHeaderField("x-frame-options", "sameorigin"));
+        newHeaderField("x-frame-options", "sameorigin")};
 
     /**
      * The number of header fields in the static table.
      */
-    static final int length = STATIC_TABLE.size();
+    static final int length = STATIC_TABLE.length;
+
+    private static final int FIELD_TABLE_BITS = 10;
+    private static final int NAME_TABLE_BITS = 9;
 
-    private static final CharSequenceMap<List<Integer>> STATIC_INDEX_BY_NAME = createMap(length);
+    /**
+     * Multiplier for the hash of a header field, which is chosen such that all header fields of the static table end
+     * up in a different slot of {@link #FIELD_TABLE}.
+     */
+    private static final int FIELD_SEED;
+    private static final int[] FIELD_TABLE;
+
+    /**
+     * Multiplier for the hash of a header name, which is chosen such that all distinct header names of the static
+     * table end up in a different slot of {@link #NAME_TABLE}.
+     */
+    private static final int NAME_SEED;
+    private static final int[] NAME_TABLE;
+
+    static {
+        int seed = 0;
+        int[] table = null;
+        while (table == null) {
+            seed = nextSeed(seed);
+            table = newPerfectHashTable(seed, FIELD_TABLE_BITS, false);
+        }
+        FIELD_SEED = seed;
+        FIELD_TABLE = table;
+
+        seed = 0;
+        table = null;
+        while (table == null) {
+            seed = nextSeed(seed);
+            table = newPerfectHashTable(seed, NAME_TABLE_BITS, true);
+        }
+        NAME_SEED = seed;
+        NAME_TABLE = table;
+    }
 
     private static QpackHeaderField newEmptyHeaderField(String name) {
         return new QpackHeaderField(AsciiString.cached(name), AsciiString.EMPTY_STRING);
@@ -159,7 +198,7 @@ final class QpackStaticTable {
      * Note that QPACK uses 0-based indexing when HPACK is using 1-based.
      */
     static QpackHeaderField getField(int index) {
-        return STATIC_TABLE.get(index);
+        return STATIC_TABLE[index];
     }
 
     /**
@@ -167,12 +206,15 @@ final class QpackStaticTable {
      * table. Returns -1 if the header field name is not in the static table.
      */
     static int getIndex(CharSequence name) {
-        List<Integer> index = STATIC_INDEX_BY_NAME.get(name);
-        if (index == null) {
+        return getIndex(name, AsciiString.hashCode(name));
+    }
+
+    private static int getIndex(CharSequence name, int nameHash) {
+        final int index = NAME_TABLE[slot(nameHash, NAME_SEED, NAME_TABLE_BITS)];
+        if (index == NOT_FOUND || !AsciiString.contentEquals(name, STATIC_TABLE[index].name)) {
             return NOT_FOUND;
         }
-
-        return index.get(0);
+        return index;
     }
 
     /**
@@ -182,44 +224,55 @@ final class QpackStaticTable {
      *    c) -1 if name was not found in the static table.
      */
     static int findFieldIndex(CharSequence name, CharSequence value) {
-        final List<Integer> nameIndex = STATIC_INDEX_BY_NAME.get(name);
-
-        // Early return if name not found in the table.
-        if (nameIndex == null) {
-            return NOT_FOUND;
-        }
-
-        // If name was found, check all subsequence elements of the table for exact match.
-        for (int index: nameIndex) {
-            QpackHeaderField field = STATIC_TABLE.get(index);
-            if (QpackUtil.equalsVariableTime(value, field.value)) {
+        final int nameHash = AsciiString.hashCode(name);
+        final int index = FIELD_TABLE[slot(fieldHash(nameHash, AsciiString.hashCode(value)), FIELD_SEED,
+                FIELD_TABLE_BITS)];
+        if (index != NOT_FOUND) {
+            final QpackHeaderField field = STATIC_TABLE[index];
+            if (QpackUtil.equalsVariableTime(value, field.value) && AsciiString.contentEquals(name, field.name)) {
                 return index;
             }
         }
 
+        final int nameIndex = getIndex(name, nameHash);
         // No exact match was found but we still can reference the name.
-        return nameIndex.get(0) | MASK_NAME_REF;
+        return nameIndex == NOT_FOUND ? NOT_FOUND : nameIndex | MASK_NAME_REF;
+    }
+
+    private static int fieldHash(int nameHash, int valueHash) {
+        return 31 * nameHash + valueHash;
+    }
+
+    private static int slot(int hash, int seed, int bits) {
+        return (hash * seed) >>> (32 - bits);
+    }
+
+    private static int nextSeed(int seed) {
+        // Odd multipliers from a linear congruential generator, which makes the computed tables deterministic.
+        return (seed * 0x5DEECE6D + 0xB) | 1;
     }
 
     /**
-     * Creates a map CharSequenceMap header name to index value to allow quick lookup.
+     * Returns a table that holds the index of every header field (or the lowest index of every header name if
+     * {@code names} is {@code true}) of the static table in the slot of its hash or {@code null} if two of them
+     * collide for the passed {@code seed}.
      */
-    @SuppressWarnings("unchecked")
-    private static CharSequenceMap<List<Integer>> createMap(int length) {
-        CharSequenceMap<List<Integer>> mapping =
-            new CharSequenceMap<List<Integer>>(true, UnsupportedValueConverter.<List<Integer>>instance(), length);
+    private static int[] newPerfectHashTable(int seed, int bits, boolean names) {
+        final int[] table = new int[1 << bits];
+        Arrays.fill(table, NOT_FOUND);
         for (int index = 0; index < length; index++) {
-            final QpackHeaderField field = getField(index);
-            final List<Integer> cursor = mapping.get(field.name);
-            if (cursor == null) {
-                final List<Integer> holder = new ArrayList<>(16);
-                holder.add(index);
-                mapping.set(field.name, holder);
-            } else {
-                cursor.add(index);
+            final QpackHeaderField field = STATIC_TABLE[index];
+            final int nameHash = AsciiString.hashCode(field.name);
+            final int slot = slot(names ? nameHash : fieldHash(nameHash, AsciiString.hashCode(field.value)), seed,
+                    bits);
+            final int existing = table[slot];
+            if (existing == NOT_FOUND) {
+                table[slot] = index;
+            } else if (!names || !AsciiString.contentEquals(STATIC_TABLE[existing].name, field.name)) {
+                return null;
             }
         }
-        return mapping;
+        return table;
     }
 
     private QpackStaticTable() {
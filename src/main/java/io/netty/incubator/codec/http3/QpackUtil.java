@@ -49,6 +49,24 @@ final class QpackUtil {
         }
     }
 
+    /**
+     * Returns the number of bytes written by {@link #encodePrefixedInteger(ByteBuf, byte, int, long)} for the passed
+     * {@code prefixLength} and {@code toEncode}.
+     */
+    static int prefixedIntegerLength(int prefixLength, long toEncode) {
+        int nbits = (1 << prefixLength) - 1;
+        if (toEncode < nbits) {
+            return 1;
+        }
+        int length = 2;
+        long remainder = toEncode - nbits;
+        while (remainder > 128) {
+            length++;
+            remainder = remainder / 128;
+        }
+        return length;
+    }
+
     /**
      * Decode the integer or return {@code -1} if not enough bytes are readable.
      * This method increases the readerIndex when the integer could be decoded.
@@ -113,6 +131,62 @@ final class QpackUtil {
         return i;
     }
 
+    /**
+     * Returns the index following the prefixed integer that starts at {@code index} or {@code -1} if the integer does
+     * not end before {@code endIndex}. This method does not modify the readerIndex.
+     *
+     * @param in the input {@link ByteBuf}
+     * @param index the index of the first byte of the integer.
+     * @param endIndex the index following the last byte that may be read.
+     * @param prefixLength the prefix length
+     * @return the index following the integer or {@code -1} if the integer is not complete.
+     */
+    static int prefixedIntegerEndIndex(ByteBuf in, int index, int endIndex, int prefixLength) {
+        if (index >= endIndex) {
+            return -1;
+        }
+        int nbits = (1 << prefixLength) - 1;
+        if ((in.getByte(index) & nbits) < nbits) {
+            return index + 1;
+        }
+        int idx = index + 1;
+        byte next;
+        do {
+            if (idx == endIndex) {
+                return -1;
+            }
+            next = in.getByte(idx++);
+        } while ((next & 0x80) == 0x80);
+        return idx;
+    }
+
+    /**
+     * Get the integer that starts at {@code index}, which must be completely readable, see
+     * {@link #prefixedIntegerEndIndex(ByteBuf, int, int, int)}. This method does not modify the readerIndex.
+     *
+     * @param in the input {@link ByteBuf}
+     * @param index the index of the first byte of the integer.
+     * @param prefixLength the prefix length
+     * @return the integer.
+     */
+    static long getPrefixedInteger(ByteBuf in, int index, int prefixLength) {
+        int nbits = (1 << prefixLength) - 1;
+        int first = in.getByte(index) & nbits;
+        if (first < nbits) {
+            return first;
+        }
+        int idx = index + 1;
+        long i = first;
+        int factor = 0;
+        byte next;
+        do {
+            next = in.getByte(idx++);
+            i += (next & 0x7fL) << factor;
+            factor += 7;
+        } while ((next & 0x80) == 0x80);
+        return i;
+    }
+
     static boolean firstByteEquals(ByteBuf in, byte mask) {
         return (in.getByte(in.readerIndex()) & mask) == mask;
     }
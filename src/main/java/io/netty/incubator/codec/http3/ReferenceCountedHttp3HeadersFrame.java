@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.internal.ObjectUtil;
+import io.netty.util.internal.StringUtil;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A received {@link Http3HeadersFrame} whose {@link #headers()} contain values that share the received bytes, see
+ * {@link QpackRawHeaderValue}. The received bytes are released once this frame is released, so the values must not be
+ * accessed after the frame was released.
+ */
+final class ReferenceCountedHttp3HeadersFrame extends AbstractReferenceCounted implements Http3HeadersFrame {
+    private final Http3Headers headers;
+    private final List<ByteBuf> buffers;
+    private final Http3HeadersFactory headersFactory;
+    private final boolean last;
+
+    ReferenceCountedHttp3HeadersFrame(Http3Headers headers, List<ByteBuf> buffers,
+                                      Http3HeadersFactory headersFactory, boolean last) {
+        this.headers = ObjectUtil.checkNotNull(headers, "headers");
+        this.buffers = ObjectUtil.checkNotNull(buffers, "buffers");
+        this.headersFactory = ObjectUtil.checkNotNull(headersFactory, "headersFactory");
+        this.last = last;
+    }
+
+    @Override
+    public Http3Headers headers() {
+        return headers;
+    }
+
+    @Override
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * Returns a copy of the {@link #headers()} of the passed frame which remains valid once the frame was released.
+     * The copy is created by the {@link Http3HeadersFactory} that created the {@link #headers()}.
+     */
+    static Http3Headers detachedHeaders(Http3HeadersFrame frame) {
+        if (!(frame instanceof ReferenceCountedHttp3HeadersFrame)) {
+            return frame.headers();
+        }
+        final Http3Headers headers = frame.headers();
+        final Http3Headers copy = ((ReferenceCountedHttp3HeadersFrame) frame).headersFactory.newHeaders();
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            final CharSequence value = header.getValue();
+            copy.add(header.getKey(), value instanceof QpackRawHeaderValue ? value.toString() : value);
+        }
+        return copy;
+    }
+
+    @Override
+    protected void deallocate() {
+        for (ByteBuf buffer : buffers) {
+            buffer.release();
+        }
+    }
+
+    @Override
+    public ReferenceCounted touch(Object hint) {
+        for (ByteBuf buffer : buffers) {
+            buffer.touch(hint);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Objects.equals(headers, ((ReferenceCountedHttp3HeadersFrame) o).headers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(headers);
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(headers=" + headers() + ", refCnt=" + refCnt() + ')';
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2026 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of all JMH benchmarks, which are run with {@code java -cp <test classpath> org.openjdk.jmh.Main <name>}.
+ * <p>
+ * Benchmarks are run by {@link FastThreadLocalThread}s, like the event loops that run the codec, so that
+ * {@link FastThreadLocal}s are measured as these are used.
+ */
+@Fork(value = 1, jvmArgsAppend = {
+        "-Djmh.executor=CUSTOM",
+        "-Djmh.executor.class=io.netty.incubator.codec.http3.AbstractMicrobenchmark$HarnessExecutor"
+})
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public abstract class AbstractMicrobenchmark {
+
+    public static final class HarnessExecutor extends ThreadPoolExecutor {
+        public HarnessExecutor(int maxThreads, String prefix) {
+            super(maxThreads, maxThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                    new DefaultThreadFactory(prefix));
+        }
+    }
+}
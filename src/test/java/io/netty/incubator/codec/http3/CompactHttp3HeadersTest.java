@@ -0,0 +1,224 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CompactHttp3HeadersTest {
+
+    @Test
+    public void pseudoHeadersAreIteratedFirst() {
+        Http3Headers headers = new CompactHttp3Headers(true, 1);
+        headers.add("foo", "1");
+        headers.path("/");
+        headers.add("bar", "2");
+        headers.method("GET");
+        headers.add(new AsciiString("foo"), "3");
+
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            names.add(header.getKey() + "=" + header.getValue());
+        }
+        assertEquals(asList(":method=GET", ":path=/", "foo=1", "bar=2", "foo=3"), names);
+        assertEquals(5, headers.size());
+    }
+
+    @Test
+    public void getAllAndRemove() {
+        Http3Headers headers = new CompactHttp3Headers();
+        headers.add("foo", "1");
+        headers.add("bar", "2");
+        headers.add("foo", "3");
+
+        assertEquals("1", headers.get("foo"));
+        assertEquals(asList("1", "3"), headers.getAll("foo"));
+        assertTrue(headers.contains("foo", "3"));
+        assertFalse(headers.contains("bar", "3"));
+
+        headers.add("baz", "Value");
+        assertTrue(headers.contains("baz", "value", true));
+        assertFalse(headers.contains("baz", "value", false));
+        headers.remove("baz");
+
+        assertTrue(headers.remove("foo"));
+        assertFalse(headers.contains("foo"));
+        assertEquals("2", headers.get("bar"));
+        assertEquals(1, headers.size());
+        assertFalse(headers.remove("foo"));
+    }
+
+    @Test
+    public void lookupWithStringAndAsciiStringNames() {
+        Http3Headers headers = new CompactHttp3Headers();
+        headers.add(new AsciiString("foo"), "1");
+        headers.add("bar", "2");
+        headers.add(new AsciiString("foo"), "3");
+
+        assertEquals("1", headers.get("foo"));
+        assertEquals("2", headers.get(new AsciiString("bar")));
+        assertEquals(asList("1", "3"), headers.getAll("foo"));
+        assertEquals(asList("1", "3"), headers.getAll(new AsciiString("foo")));
+        assertNull(headers.get("baz"));
+        assertNull(headers.get(new AsciiString("baz")));
+
+        assertTrue(headers.remove("foo"));
+        assertFalse(headers.contains(new AsciiString("foo")));
+        assertEquals(1, headers.size());
+    }
+
+    @Test
+    public void setReplacesAllValues() {
+        Http3Headers headers = new CompactHttp3Headers();
+        headers.add("foo", "1");
+        headers.add("foo", "2");
+        headers.setInt("foo", 3);
+        headers.status("200");
+        headers.status("404");
+
+        assertEquals(asList("3"), headers.getAll("foo"));
+        assertEquals(3, headers.getInt("foo"));
+        assertEquals("404", headers.status());
+        assertEquals(2, headers.size());
+    }
+
+    @Test
+    public void duplicatePseudoHeader() {
+        Http3Headers headers = new CompactHttp3Headers();
+        headers.add(":method", "GET");
+        assertThrows(Http3HeadersValidationException.class, () -> headers.add(":method", "POST"));
+    }
+
+    @Test
+    public void duplicatePseudoHeaderWithoutValidation() {
+        Http3Headers headers = new CompactHttp3Headers(false, 1);
+        headers.add(":path", "/a");
+        headers.add("foo", "1");
+        headers.add(":path", "/b");
+
+        assertEquals("/a", headers.path());
+        assertEquals(asList("/a", "/b"), headers.getAll(":path"));
+        assertTrue(headers.contains(":path", "/b"));
+        assertEquals(3, headers.size());
+
+        List<String> fields = new ArrayList<>();
+        for (Map.Entry<CharSequence, CharSequence> header : headers) {
+            fields.add(header.getKey() + "=" + header.getValue());
+        }
+        assertEquals(asList(":path=/a", "foo=1", ":path=/b"), fields);
+
+        Http3Headers expected = new DefaultHttp3Headers(false);
+        expected.add(":path", "/a");
+        expected.add("foo", "1");
+        expected.add(":path", "/b");
+        assertEquals(expected, headers);
+
+        headers.path("/c");
+        assertEquals(asList("/c"), headers.getAll(":path"));
+        assertEquals(2, headers.size());
+        assertTrue(headers.remove(":path"));
+        assertFalse(headers.contains(":path"));
+        assertEquals(1, headers.size());
+    }
+
+    @Test
+    public void invalidName() {
+        Http3Headers headers = new CompactHttp3Headers();
+        assertThrows(Http3HeadersValidationException.class, () -> headers.add("Foo", "bar"));
+        assertThrows(Http3HeadersValidationException.class, () -> headers.add("", "bar"));
+    }
+
+    @Test
+    public void valueIteratorRemove() {
+        Http3Headers headers = new CompactHttp3Headers();
+        headers.add("foo", "1");
+        headers.add("bar", "2");
+        headers.add("foo", "3");
+        headers.add("foo", "4");
+
+        Iterator<CharSequence> values = headers.valueIterator("foo");
+        assertEquals("1", values.next());
+        values.remove();
+        assertEquals("3", values.next());
+        assertEquals("4", values.next());
+        values.remove();
+        assertFalse(values.hasNext());
+
+        assertEquals(asList("3"), headers.getAll("foo"));
+        assertEquals(2, headers.size());
+    }
+
+    @Test
+    public void equalToDefaultHttp3Headers() {
+        Http3Headers compact = new CompactHttp3Headers(true, 1);
+        Http3Headers defaultHeaders = new DefaultHttp3Headers();
+        for (Http3Headers headers : asList(compact, defaultHeaders)) {
+            headers.method("GET");
+            headers.path("/");
+            headers.add("foo", "1");
+            headers.add("foo", "2");
+            headers.add("bar", "3");
+        }
+        assertEquals(compact, defaultHeaders);
+        assertEquals(defaultHeaders, compact);
+        assertEquals(compact.hashCode(), defaultHeaders.hashCode());
+
+        compact.clear();
+        assertTrue(compact.isEmpty());
+        assertNull(compact.method());
+        assertNull(compact.get("foo"));
+    }
+
+    @Test
+    public void hashCodeIndependentOfInsertionOrder() {
+        Http3Headers compact = new CompactHttp3Headers(true, 1);
+        compact.path("/");
+        compact.method("GET");
+        compact.add("bar", "3");
+        compact.add("foo", "1");
+        compact.add("foo", "2");
+        Http3Headers defaultHeaders = new DefaultHttp3Headers();
+        defaultHeaders.path("/");
+        defaultHeaders.method("GET");
+        defaultHeaders.add("foo", "1");
+        defaultHeaders.add("bar", "3");
+        defaultHeaders.add("foo", "2");
+        Http3Headers otherDefaultHeaders = new DefaultHttp3Headers();
+        otherDefaultHeaders.method("GET");
+        otherDefaultHeaders.path("/");
+        otherDefaultHeaders.add("foo", "1");
+        otherDefaultHeaders.add("foo", "2");
+        otherDefaultHeaders.add("bar", "3");
+
+        assertEquals(compact, defaultHeaders);
+        assertEquals(defaultHeaders, compact);
+        assertEquals(defaultHeaders, otherDefaultHeaders);
+        assertEquals(compact.hashCode(), defaultHeaders.hashCode());
+        assertEquals(defaultHeaders.hashCode(), otherDefaultHeaders.hashCode());
+    }
+}
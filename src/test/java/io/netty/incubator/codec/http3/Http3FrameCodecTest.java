@@ -22,15 +22,24 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import io.netty.incubator.codec.quic.QuicStreamFrame;
 import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.AsciiString;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_CANCEL_PUSH_FRAME_MAX_LEN;
 import static io.netty.incubator.codec.http3.Http3CodecUtils.HTTP3_CANCEL_PUSH_FRAME_TYPE;
@@ -47,7 +56,10 @@ import static io.netty.incubator.codec.http3.Http3TestUtils.verifyClose;
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -68,6 +80,8 @@ public class Http3FrameCodecTest {
     private QpackDecoderHandler qpackDecoderHandler;
     private QpackAttributes qpackAttributes;
     private long maxTableCapacity;
+    private boolean retainRawHeaderValues;
+    private long blockedStreamTimeoutMillis;
 
     public static Collection<Object[]> data() {
         return asList(
@@ -94,6 +108,11 @@ public class Http3FrameCodecTest {
     private EmbeddedQuicStreamChannel codecChannel;
 
     private void setUp(int maxBlockedStreams, boolean delayQpackStreams) throws Exception {
+        setUp(maxBlockedStreams, delayQpackStreams, Http3HeadersFactory.defaultHeadersFactory());
+    }
+
+    private void setUp(int maxBlockedStreams, boolean delayQpackStreams, Http3HeadersFactory headersFactory)
+            throws Exception {
         parent = new EmbeddedQuicChannel(true);
         qpackAttributes = new QpackAttributes(parent, false);
         Http3.setQpackAttributes(parent, qpackAttributes);
@@ -127,7 +146,8 @@ public class Http3FrameCodecTest {
                         Http3RequestStreamDecodeStateValidator decStateValidator =
                                 new Http3RequestStreamDecodeStateValidator();
                         ch.pipeline().addLast(new Http3FrameCodec(Http3FrameTypeValidator.NO_VALIDATION, decoder,
-                                MAX_HEADER_SIZE, encoder, encStateValidator, decStateValidator, (id, v) -> false));
+                                MAX_HEADER_SIZE, encoder, encStateValidator, decStateValidator, (id, v) -> false,
+                                false, headersFactory, retainRawHeaderValues, blockedStreamTimeoutMillis));
                         ch.pipeline().addLast(encStateValidator);
                         ch.pipeline().addLast(decStateValidator);
                     }
@@ -292,6 +312,290 @@ public class Http3FrameCodecTest {
         testFrameEncodedAndDecoded(fragmented, maxBlockedStreams, delayQpackStreams, headersFrame);
     }
 
+    @Test
+    public void testHttp3HeadersFrameUsesHeadersFactory() throws Exception {
+        final List<Http3Headers> created = new ArrayList<>();
+        setUp(0, false, () -> {
+            Http3Headers headers = new DefaultHttp3Headers(true, 4);
+            created.add(headers);
+            return headers;
+        });
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        encodeFrame(false, headersFrame, true);
+        assertTrue(codecChannel.writeInbound((ByteBuf) codecChannel.readOutbound()));
+        relayQPACKEncoderInstructions();
+
+        Http3HeadersFrame actualFrame = codecChannel.readInbound();
+        assertEquals(1, created.size());
+        assertSame(created.get(0), actualFrame.headers());
+        Http3TestUtils.assertFrameEquals(headersFrame, actualFrame);
+    }
+
+    @Test
+    public void testHttp3PushPromiseFrameUsesHeadersFactory() throws Exception {
+        setUp(0, false, Http3HeadersFactory.compactHeadersFactory(8));
+        Http3PushPromiseFrame pushPromiseFrame = new DefaultHttp3PushPromiseFrame(9);
+        addRequestHeaders(pushPromiseFrame.headers());
+        encodeFrame(false, pushPromiseFrame, true);
+        assertTrue(codecChannel.writeInbound((ByteBuf) codecChannel.readOutbound()));
+        relayQPACKEncoderInstructions();
+
+        Http3PushPromiseFrame actualFrame = codecChannel.readInbound();
+        assertInstanceOf(CompactHttp3Headers.class, actualFrame.headers());
+        Http3TestUtils.assertFrameEquals(pushPromiseFrame, actualFrame);
+    }
+
+    @Test
+    public void testHttp3HeadersFrameWithRawHeaderValues() throws Exception {
+        retainRawHeaderValues = true;
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        // Huffman encoding would make the value longer, so it is sent as is.
+        String token = new String(new char[100]).replace('\0', '#');
+        headersFrame.headers().add("x-token", token);
+        encodeFrame(false, headersFrame, true);
+        ByteBuf encoded = codecChannel.readOutbound();
+        assertTrue(codecChannel.writeInbound(encoded));
+        relayQPACKEncoderInstructions();
+
+        Http3HeadersFrame actualFrame = codecChannel.readInbound();
+        assertTrue(actualFrame instanceof ReferenceCounted);
+        assertFalse(actualFrame.headers().get("x-token") instanceof String);
+        assertEquals(headersFrame.headers().size(), actualFrame.headers().size());
+        assertEquals(headersFrame.headers().path().toString(), actualFrame.headers().path().toString());
+        assertEquals(token, actualFrame.headers().get("x-token").toString());
+        assertTrue(ReferenceCountUtil.release(actualFrame));
+        assertEquals(0, encoded.refCnt());
+    }
+
+    @Test
+    public void testHttp3HeadersFrameWithRawHeaderValuesDetached() throws Exception {
+        retainRawHeaderValues = true;
+        setUp(0, false, Http3HeadersFactory.compactHeadersFactory(8));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        String token = new String(new char[100]).replace('\0', '#');
+        headersFrame.headers().add("x-token", token);
+        encodeFrame(false, headersFrame, true);
+        assertTrue(codecChannel.writeInbound((ByteBuf) codecChannel.readOutbound()));
+        relayQPACKEncoderInstructions();
+
+        Http3HeadersFrame actualFrame = codecChannel.readInbound();
+        CharSequence rawToken = actualFrame.headers().get("x-token");
+        assertEquals(rawToken, token);
+        assertEquals(rawToken, new AsciiString(token));
+
+        Http3Headers detached = ReferenceCountedHttp3HeadersFrame.detachedHeaders(actualFrame);
+        assertTrue(ReferenceCountUtil.release(actualFrame));
+        assertInstanceOf(CompactHttp3Headers.class, detached);
+        assertEquals(headersFrame.headers(), detached);
+    }
+
+    @Test
+    public void testHttp3DataFrameWrittenWithoutComposite() throws Exception {
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        testFrameEncodedAndDecoded(false, 0, false, headersFrame);
+
+        // Small payloads are copied into one buffer together with the frame type and length.
+        ByteBuf small = Unpooled.buffer().writeLong(1);
+        assertTrue(codecChannel.writeOutbound(new DefaultHttp3DataFrame(small)));
+        assertEquals(0, small.refCnt());
+        ByteBuf out = codecChannel.readOutbound();
+        assertEquals(1, out.nioBufferCount());
+        assertDataFrame(out, 1, 8);
+
+        // Large payloads get the frame type and length written into their headroom, if allowed.
+        int length = Http3FrameCodec.DATA_FRAME_COPY_THRESHOLD;
+        ByteBuf headroom = Unpooled.directBuffer(3 + length);
+        headroom.setIndex(3, 3).writeZero(length);
+        assertTrue(codecChannel.writeOutbound(new DefaultHttp3DataFrame(headroom, false, true)));
+        out = codecChannel.readOutbound();
+        assertSame(headroom, out);
+        assertDataFrame(out, 2, length);
+
+        // Large payloads without headroom are wrapped.
+        ByteBuf noHeadroom = Unpooled.directBuffer(length).writeZero(length);
+        assertTrue(codecChannel.writeOutbound(new DefaultHttp3DataFrame(noHeadroom)));
+        out = codecChannel.readOutbound();
+        assertEquals(1, noHeadroom.refCnt());
+        assertDataFrame(out, 2, length);
+        assertEquals(0, noHeadroom.refCnt());
+    }
+
+    @Test
+    public void testHttp3DataFrameWithWrappedArrayNotWrittenToInPlace() throws Exception {
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        testFrameEncodedAndDecoded(false, 0, false, headersFrame);
+
+        // The wrapped array is still owned by the caller, for example as a cached body.
+        int length = Http3FrameCodec.DATA_FRAME_COPY_THRESHOLD;
+        byte[] body = new byte[3 + length];
+        body[0] = (byte) 0xAB;
+        body[1] = (byte) 0xCD;
+        body[2] = (byte) 0xEF;
+        ByteBuf wrapped = Unpooled.wrappedBuffer(body).skipBytes(3);
+        assertTrue(codecChannel.writeOutbound(new DefaultHttp3DataFrame(wrapped)));
+        ByteBuf out = codecChannel.readOutbound();
+        assertDataFrame(out, 2, length);
+        assertEquals(0, wrapped.refCnt());
+        assertEquals((byte) 0xAB, body[0]);
+        assertEquals((byte) 0xCD, body[1]);
+        assertEquals((byte) 0xEF, body[2]);
+    }
+
+    @Test
+    public void testHttp3DataFrameWithCompositeContentNotWrittenToInPlace() throws Exception {
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        testFrameEncodedAndDecoded(false, 0, false, headersFrame);
+
+        // The composite owns its only reference, but its component is a slice of a buffer that is still in use.
+        int length = Http3FrameCodec.DATA_FRAME_COPY_THRESHOLD;
+        ByteBuf shared = Unpooled.directBuffer(3 + length).writeMedium(0xABCDEF).writeZero(length);
+        CompositeByteBuf composite = Unpooled.compositeBuffer();
+        composite.addComponent(true, shared.retainedSlice());
+        composite.skipBytes(3);
+        assertTrue(codecChannel.writeOutbound(new DefaultHttp3DataFrame(composite, false, true)));
+        ByteBuf out = codecChannel.readOutbound();
+        assertDataFrame(out, 2, length);
+        assertEquals(0, composite.refCnt());
+        assertEquals(0xABCDEF, shared.getUnsignedMedium(0));
+        shared.release();
+    }
+
+    @Test
+    public void testLastHttp3DataFrameWrittenWithFin() throws Exception {
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        testFrameEncodedAndDecoded(false, 0, false, headersFrame);
+
+        assertTrue(codecChannel.writeOutbound(new DefaultHttp3DataFrame(Unpooled.buffer().writeLong(1), true)));
+        QuicStreamFrame frame = codecChannel.readOutbound();
+        assertTrue(frame.hasFin());
+        assertTrue(codecChannel.isOutputShutdown());
+        assertDataFrame(frame.content(), 1, 8);
+    }
+
+    @Test
+    public void testLastHttp3HeadersFrameWrittenWithFin() throws Exception {
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame(new DefaultHttp3Headers(), true);
+        addRequestHeaders(headersFrame.headers());
+        assertTrue(codecChannel.writeOutbound(headersFrame));
+        QuicStreamFrame frame = codecChannel.readOutbound();
+        assertTrue(frame.hasFin());
+        assertTrue(codecChannel.isOutputShutdown());
+        assertTrue(codecChannel.writeInbound(frame.content()));
+        relayQPACKEncoderInstructions();
+
+        Http3HeadersFrame actualFrame = codecChannel.readInbound();
+        assertEquals(headersFrame.headers(), actualFrame.headers());
+    }
+
+    @Test
+    public void testHttp3HeadersFrameReceivedWithFinIsLast() throws Exception {
+        setUp(0, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        encodeFrame(false, headersFrame, true);
+        ByteBuf encoded = codecChannel.readOutbound();
+        assertTrue(codecChannel.writeInboundWithFin(encoded));
+        relayQPACKEncoderInstructions();
+
+        Http3HeadersFrame actualFrame = codecChannel.readInbound();
+        assertTrue(actualFrame.isLast());
+        assertEquals(headersFrame.headers(), actualFrame.headers());
+    }
+
+    private static void assertDataFrame(ByteBuf out, int lengthBytes, int length) {
+        try {
+            assertEquals(0, out.readByte());
+            assertEquals(length, Http3CodecUtils.readVariableLengthInteger(out, lengthBytes));
+            assertEquals(length, out.readableBytes());
+        } finally {
+            out.release();
+        }
+    }
+
+    @Test
+    public void testBlockedHttp3HeadersFrameTimesOut() throws Exception {
+        blockedStreamTimeoutMillis = 1000;
+        setUp(100, false);
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame();
+        addRequestHeaders(headersFrame.headers());
+        encodeFrame(false, headersFrame, true);
+        // Encoder instructions are not relayed yet, so the stream is blocked.
+        assertFalse(codecChannel.writeInbound((ByteBuf) codecChannel.readOutbound()));
+        assertEquals(1, decoder.blockedStreams());
+
+        codecChannel.advanceTimeBy(blockedStreamTimeoutMillis, TimeUnit.MILLISECONDS);
+        codecChannel.runScheduledPendingTasks();
+        assertThrows(Http3Exception.class, codecChannel::checkException);
+        assertEquals(Http3ErrorCode.QPACK_DECOMPRESSION_FAILED.code, codecChannel.outputShutdownError());
+        assertEquals(Http3ErrorCode.QPACK_DECOMPRESSION_FAILED.code, codecChannel.inputShutdownError());
+        assertEquals(0, decoder.blockedStreams());
+        assertEquals(1, decoder.blockedStreamsTimedOut());
+
+        // Inserts that arrive late do not resume the stream anymore.
+        relayQPACKEncoderInstructions();
+        assertNull(codecChannel.readInbound());
+    }
+
+    @Test
+    public void testHttp3HeadersFrameWithPreEncodedHeaders() throws Exception {
+        setUp(0, false);
+        Http3Headers template = new DefaultHttp3Headers();
+        template.status("200");
+        template.add("content-type", "text/plain");
+        template.add("server", "netty");
+        Http3PreEncodedHeaders preEncodedHeaders = Http3PreEncodedHeaders.encode(template);
+
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame(preEncodedHeaders);
+        headersFrame.headers().add("x-request-id", "1");
+        encodeFrame(false, headersFrame, true);
+        assertTrue(codecChannel.writeInbound((ByteBuf) codecChannel.readOutbound()));
+        relayQPACKEncoderInstructions();
+
+        Http3HeadersFrame actualFrame = codecChannel.readInbound();
+        Http3Headers expected = new DefaultHttp3Headers();
+        expected.add(template);
+        expected.add("x-request-id", "1");
+        assertEquals(expected, actualFrame.headers());
+    }
+
+    @Test
+    public void testHttp3HeadersFrameWithPreEncodedHeadersRejectsPseudoHeaders() throws Exception {
+        setUp(0, false);
+        Http3PreEncodedHeaders preEncodedHeaders =
+                Http3PreEncodedHeaders.encode(new DefaultHttp3Headers().status("200"));
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame(preEncodedHeaders);
+        headersFrame.headers().path("/");
+        assertThrows(Http3HeadersValidationException.class, () -> codecChannel.writeOutbound(headersFrame));
+    }
+
+    @Test
+    public void testHttp3HeadersFrameWithPreEncodedHeadersRejectsPseudoHeadersNotIteratedFirst() throws Exception {
+        setUp(0, false);
+        Http3PreEncodedHeaders preEncodedHeaders =
+                Http3PreEncodedHeaders.encode(new DefaultHttp3Headers().status("200"));
+        // Http3Headers implementations are not required to iterate pseudo-header fields first.
+        Http3Headers headers = mock(Http3Headers.class);
+        when(headers.isEmpty()).thenReturn(false);
+        when(headers.iterator()).thenReturn(Collections.<Map.Entry<CharSequence, CharSequence>>singletonList(
+                new AbstractMap.SimpleEntry<>("x-foo", "bar")).iterator());
+        when(headers.path()).thenReturn("/");
+        Http3HeadersFrame headersFrame = new DefaultHttp3HeadersFrame(preEncodedHeaders, headers, false);
+        assertThrows(Http3HeadersValidationException.class, () -> codecChannel.writeOutbound(headersFrame));
+    }
+
     @ParameterizedTest(name = "{index}: fragmented = {0}, maxBlockedStreams = {1}, delayQpackStreams = {2}")
     @MethodSource("data")
     public void testHttp3HeadersFrameWithTrailers(
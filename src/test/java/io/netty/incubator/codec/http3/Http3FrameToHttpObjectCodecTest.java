@@ -97,6 +97,7 @@ public class Http3FrameToHttpObjectCodecTest {
 
         Http3HeadersFrame headersFrame = ch.readOutbound();
         assertEquals("200", headersFrame.headers().status().toString());
+        assertTrue(headersFrame.isLast());
         assertTrue(ch.isOutputShutdown());
 
         assertFalse(ch.finish());
@@ -132,10 +133,12 @@ public class Http3FrameToHttpObjectCodecTest {
 
         Http3HeadersFrame headersFrame = ch.readOutbound();
         assertEquals("200", headersFrame.headers().status().toString());
+        assertFalse(headersFrame.isLast());
 
         Http3DataFrame dataFrame = ch.readOutbound();
         try {
             assertEquals("hello world", dataFrame.content().toString(CharsetUtil.UTF_8));
+            assertTrue(dataFrame.isLast());
         } finally {
             dataFrame.release();
         }
@@ -157,6 +160,8 @@ public class Http3FrameToHttpObjectCodecTest {
 
         Http3HeadersFrame trailersFrame = ch.readOutbound();
         assertEquals("value", trailersFrame.headers().get("key").toString());
+        assertFalse(headersFrame.isLast());
+        assertTrue(trailersFrame.isLast());
         assertTrue(ch.isOutputShutdown());
 
         assertFalse(ch.finish());
@@ -230,6 +235,7 @@ public class Http3FrameToHttpObjectCodecTest {
         Http3DataFrame dataFrame = ch.readOutbound();
         try {
             assertEquals(0, dataFrame.content().readableBytes());
+            assertTrue(dataFrame.isLast());
         } finally {
             dataFrame.release();
         }
@@ -319,6 +325,30 @@ public class Http3FrameToHttpObjectCodecTest {
         assertFalse(ch.finish());
     }
 
+    @Test
+    public void testDowngradeLastHeaders() {
+        EmbeddedQuicStreamChannel ch = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
+        Http3Headers headers = new DefaultHttp3Headers();
+        headers.path("/");
+        headers.method("GET");
+
+        assertTrue(ch.writeInboundWithFin(new DefaultHttp3HeadersFrame(headers, true)));
+
+        FullHttpRequest request = ch.readInbound();
+        try {
+            assertEquals("/", request.uri());
+            assertEquals(HttpMethod.GET, request.method());
+            assertEquals(HttpVersion.HTTP_1_1, request.protocolVersion());
+            assertFalse(request.content().isReadable());
+            assertFalse(HttpUtil.isTransferEncodingChunked(request));
+        } finally {
+            request.release();
+        }
+
+        assertNull(ch.readInbound());
+        assertFalse(ch.finish());
+    }
+
     @Test
     public void testDowngradeTrailers() {
         EmbeddedQuicStreamChannel ch = new EmbeddedQuicStreamChannel(new Http3FrameToHttpObjectCodec(true));
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2026 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.util.AsciiString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares {@link CompactHttp3Headers} and {@link DefaultHttp3Headers} for a typical request: building the headers
+ * as the decoder does, encoding them with a {@link QpackEncoder} that only uses the static table, and looking up the
+ * fields a server usually reads.
+ */
+@State(Scope.Benchmark)
+public class Http3HeadersBenchmark extends AbstractMicrobenchmark {
+
+    private static final AsciiString[][] REQUEST = {
+            { Http3Headers.PseudoHeaderName.METHOD.value(), AsciiString.of("GET") },
+            { Http3Headers.PseudoHeaderName.SCHEME.value(), AsciiString.of("https") },
+            { Http3Headers.PseudoHeaderName.AUTHORITY.value(), AsciiString.of("www.example.com") },
+            { Http3Headers.PseudoHeaderName.PATH.value(),
+                    AsciiString.of("/api/v1/users/12345/orders?status=shipped&page=2") },
+            { HttpHeaderNames.USER_AGENT, AsciiString.of("Mozilla/5.0 (X11; Linux x86_64; rv:120.0) " +
+                    "Gecko/20100101 Firefox/120.0") },
+            { HttpHeaderNames.ACCEPT, AsciiString.of("text/html,application/xhtml+xml,*/*;q=0.8") },
+            { HttpHeaderNames.ACCEPT_ENCODING, AsciiString.of("gzip, deflate, br") },
+            { HttpHeaderNames.ACCEPT_LANGUAGE, AsciiString.of("en-US,en;q=0.5") },
+            { HttpHeaderNames.COOKIE, AsciiString.of("session_id=4f9c2e1ab8d34c7e9f0a1b2c3d4e5f60; theme=dark") },
+            { HttpHeaderNames.REFERER, AsciiString.of("https://www.example.com/shop/cart") },
+            { AsciiString.of("sec-fetch-mode"), AsciiString.of("navigate") },
+            { AsciiString.of("x-request-id"), AsciiString.of("1f2e3d4c-5b6a-7980-a1b2-c3d4e5f60718") },
+    };
+
+    @Param({ "compact", "default" })
+    public String implementation;
+
+    private final QpackEncoder encoder = new QpackEncoder();
+    private final QpackAttributes attributes = new QpackAttributes(null, true);
+    private Http3Headers headers;
+    private ByteBuf out;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        headers = build();
+        out = Unpooled.buffer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        out.release();
+    }
+
+    private Http3Headers newHeaders() {
+        return "compact".equals(implementation) ? new CompactHttp3Headers() : new DefaultHttp3Headers();
+    }
+
+    @Benchmark
+    public Http3Headers build() {
+        Http3Headers headers = newHeaders();
+        for (AsciiString[] field : REQUEST) {
+            headers.add(field[0], field[1]);
+        }
+        return headers;
+    }
+
+    @Benchmark
+    public int encode() {
+        out.clear().writerIndex(QpackEncoder.MAX_FIELD_SECTION_PREFIX_LENGTH);
+        return encoder.encodeHeaders(attributes, out, 0, headers);
+    }
+
+    @Benchmark
+    public void lookup(Blackhole bh) {
+        bh.consume(headers.method());
+        bh.consume(headers.path());
+        bh.consume(headers.authority());
+        bh.consume(headers.get(HttpHeaderNames.CONTENT_LENGTH));
+        bh.consume(headers.contains(HttpHeaderNames.HOST));
+        bh.consume(headers.get(HttpHeaderNames.ACCEPT_ENCODING));
+        bh.consume(headers.get(HttpHeaderNames.COOKIE));
+    }
+}
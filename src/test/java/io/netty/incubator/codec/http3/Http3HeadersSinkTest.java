@@ -88,6 +88,15 @@ public class Http3HeadersSinkTest {
         assertThrows(Http3HeadersValidationException.class, () -> sink.finish());
     }
 
+    @Test
+    public void testDuplicatePseudoHeaderRejectedByHeaders() {
+        // The sink does not validate, but the headers refuse a second value for a pseudo-header.
+        Http3HeadersSink sink = new Http3HeadersSink(new CompactHttp3Headers(), 512, false, false);
+        addMandatoryPseudoHeaders(sink, true);
+        sink.accept(Http3Headers.PseudoHeaderName.AUTHORITY.value(), "value");
+        assertThrows(Http3HeadersValidationException.class, () -> sink.finish());
+    }
+
     @Test
     public void testMandatoryPseudoHeaderMissingRequest() {
         Http3HeadersSink sink = new Http3HeadersSink(new DefaultHttp3Headers(), 512, true, false);
@@ -15,11 +15,17 @@
  */
 package io.netty.incubator.codec.http3;
 
+import io.netty.channel.ChannelDuplexHandler;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.incubator.codec.quic.QuicStreamChannel;
+import org.junit.jupiter.api.Test;
 
+import static io.netty.incubator.codec.http3.Http3SettingsFrame.HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class Http3ServerConnectionHandlerTest extends AbtractHttp3ConnectionHandlerTest {
     private static final ChannelHandler REQUEST_HANDLER = new ChannelInboundHandlerAdapter() {
@@ -42,4 +48,36 @@ public class Http3ServerConnectionHandlerTest extends AbtractHttp3ConnectionHand
     protected void assertBidirectionalStreamHandled(EmbeddedQuicChannel channel, QuicStreamChannel streamChannel) {
         assertNotNull(streamChannel.pipeline().context(REQUEST_HANDLER));
     }
+
+    @Test
+    public void testQpackMemoryBudgetReservedWhileAdded() throws Exception {
+        QpackMemoryBudget budget = new QpackMemoryBudget(100);
+        QpackOptions options = QpackOptions.builder().memoryBudget(budget).build();
+        Http3SettingsFrame settings = new DefaultHttp3SettingsFrame();
+        settings.put(HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY, 256L);
+
+        // A handler that is never added to a pipeline must not hold a reservation.
+        new Http3ServerConnectionHandler(REQUEST_HANDLER, null, null, settings, false, null, options);
+        Http3ConnectionHandler handler =
+                new Http3ServerConnectionHandler(REQUEST_HANDLER, null, null, settings, false, null, options);
+        assertEquals(0, budget.reservedCapacity());
+
+        EmbeddedQuicChannel quicChannel = new EmbeddedQuicChannel(true, new ChannelDuplexHandler());
+        ChannelHandlerContext ctx = quicChannel.pipeline().firstContext();
+        handler.handlerAdded(ctx);
+        handler.channelRegistered(ctx);
+        handler.channelActive(ctx);
+        assertEquals(100, budget.reservedCapacity());
+        assertEquals(100, handler.maxTableCapacity());
+
+        final EmbeddedQuicStreamChannel localControlStream = quicChannel.localControlStream();
+        assertNotNull(localControlStream);
+
+        handler.channelInactive(ctx);
+        handler.channelUnregistered(ctx);
+        handler.handlerRemoved(ctx);
+        assertEquals(0, budget.reservedCapacity());
+
+        assertTrue(localControlStream.finishAndReleaseAll());
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QpackDecoderBlockedStreamsTest {
+    private final QpackDecoderBlockedStreams blockedStreams = new QpackDecoderBlockedStreams(16);
+    private final List<Long> resumed = new ArrayList<>();
+
+    @Test
+    public void unblockAllSatisfiedInOrder() {
+        add(0, 5);
+        add(4, 2);
+        add(8, 3);
+        add(12, 7);
+        assertEquals(4, blockedStreams.size());
+
+        unblock(1);
+        assertEquals(0, resumed.size());
+
+        // Insert count may advance past several Required Insert Counts at once.
+        unblock(5);
+        assertEquals(asList(4L, 8L, 0L), resumed);
+        assertEquals(1, blockedStreams.size());
+
+        unblock(7);
+        assertEquals(asList(4L, 8L, 0L, 12L), resumed);
+        assertEquals(0, blockedStreams.size());
+    }
+
+    @Test
+    public void removeAbandonedStream() {
+        add(0, 2);
+        add(4, 2);
+        assertTrue(blockedStreams.remove(0));
+        assertFalse(blockedStreams.remove(0));
+        assertFalse(blockedStreams.remove(8));
+        assertEquals(1, blockedStreams.size());
+
+        unblock(2);
+        assertEquals(singletonList(4L), resumed);
+    }
+
+    @Test
+    public void addSameStreamReplaces() {
+        add(0, 2);
+        add(0, 3);
+        assertEquals(1, blockedStreams.size());
+        unblock(2);
+        assertEquals(0, resumed.size());
+        unblock(3);
+        assertEquals(singletonList(0L), resumed);
+    }
+
+    private void add(long streamId, int requiredInsertCount) {
+        blockedStreams.add(streamId, requiredInsertCount, () -> resumed.add(streamId));
+    }
+
+    private void unblock(int insertCount) {
+        blockedStreams.unblock(insertCount, Runnable::run);
+    }
+}
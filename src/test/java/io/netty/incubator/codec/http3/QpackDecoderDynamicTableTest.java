@@ -17,10 +17,16 @@
 package io.netty.incubator.codec.http3;
 
 
+import io.netty.util.AsciiString;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class QpackDecoderDynamicTableTest {
 
@@ -52,12 +58,25 @@ public class QpackDecoderDynamicTableTest {
         QpackDecoderDynamicTable table = newTable(100);
         QpackHeaderField entry = new QpackHeaderField("foo", "bar");
         table.add(entry);
-        assertEquals(entry, table.getEntry(0));
+        assertEntry(entry, table.getEntry(0));
         table.clear();
 
         assertThrows(QpackException.class, () -> table.getEntry(0));
     }
 
+    @Test
+    public void getEntryReturnsSameInstance() throws Exception {
+        QpackDecoderDynamicTable table = newTable(1024);
+        table.add(fooBar);
+        for (int i = 0; i < 16; i++) {
+            // Grow the queue of entries.
+            table.add(new QpackHeaderField("x-foo", String.valueOf(i)));
+        }
+        assertSame(table.getEntry(0), table.getEntry(0));
+        assertSame(table.getEntry(0), table.getEntryRelativeEncoderInstructions(16));
+        assertEntry(fooBar, table.getEntry(0));
+    }
+
     @Test
     public void getEntryExceptionally() throws Exception {
         QpackDecoderDynamicTable table = newTable(1);
@@ -76,8 +95,8 @@ public class QpackDecoderDynamicTableTest {
         table.add(entry2);
         assertEquals(2, table.length());
         assertEquals(size1 + size2, table.size());
-        assertEquals(entry1, table.getEntry(0));
-        assertEquals(entry2, table.getEntry(1));
+        assertEntry(entry1, table.getEntry(0));
+        assertEntry(entry2, table.getEntry(1));
 
         table.setCapacity((size1 + size2) * 2); //larger capacity
         assertEquals(2, table.length());
@@ -87,7 +106,8 @@ public class QpackDecoderDynamicTableTest {
         //entry1 will be removed
         assertEquals(1, table.length());
         assertEquals(size2, table.size());
-        assertEquals(entry2, table.getEntry(0));
+        assertEntry(entry2, table.getEntry(1));
+        assertThrows(QpackException.class, () -> table.getEntry(0));
         table.setCapacity(0); //clear all
         assertEquals(0, table.length());
         assertEquals(0, table.size());
@@ -101,7 +121,7 @@ public class QpackDecoderDynamicTableTest {
         QpackHeaderField entry2 = new QpackHeaderField("hello", "world");
         table.add(entry1); //success
         assertEquals(entry1.size(), table.size());
-        assertEquals(entry1, table.getEntry(0));
+        assertEntry(entry1, table.getEntry(0));
         table.setCapacity(32); //entry1 is removed from table
         assertEquals(0, table.size());
         assertEquals(0, table.length());
@@ -110,15 +130,77 @@ public class QpackDecoderDynamicTableTest {
         table.add(entry1); //success
         assertEquals(entry1.size(), table.size());
         assertEquals(1, table.length());
-        assertEquals(entry1, table.getEntry(0));
+        assertEntry(entry1, table.getEntry(1));
         table.add(entry2); //entry2 is added, but entry1 is removed from table
         assertEquals(entry2.size(), table.size());
         assertEquals(1, table.length());
-        assertEquals(entry2, table.getEntry(1));
+        assertEntry(entry2, table.getEntry(2));
 
         table.setCapacity(128);
         table.add(entry1); //success
-        assertEquals(entry2, table.getEntry(0));
+        assertEntry(entry2, table.getEntry(2));
+        assertEntry(entry1, table.getEntry(3));
+    }
+
+    @Test
+    public void relativeIndexing() throws Exception {
+        QpackDecoderDynamicTable table = newTable(200);
+        QpackHeaderField entry1 = new QpackHeaderField("foo", "bar");
+        QpackHeaderField entry2 = new QpackHeaderField("hello", "world");
+        table.add(entry1);
+        table.add(entry2);
+        assertEntry(entry2, table.getEntryRelativeEncoderInstructions(0));
+        assertEntry(entry1, table.getEntryRelativeEncoderInstructions(1));
+        assertThrows(QpackException.class, () -> table.getEntryRelativeEncoderInstructions(2));
+
+        // duplicate entry1, which evicts nothing but shares no state with the original
+        table.add(table.getEntryRelativeEncoderInstructions(1));
+        assertEquals(3, table.insertCount());
+        assertEntry(entry1, table.getEntry(2));
+        assertEntry(entry1, table.getEntry(0));
+    }
+
+    @Test
+    public void entriesStayValidAfterEviction() throws Exception {
+        QpackDecoderDynamicTable table = newTable(100);
+        // grow the table beyond its initial number of entries and chunk size
+        QpackHeaderField entry = null;
+        for (int i = 0; i < 100; i++) {
+            table.add(new QpackHeaderField("name" + i, "value" + i));
+            if (i == 10) {
+                entry = table.getEntry(i);
+            }
+        }
+        assertEquals(2, table.length());
+        assertEntry(new QpackHeaderField("name98", "value98"), table.getEntry(98));
+        assertEntry(new QpackHeaderField("name99", "value99"), table.getEntry(99));
+        assertEntry(new QpackHeaderField("name10", "value10"), entry);
+    }
+
+    @Test
+    public void chunkRetentionBounded() throws Exception {
+        QpackDecoderDynamicTable table = newTable(64 * 1024);
+        for (int i = 0; i < 1000; i++) {
+            table.add(new QpackHeaderField("name" + i, "value" + i));
+            // a retained value must not pin more than a small chunk
+            assertTrue(((AsciiString) table.getEntry(i).value).array().length <= 4 * 1024);
+        }
+        char[] large = new char[2000];
+        Arrays.fill(large, 'x');
+        table.add(new QpackHeaderField("large", new String(large)));
+        table.add(fooBar);
+
+        // a large entry has an array of its own
+        AsciiString largeValue = (AsciiString) table.getEntry(1000).value;
+        assertEquals("large".length() + large.length, largeValue.array().length);
+        assertNotSame(largeValue.array(), ((AsciiString) table.getEntry(1001).value).array());
+        assertSame(((AsciiString) table.getEntry(999).value).array(),
+                ((AsciiString) table.getEntry(1001).value).array());
+    }
+
+    private static void assertEntry(QpackHeaderField expected, QpackHeaderField actual) {
+        assertEquals(expected.name.toString(), actual.name.toString());
+        assertEquals(expected.value.toString(), actual.value.toString());
     }
 
     private static QpackDecoderDynamicTable newTable(long capacity) throws QpackException {
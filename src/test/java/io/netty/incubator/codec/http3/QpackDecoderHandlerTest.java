@@ -311,7 +311,8 @@ public class QpackDecoderHandlerTest {
         headersUpdater.accept(headers);
         final ByteBuf buf = decoderStream.alloc().buffer();
         try {
-            encoder.encodeHeaders(attributes, buf, decoderStream.alloc(), decoderStream.streamId(), headers);
+            buf.writerIndex(QpackEncoder.MAX_FIELD_SECTION_PREFIX_LENGTH);
+            encoder.encodeHeaders(attributes, buf, decoderStream.streamId(), headers);
         } finally {
             buf.release();
         }
@@ -328,7 +329,7 @@ public class QpackDecoderHandlerTest {
         encoderStream = (EmbeddedQuicStreamChannel) parent.createStream(QuicStreamType.UNIDIRECTIONAL,
                 new QpackEncoderHandler(maxTableCapacity, decoder)).get();
         attributes.encoderStream(encoderStream);
-        encoder = new QpackEncoder(dynamicTable);
+        encoder = new QpackEncoder(QpackOptions.defaults(), dynamicTable);
         encoder.configureDynamicTable(attributes, maxTableCapacity, 0);
         decoderStream = (EmbeddedQuicStreamChannel) parent.createStream(QuicStreamType.UNIDIRECTIONAL,
                 new QpackDecoderHandler(encoder)).get();
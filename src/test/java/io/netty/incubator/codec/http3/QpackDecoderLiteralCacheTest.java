@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class QpackDecoderLiteralCacheTest {
+    private final QpackDecoderLiteralCache cache = new QpackDecoderLiteralCache();
+
+    @Test
+    public void cachedOnceSeenTwice() {
+        ByteBuf buf = Unpooled.copiedBuffer("gzip", US_ASCII);
+        try {
+            AsciiString literal = AsciiString.of("gzip");
+            int hash = QpackDecoderLiteralCache.hash(buf, 4, false);
+            cache.put(buf, 0, 4, false, hash, literal);
+            assertNull(cache.get(buf, 4, false, hash));
+
+            cache.put(buf, 0, 4, false, hash, literal);
+            assertSame(literal, cache.get(buf, 4, false, hash));
+            assertNull(cache.get(buf, 4, true, QpackDecoderLiteralCache.hash(buf, 4, true)));
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void differentBytesNotReturned() {
+        ByteBuf gzip = Unpooled.copiedBuffer("gzip", US_ASCII);
+        ByteBuf gzap = Unpooled.copiedBuffer("gzap", US_ASCII);
+        try {
+            AsciiString literal = AsciiString.of("gzip");
+            int hash = QpackDecoderLiteralCache.hash(gzip, 4, false);
+            cache.put(gzip, 0, 4, false, hash, literal);
+            cache.put(gzip, 0, 4, false, hash, literal);
+            assertNotEquals(hash, QpackDecoderLiteralCache.hash(gzap, 4, false));
+            // Even on a hash collision the encoded bytes are compared.
+            assertNull(cache.get(gzap, 4, false, hash));
+        } finally {
+            gzip.release();
+            gzap.release();
+        }
+    }
+
+    @Test
+    public void decoderReturnsSameInstanceForRepeatedLiterals() throws Exception {
+        QpackDecoder decoder = new QpackDecoder(0, 0);
+        QpackEncoder encoder = new QpackEncoder();
+        Http3Headers headers = new DefaultHttp3Headers();
+        headers.add("x-vendor", "application/json");
+        Http3Headers[] decoded = new Http3Headers[3];
+        for (int i = 0; i < decoded.length; i++) {
+            ByteBuf buf = Unpooled.buffer();
+            try {
+                encoder.encodeFieldLinesWithoutDynamicTable(buf, headers);
+                Http3Headers out = new DefaultHttp3Headers();
+                // Field section prefix with Required Insert Count and Base of 0.
+                ByteBuf section = Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(new byte[2]), buf.retain());
+                try {
+                    decoder.decode(null, 0, section, section.readableBytes(), out::add, () -> { });
+                } finally {
+                    section.release();
+                }
+                decoded[i] = out;
+            } finally {
+                buf.release();
+            }
+        }
+        assertSame(name(decoded[1]), name(decoded[2]));
+        assertSame(decoded[1].get("x-vendor"), decoded[2].get("x-vendor"));
+    }
+
+    private static CharSequence name(Http3Headers headers) {
+        return headers.names().iterator().next();
+    }
+}
@@ -18,6 +18,9 @@ package io.netty.incubator.codec.http3;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -25,10 +28,15 @@ import java.util.Collection;
 
 import static io.netty.incubator.codec.http3.Http3SettingsFrame.HTTP3_SETTINGS_QPACK_MAX_TABLE_CAPACITY;
 import static io.netty.incubator.codec.http3.QpackDecoderStateSyncStrategy.ackEachInsert;
+import static io.netty.incubator.codec.http3.QpackDecoderStateSyncStrategy.ackOncePerReadCycle;
 import static io.netty.incubator.codec.http3.QpackUtil.MAX_UNSIGNED_INT;
 import static java.lang.Math.toIntExact;
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 public class QpackDecoderTest {
@@ -113,7 +121,258 @@ public class QpackDecoderTest {
         verifyField(entry, insertionCount - 1);
     }
 
+    @Test
+    public void insertCountIncrementsMergedPerReadCycle() throws Exception {
+        setup(128, ackOncePerReadCycle());
+
+        for (int i = 1; i <= 3; i++) {
+            decoder.insertLiteral(decoderStream, FOO + i, BAR + i);
+        }
+        assertTrue(decoderStream.outboundMessages().isEmpty());
+
+        decoder.writePendingInstructions(attributes);
+        ByteBuf increment = decoderStream.readOutbound();
+        try {
+            // Insert Count Increment of 3
+            assertEquals(1, increment.readableBytes());
+            assertEquals(3, QpackUtil.decodePrefixedIntegerAsInt(increment, 6));
+        } finally {
+            increment.release();
+        }
+        assertNull(decoderStream.readOutbound());
+
+        // Nothing is pending anymore.
+        decoder.writePendingInstructions(attributes);
+        assertFalse(decoderStream.finishAndReleaseAll());
+    }
+
+    @Test
+    public void sectionAcknowledgmentSupersedesPendingIncrement() throws Exception {
+        setup(128, ackOncePerReadCycle());
+
+        decoder.insertLiteral(decoderStream, FOO, BAR);
+        final ByteBuf headerBlock = Unpooled.buffer();
+        // Required Insert Count of 1, Delta Base of 0 and an indexed field line referencing the inserted entry.
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 2);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b1000_0000, 6, 0);
+        final Http3Headers headers = new DefaultHttp3Headers();
+        try {
+            assertTrue(decoder.decode(attributes, 4, headerBlock, headerBlock.readableBytes(),
+                    new Http3HeadersSink(headers, 1024, false, false), () -> { }));
+        } finally {
+            headerBlock.release();
+        }
+        assertEquals(BAR, headers.get(FOO).toString());
+        assertTrue(decoderStream.outboundMessages().isEmpty());
+
+        decoder.writePendingInstructions(attributes);
+        ByteBuf instructions = decoderStream.readOutbound();
+        try {
+            // Only the section acknowledgment as it implicitly acknowledges the insert.
+            assertEquals(4, QpackUtil.decodePrefixedInteger(instructions, 7));
+            assertFalse(instructions.isReadable());
+        } finally {
+            instructions.release();
+        }
+        assertFalse(decoderStream.finishAndReleaseAll());
+    }
+
+    @Test
+    public void decodeIncrementallyAsBytesArrive() throws Exception {
+        setup(128);
+
+        final ByteBuf headerBlock = Unpooled.buffer();
+        // Required Insert Count of 0 and Delta Base of 0.
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        // Indexed field line referencing the static table entry ":method: GET".
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b1100_0000, 6, 17);
+        // Literal field line with a name reference to the static table entry ":path".
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0101_0000, 4, 1);
+        final String path = "/some/path/that/is/longer/than/127/bytes/" + new String(new char[100]).replace('\0', 'x');
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, path.length());
+        headerBlock.writeCharSequence(path, CharsetUtil.US_ASCII);
+        // Literal field line with a literal name.
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0010_0000, 3, FOO.length());
+        headerBlock.writeCharSequence(FOO, CharsetUtil.US_ASCII);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, BAR.length());
+        headerBlock.writeCharSequence(BAR, CharsetUtil.US_ASCII);
+
+        final Http3Headers headers = new DefaultHttp3Headers();
+        final Http3HeadersSink sink = new Http3HeadersSink(headers, 1024, false, false);
+        final QpackDecoder.FieldSectionState state = new QpackDecoder.FieldSectionState();
+        final ByteBuf received = Unpooled.buffer();
+        try {
+            int remaining = headerBlock.readableBytes();
+            while (headerBlock.isReadable()) {
+                received.writeBytes(headerBlock, 1);
+                final int read = decoder.decodeIncrementally(attributes, 4, received, remaining, state, sink,
+                        () -> { });
+                assertTrue(read >= 0);
+                remaining -= read;
+                if (remaining > 0) {
+                    // Only complete field lines are decoded, everything else is retained until more bytes arrive.
+                    assertTrue(headers.size() < 3);
+                }
+                received.discardReadBytes();
+            }
+            assertEquals(0, remaining);
+            assertFalse(received.isReadable());
+        } finally {
+            headerBlock.release();
+            received.release();
+        }
+        sink.finish();
+        assertEquals(3, headers.size());
+        assertEquals("GET", headers.method().toString());
+        assertEquals(path, headers.path().toString());
+        assertEquals(BAR, headers.get(FOO).toString());
+    }
+
+    @Test
+    public void decodeTruncatedFieldSection() throws Exception {
+        setup(128);
+
+        final ByteBuf headerBlock = Unpooled.buffer();
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        // Literal field line with a literal name that claims to be longer than the header block.
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0010_0000, 3, 10);
+        headerBlock.writeCharSequence(FOO, CharsetUtil.US_ASCII);
+        try {
+            assertThrows(QpackException.class, () -> decoder.decode(attributes, 4, headerBlock,
+                    headerBlock.readableBytes(), new Http3HeadersSink(new DefaultHttp3Headers(), 1024, false, false),
+                    () -> { }));
+        } finally {
+            headerBlock.release();
+        }
+    }
+
+    @Test
+    public void deferHuffmanDecodingOfValues() throws Exception {
+        setup(128);
+
+        final ByteBuf headerBlock = Unpooled.buffer();
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        // ":path" and "content-length" are used for validation and hence decoded eagerly.
+        writeHuffmanEncodedValueWithNameRef(headerBlock, 1, "/index.html");
+        writeHuffmanEncodedValueWithNameRef(headerBlock, 4, "100");
+        // "user-agent"
+        writeHuffmanEncodedValueWithNameRef(headerBlock, 95, "netty");
+
+        final Http3Headers headers = new DefaultHttp3Headers();
+        try {
+            assertEquals(headerBlock.readableBytes(), decoder.decodeIncrementally(attributes, 4, headerBlock,
+                    headerBlock.readableBytes(), new QpackDecoder.FieldSectionState(true),
+                    new Http3HeadersSink(headers, 1024, false, false), () -> { }));
+        } finally {
+            headerBlock.release();
+        }
+        assertFalse(headers.path() instanceof QpackDeferredHuffmanValue);
+        assertFalse(headers.get("content-length") instanceof QpackDeferredHuffmanValue);
+        final CharSequence userAgent = headers.get("user-agent");
+        assertTrue(userAgent instanceof QpackDeferredHuffmanValue);
+        assertFalse(((QpackDeferredHuffmanValue) userAgent).isDecoded());
+        assertTrue(headers.contains("user-agent", "netty"));
+        assertTrue(((QpackDeferredHuffmanValue) userAgent).isDecoded());
+        assertEquals("netty", userAgent.toString());
+    }
+
+    @Test
+    public void deferredValuesAccountedWithDecodedLength() throws Exception {
+        setup(128);
+
+        final ByteBuf headerBlock = Unpooled.buffer();
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        // "user-agent"
+        writeHuffmanEncodedValueWithNameRef(headerBlock, 95, "aaaaaaaaaa");
+        writeHuffmanEncodedValueWithNameRef(headerBlock, 95, "bbbbbbbbbb");
+
+        // Exactly the size of both header fields.
+        final long maxHeaderListSize = 2 * QpackHeaderField.sizeOf("user-agent", "aaaaaaaaaa");
+        final Http3Headers headers = new DefaultHttp3Headers();
+        final Http3HeadersSink sink = new Http3HeadersSink(headers, maxHeaderListSize, false, false);
+        try {
+            decoder.decodeIncrementally(attributes, 4, headerBlock, headerBlock.readableBytes(),
+                    new QpackDecoder.FieldSectionState(true), sink, () -> { });
+        } finally {
+            headerBlock.release();
+        }
+        sink.finish();
+        for (CharSequence value : headers.getAll("user-agent")) {
+            assertEquals(10, value.length());
+            assertFalse(((QpackDeferredHuffmanValue) value).isDecoded());
+        }
+    }
+
+    @Test
+    public void deferredValueWithInvalidEncoding() throws Exception {
+        setup(128);
+
+        final ByteBuf headerBlock = Unpooled.buffer();
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        // "user-agent" with a value that contains EOS.
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0101_0000, 4, 95);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b1000_0000, 7, 4);
+        headerBlock.writeInt(-1);
+
+        final Http3Headers headers = new DefaultHttp3Headers();
+        try {
+            assertThrows(QpackException.class, () -> decoder.decodeIncrementally(attributes, 4, headerBlock,
+                    headerBlock.readableBytes(), new QpackDecoder.FieldSectionState(true),
+                    new Http3HeadersSink(headers, 1024, false, false), () -> { }));
+        } finally {
+            headerBlock.release();
+        }
+        assertTrue(headers.isEmpty());
+    }
+
+    @Test
+    public void deferredValueEqualsCharSequence() throws Exception {
+        setup(128);
+
+        final ByteBuf headerBlock = Unpooled.buffer();
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 8, 0);
+        QpackUtil.encodePrefixedInteger(headerBlock, (byte) 0b0, 7, 0);
+        // "user-agent"
+        writeHuffmanEncodedValueWithNameRef(headerBlock, 95, "netty");
+
+        final Http3Headers headers = new DefaultHttp3Headers();
+        try {
+            decoder.decodeIncrementally(attributes, 4, headerBlock, headerBlock.readableBytes(),
+                    new QpackDecoder.FieldSectionState(true), new Http3HeadersSink(headers, 1024, false, false),
+                    () -> { });
+        } finally {
+            headerBlock.release();
+        }
+        final CharSequence userAgent = headers.get("user-agent");
+        assertTrue(userAgent instanceof QpackDeferredHuffmanValue);
+        assertEquals(userAgent, "netty");
+        assertEquals(userAgent, AsciiString.of("netty"));
+        assertEquals(AsciiString.of("netty").hashCode(), userAgent.hashCode());
+    }
+
+    private static void writeHuffmanEncodedValueWithNameRef(ByteBuf out, int staticNameIndex, String value) {
+        QpackUtil.encodePrefixedInteger(out, (byte) 0b0101_0000, 4, staticNameIndex);
+        final ByteBuf encoded = Unpooled.buffer();
+        try {
+            new QpackHuffmanEncoder().encode(encoded, value);
+            QpackUtil.encodePrefixedInteger(out, (byte) 0b1000_0000, 7, encoded.readableBytes());
+            out.writeBytes(encoded);
+        } finally {
+            encoded.release();
+        }
+    }
+
     private void setup(long capacity) throws QpackException {
+        setup(capacity, ackEachInsert());
+    }
+
+    private void setup(long capacity, QpackDecoderStateSyncStrategy syncStrategy) throws QpackException {
         long maxTableCapacity = MAX_UNSIGNED_INT;
         inserted = 0;
         this.maxEntries = toIntExact(QpackUtil.maxEntries(maxTableCapacity));
@@ -124,7 +383,7 @@ public class QpackDecoderTest {
         attributes = new QpackAttributes(parent, false);
         decoderStream = new EmbeddedQuicStreamChannel();
         attributes.decoderStream(decoderStream);
-        decoder = new QpackDecoder(maxTableCapacity, 0, table, ackEachInsert());
+        decoder = new QpackDecoder(maxTableCapacity, 0, table, syncStrategy);
         decoder.setDynamicTableCapacity(capacity);
     }
 
@@ -162,7 +421,7 @@ public class QpackDecoderTest {
     }
 
     private void verifyField(QpackHeaderField field, int fieldIndexWhenInserted) {
-        assertEquals(FOO + fieldIndexWhenInserted, field.name);
-        assertEquals(BAR + fieldIndexWhenInserted, field.value);
+        assertEquals(FOO + fieldIndexWhenInserted, field.name.toString());
+        assertEquals(BAR + fieldIndexWhenInserted, field.value.toString());
     }
 }
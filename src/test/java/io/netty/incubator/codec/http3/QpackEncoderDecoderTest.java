@@ -29,6 +29,7 @@ import org.junit.jupiter.api.Test;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static io.netty.buffer.UnpooledByteBufAllocator.DEFAULT;
 import static io.netty.incubator.codec.http3.Http3SettingsFrame.HTTP3_SETTINGS_QPACK_BLOCKED_STREAMS;
@@ -61,6 +62,10 @@ public class QpackEncoderDecoderTest {
     private final ByteBuf out = Unpooled.buffer();
     private final EmbeddedQuicChannel parent = new EmbeddedQuicChannel(true);
     private QpackAttributes attributes;
+    private QpackEncoderAdmissionPolicy admissionPolicy = QpackEncoderAdmissionPolicy.admitAll();
+    private QpackEncoderWarmSet warmSet = QpackEncoderWarmSet.none();
+    private int maxUnacknowledgedInserts = QpackEncoder.DEFAULT_MAX_UNACKNOWLEDGED_INSERTS;
+    private QpackMemoryBudget memoryBudget;
 
     @AfterEach
     public void tearDown() {
@@ -286,6 +291,65 @@ public class QpackEncoderDecoderTest {
         verifyDecodedHeader(oldEntry.name, oldEntry.value);
     }
 
+    @Test
+    public void insertWithDynamicNameReferenceToNewerEntry() throws Exception {
+        setup(256, 0);
+        encHeaders.add("x-foo", "bar");
+        encode(out, encHeaders);
+        decode(out, decHeaders);
+
+        resetState();
+        encHeaders.add("x-bar", "baz");
+        encHeaders.add("x-foo", "baz"); // name reference to an entry which is not the newest
+        encode(out, encHeaders);
+        decode(out, decHeaders);
+        assertEquals(3, decDynamicTable.insertCount());
+        assertEquals(2, decHeaders.size());
+        verifyDecodedHeader("x-bar", "baz");
+        verifyDecodedHeader("x-foo", "baz");
+    }
+
+    @Test
+    public void duplicateEntryWhichIsNotTheOldest() throws Exception {
+        setup(256, 0, 50);
+        // Do not ack any add so entries are not evicted from the table just marked for eviction hence leveraging
+        // duplicate path
+        stateSyncStrategyAckNextInsert = false;
+
+        addEncodeHeader("foo", "bar", 5);
+        ByteBuf spareEncode = Unpooled.buffer();
+        try {
+            encode(spareEncode, encHeaders);
+        } finally {
+            spareEncode.release();
+        }
+        verifyRequiredInsertCount(5);
+
+        // foo0 and foo1 are marked for eviction, duplicate the newer one of both.
+        QpackHeaderField entry = new QpackHeaderField("foo1", "bar");
+        final int idx = encDynamicTable.getEntryIndex(entry.name, entry.value);
+        assertEquals(1, idx);
+        assertTrue(encDynamicTable.requiresDuplication(idx, entry.size()));
+
+        resetState();
+        stateSyncStrategyAckNextInsert = true;
+
+        encHeaders.add(entry.name, entry.value);
+        encode(out, encHeaders); // duplicate but not add to the header block
+        decode(out, decHeaders);
+        assertEquals(6, decDynamicTable.insertCount());
+        verifyDecodedHeader(entry.name, entry.value);
+
+        // Refer to the duplicated entry, which must be a copy of foo1 on both ends.
+        resetState();
+        encHeaders.add(entry.name, entry.value);
+        encode(out, encHeaders);
+        verifyRequiredInsertCount(6);
+        decode(out, decHeaders);
+        assertEquals(1, decHeaders.size());
+        verifyDecodedHeader(entry.name, entry.value);
+    }
+
     @Test
     public void duplicateWithBlockedStreams() throws Exception {
         setup(256, 100, 50);
@@ -329,6 +393,299 @@ public class QpackEncoderDecoderTest {
         verifyDecodedHeader(oldEntry.name, oldEntry.value);
     }
 
+    @Test
+    public void encoderInstructionsWrittenOncePerFieldSection() throws Exception {
+        setup(256, 100);
+
+        drainNextSuspendedEncoderInstruction(); // dynamic table size instruction
+        addEncodeHeader("foo", "bar", 3);
+        encode(out, encHeaders);
+        verifyRequiredInsertCount(3);
+
+        // All inserts for the field section must be written with a single write.
+        assertEquals(1, suspendedEncoderInstructions.size());
+        drainNextSuspendedEncoderInstruction();
+        assertEquals(3, decDynamicTable.insertCount());
+
+        decode(out, decHeaders);
+        verifyKnownReceivedCount(3);
+        assertEquals(3, decHeaders.size());
+        verifyDecodedHeaders("foo", "bar", 3);
+
+        // No new inserts so nothing should be written to the encoder stream.
+        resetState();
+        addEncodeHeader("foo", "bar", 3);
+        encode(out, encHeaders);
+        assertTrue(suspendedEncoderInstructions.isEmpty());
+    }
+
+    @Test
+    public void headerFieldInsertedOnceAdmitted() throws Exception {
+        admissionPolicy = QpackEncoderAdmissionPolicy.frequencyBased(2, "x-request-id");
+        setup(256, 0);
+
+        encHeaders.add("foo", "bar");
+        encHeaders.add("x-request-id", "1");
+        encode(out, encHeaders);
+        // Seen only once, so encoded as literals.
+        verifyRequiredInsertCount(0);
+        decode(out, decHeaders);
+        assertEquals(2, decHeaders.size());
+        verifyDecodedHeader("foo", "bar");
+        verifyDecodedHeader("x-request-id", "1");
+
+        resetState();
+        encHeaders.add("foo", "bar");
+        encHeaders.add("x-request-id", "1");
+        encode(out, encHeaders);
+        // foo is now admitted, x-request-id is never inserted.
+        verifyRequiredInsertCount(1);
+        decode(out, decHeaders);
+        assertEquals(1, decDynamicTable.insertCount());
+        assertEquals(2, decHeaders.size());
+        verifyDecodedHeader("foo", "bar");
+        verifyDecodedHeader("x-request-id", "1");
+    }
+
+    @Test
+    public void admissionPolicyConsultedOnceForStaticAndDynamicNameMatch() throws Exception {
+        AtomicInteger admitCalls = new AtomicInteger();
+        admissionPolicy = (name, value) -> {
+            admitCalls.incrementAndGet();
+            return "x-first".contentEquals(value);
+        };
+        setup(256, 0);
+
+        // content-type is present in the static table and, once inserted, in the dynamic table.
+        encHeaders.add("content-type", "x-first");
+        encode(out, encHeaders);
+        verifyRequiredInsertCount(1);
+        decode(out, decHeaders);
+        assertEquals(1, admitCalls.get());
+
+        resetState();
+        encHeaders.add("content-type", "x-second");
+        encode(out, encHeaders);
+        assertEquals(2, admitCalls.get());
+        assertEquals(1, encoder.insertions());
+        decode(out, decHeaders);
+        assertEquals(1, decDynamicTable.insertCount());
+        assertEquals(1, decHeaders.size());
+        verifyDecodedHeader("content-type", "x-second");
+    }
+
+    @Test
+    public void dynamicTableWarmedOnConfiguration() throws Exception {
+        Http3Headers headerFields = new DefaultHttp3Headers();
+        headerFields.add(":method", "GET"); // present in the static table
+        headerFields.add("server", "netty"); // static table name reference
+        headerFields.add("x-foo", "bar");
+        headerFields.add("x-large", new String(new char[256]).replace('\0', 'a')); // does not fit
+        warmSet = QpackEncoderWarmSet.of(headerFields);
+        setup(256, 0);
+        assertEquals(2, decDynamicTable.insertCount());
+        verifyKnownReceivedCount(2);
+
+        encHeaders.add("server", "netty");
+        encHeaders.add("x-foo", "bar");
+        encode(out, encHeaders);
+        verifyRequiredInsertCount(2);
+        decode(out, decHeaders);
+        assertEquals(2, decDynamicTable.insertCount());
+        assertEquals(2, decHeaders.size());
+        verifyDecodedHeader("server", "netty");
+        verifyDecodedHeader("x-foo", "bar");
+    }
+
+    @Test
+    public void dynamicTableCapacityLimitedByMemoryBudget() throws Exception {
+        memoryBudget = new QpackMemoryBudget(300);
+        assertEquals(200, memoryBudget.reserve(200));
+        setup(256, 0);
+        assertEquals(300, memoryBudget.reservedCapacity());
+
+        // Each header field has a size of 40, so only two fit into the granted capacity of 100.
+        encHeaders.add("x-foo", "aaa");
+        encHeaders.add("x-bar", "bbb");
+        encHeaders.add("x-baz", "ccc");
+        encode(out, encHeaders);
+        decode(out, decHeaders);
+        assertEquals(2, decDynamicTable.insertCount());
+        assertEquals(3, decHeaders.size());
+        verifyDecodedHeader("x-baz", "ccc");
+
+        encoder.releaseMemoryBudget();
+        encoder.releaseMemoryBudget();
+        assertEquals(200, memoryBudget.reservedCapacity());
+        assertEquals(0, memoryBudget.reserve(0));
+        memoryBudget.release(200);
+        assertEquals(0, memoryBudget.reservedCapacity());
+    }
+
+    @Test
+    public void dynamicTableShrunkOnMemoryPressure() throws Exception {
+        memoryBudget = new QpackMemoryBudget(300);
+        setup(256, 0);
+        assertEquals(256, memoryBudget.reservedCapacity());
+
+        // Each header field has a size of 39.
+        addEncodeHeader("x-foo", "a", 5);
+        encode(out, encHeaders);
+        decode(out, decHeaders);
+        assertEquals(5, decDynamicTable.insertCount());
+
+        // Reference the entries without acknowledging the field section yet.
+        out.clear();
+        decHeaders.clear();
+        encode(out, encHeaders);
+        verifyRequiredInsertCount(5);
+
+        // Only 44 bytes are left for a decoder dynamic table, so the encoder should shrink to its fair share of the
+        // remaining 256 bytes, which are shared with one more connection. The oldest two entries do not fit, but can
+        // not be evicted while they are referenced.
+        assertEquals(44, memoryBudget.reserveFixed(100));
+        assertEquals(128, memoryBudget.fairShare());
+        assertEquals(300, memoryBudget.reservedCapacity());
+        assertEquals(5, decDynamicTable.length());
+
+        decode(out, decHeaders);
+        verifyDecodedHeaders("x-foo", "a", 5);
+        // The section acknowledgment allowed to evict the entries and to lower the capacity.
+        assertEquals(172, memoryBudget.reservedCapacity());
+        assertEquals(128, decDynamicTable.capacity());
+        assertEquals(3, decDynamicTable.length());
+        assertEquals(117, decDynamicTable.size());
+
+        // New entries are only inserted if these fit into the lowered capacity.
+        resetState();
+        encHeaders.add("x-bar", new String(new char[20]).replace('\0', 'b'));
+        encode(out, encHeaders);
+        decode(out, decHeaders);
+        assertEquals(5, decDynamicTable.insertCount());
+        verifyDecodedHeader("x-bar", new String(new char[20]).replace('\0', 'b'));
+
+        // Once the decoder dynamic table is released, the encoder grows to its fair share again.
+        memoryBudget.releaseFixed(44);
+        assertEquals(150, memoryBudget.fairShare());
+        assertEquals(150, memoryBudget.reservedCapacity());
+        assertEquals(150, decDynamicTable.capacity());
+
+        encoder.releaseMemoryBudget();
+        assertEquals(0, memoryBudget.reservedCapacity());
+    }
+
+    @Test
+    public void dynamicTableShrunkOnlyOnceFairShareDropsNotably() throws Exception {
+        memoryBudget = new QpackMemoryBudget(300);
+        setup(256, 0);
+
+        // A drop of the fair share to 128 notifies the encoder.
+        assertEquals(44, memoryBudget.reserveFixed(100));
+        assertEquals(128, decDynamicTable.capacity());
+        assertEquals(172, memoryBudget.reservedCapacity());
+
+        // A drop of the fair share to 123 is coalesced with later drops.
+        assertEquals(118, memoryBudget.tryReserve(118));
+        assertEquals(10, memoryBudget.reserveFixed(20));
+        assertEquals(123, memoryBudget.fairShare());
+        assertEquals(128, decDynamicTable.capacity());
+
+        // A drop of the fair share to 64 notifies the encoder again.
+        memoryBudget.release(118);
+        assertEquals(118, memoryBudget.reserveFixed(200));
+        assertEquals(64, memoryBudget.fairShare());
+        assertEquals(64, decDynamicTable.capacity());
+        assertEquals(236, memoryBudget.reservedCapacity());
+
+        encoder.releaseMemoryBudget();
+        memoryBudget.releaseFixed(172);
+        assertEquals(0, memoryBudget.reservedCapacity());
+    }
+
+    @Test
+    public void dynamicTableNotUsedWhileEncoderStreamCongested() throws Exception {
+        maxUnacknowledgedInserts = 2;
+        setup(256, 100);
+
+        drainNextSuspendedEncoderInstruction(); // dynamic table size instruction
+        encHeaders.add("foo", "bar");
+        encHeaders.add("content-type", "x-first");
+        encode(out, encHeaders);
+        verifyRequiredInsertCount(2);
+        assertEquals(2, encoder.unacknowledgedInsertions());
+
+        // The inserts were not received yet, so neither reference them nor insert other header fields. content-type
+        // matches a name in the static table and in the dynamic table, but is only counted once.
+        resetState();
+        encHeaders.add("foo", "bar");
+        encHeaders.add("content-type", "x-second");
+        encHeaders.add("baz", "qux");
+        encode(out, encHeaders);
+        assertEquals(2, encoder.insertions());
+        assertEquals(1, encoder.congestedReferencesSkipped());
+        assertEquals(2, encoder.congestedInsertionsSkipped());
+
+        decode(out, decHeaders);
+        assertEquals(0, decDynamicTable.insertCount());
+        assertEquals(3, decHeaders.size());
+        verifyDecodedHeader("foo", "bar");
+        verifyDecodedHeader("content-type", "x-second");
+        verifyDecodedHeader("baz", "qux");
+    }
+
+    @Test
+    public void drainingEntryNotDuplicatedWhileEncoderStreamCongested() throws Exception {
+        maxUnacknowledgedInserts = 1;
+        setup(256, 100, 50);
+
+        drainNextSuspendedEncoderInstruction(); // dynamic table size instruction
+        for (int i = 0; i < 3; i++) {
+            resetState();
+            encHeaders.add("foo" + i, "bar");
+            encode(out, encHeaders);
+            drainAllSuspendedEncoderInstructions();
+            decode(out, decHeaders);
+        }
+        verifyKnownReceivedCount(3);
+
+        ByteBuf referencing = Unpooled.buffer();
+        ByteBuf inserting = Unpooled.buffer();
+        try {
+            // Keep all entries referenced, so these are not evicted once marked for eviction.
+            resetState();
+            addEncodeHeader("foo", "bar", 3);
+            encode(referencing, encHeaders);
+
+            // Marks foo0 for eviction and leaves an insert unacknowledged, which congests the encoder stream.
+            resetState();
+            encHeaders.add("x-bar", "baz");
+            encode(inserting, encHeaders);
+            assertEquals(4, encoder.insertions());
+            assertEquals(1, encoder.unacknowledgedInsertions());
+
+            QpackHeaderField entry = new QpackHeaderField("foo0", "bar");
+            final int idx = encDynamicTable.getEntryIndex(entry.name, entry.value);
+            assertEquals(0, idx);
+            assertTrue(encDynamicTable.requiresDuplication(idx, entry.size()));
+
+            // The acknowledged entry would require a duplicate, which must not be written while congested.
+            resetState();
+            encHeaders.add(entry.name, entry.value);
+            encode(out, encHeaders);
+            assertEquals(4, encoder.insertions());
+            assertEquals(1, encoder.congestedInsertionsSkipped());
+            assertEquals(1, suspendedEncoderInstructions.size());
+
+            decode(out, decHeaders);
+            assertEquals(3, decDynamicTable.insertCount());
+            assertEquals(1, decHeaders.size());
+            verifyDecodedHeader(entry.name, entry.value);
+        } finally {
+            referencing.release();
+            inserting.release();
+        }
+    }
+
     private void testDynamicTableIndexed(CharSequence name, CharSequence value) throws Exception {
         encHeaders.add(name, value);
         encode(out, encHeaders);
@@ -394,6 +751,30 @@ public class QpackEncoderDecoderTest {
         verifyDecodedHeader("x-qpack-draft", "19");
     }
 
+    @Test
+    public void literalsWithAndWithoutHuffmanEncoding() throws Exception {
+        setup(0, 0);
+
+        // Encoded as raw octets as Huffman encoding is not shorter.
+        encHeaders.add("x-token", "ZZZZ{}|~");
+        encHeaders.add("x-~~~~~~~~~~", "application/json");
+        encHeaders.add(":authority", "QQQQQQQQ");
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            longValue.append(i % 2 == 0 ? 'a' : 'Z');
+        }
+        encHeaders.add("x-long", longValue);
+
+        encode(out, encHeaders);
+        decode(out, decHeaders);
+
+        assertEquals(4, decHeaders.size());
+        verifyDecodedHeader("x-token", "ZZZZ{}|~");
+        verifyDecodedHeader("x-~~~~~~~~~~", "application/json");
+        verifyDecodedHeader(":authority", "QQQQQQQQ");
+        verifyDecodedHeader("x-long", longValue);
+    }
+
     @Test
     public void decoderThrowsOnInvalidInput() throws Exception {
         setup(0, 0);
@@ -413,7 +794,14 @@ public class QpackEncoderDecoderTest {
     }
 
     private void encode(ByteBuf buf, Http3Headers headers) {
-        encoder.encodeHeaders(attributes, buf, DEFAULT, 1, headers);
+        ByteBuf section = DEFAULT.buffer();
+        try {
+            section.writerIndex(QpackEncoder.MAX_FIELD_SECTION_PREFIX_LENGTH);
+            section.readerIndex(encoder.encodeHeaders(attributes, section, 1, headers));
+            buf.writeBytes(section);
+        } finally {
+            section.release();
+        }
         assertTrue(parent.isActive());
     }
 
@@ -469,7 +857,13 @@ public class QpackEncoderDecoderTest {
         encDynamicTable = new QpackEncoderDynamicTable(16, expectedTableFreePercentage);
         decDynamicTable = new QpackDecoderDynamicTable();
         decoder = new QpackDecoder(maxTableCapacity, maxBlockedStreams, decDynamicTable, syncStrategy);
-        encoder = new QpackEncoder(encDynamicTable);
+        QpackOptions options = QpackOptions.builder()
+                .encoderAdmissionPolicy(() -> admissionPolicy)
+                .encoderWarmSet(warmSet)
+                .encoderMaxUnacknowledgedInserts(maxUnacknowledgedInserts)
+                .memoryBudget(memoryBudget)
+                .build();
+        encoder = new QpackEncoder(options, encDynamicTable);
         if (maxBlockedStreams > 0) {
             suspendedEncoderInstructions = new LinkedBlockingQueue<>();
         }
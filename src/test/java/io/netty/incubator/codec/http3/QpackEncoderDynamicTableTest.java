@@ -21,7 +21,9 @@ import static io.netty.incubator.codec.http3.QpackUtil.MAX_HEADER_TABLE_SIZE;
 import static java.lang.Math.toIntExact;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class QpackEncoderDynamicTableTest {
     private static final QpackHeaderField emptyHeader = new QpackHeaderField("", "");
@@ -75,6 +77,51 @@ public class QpackEncoderDynamicTableTest {
         assertThat(getEntryIndex(table, fooBar2Header)).isLessThan(0);
     }
 
+    @Test
+    public void shrinkCapacityOnceEvicted() throws Exception {
+        QpackEncoderDynamicTable table = newDynamicTable(128);
+
+        addAndValidateHeader(table, emptyHeader);
+        addAndValidateHeader(table, fooBarHeader);
+        addAndValidateHeader(table, fooBar2Header);
+
+        // The oldest entry does not fit, but is not acknowledged yet.
+        table.shrinkCapacity(80);
+        assertFalse(table.applyTargetCapacity());
+        assertEquals(128, table.capacity());
+        assertThat(addHeader(table, fooBar3Header)).isLessThan(0);
+
+        table.incrementKnownReceivedCount(3);
+        assertThat(getEntryIndex(table, emptyHeader)).isLessThan(0);
+        assertTrue(table.applyTargetCapacity());
+        assertEquals(80, table.capacity());
+        assertFalse(table.applyTargetCapacity());
+    }
+
+    @Test
+    public void growCapacityAfterShrinking() throws Exception {
+        QpackEncoderDynamicTable table = newDynamicTable(128);
+
+        addAndValidateHeader(table, emptyHeader);
+        addAndValidateHeader(table, fooBarHeader);
+        addAndValidateHeader(table, fooBar2Header);
+
+        // Growing while shrinking only changes the capacity to shrink to.
+        table.shrinkCapacity(64);
+        assertFalse(table.growCapacity(80));
+        assertEquals(80, table.targetCapacity());
+        assertEquals(128, table.capacity());
+
+        table.incrementKnownReceivedCount(3);
+        assertTrue(table.applyTargetCapacity());
+        assertEquals(80, table.capacity());
+
+        assertTrue(table.growCapacity(128));
+        assertEquals(128, table.capacity());
+        assertFalse(table.growCapacity(100));
+        assertThat(addHeader(table, fooBar3Header)).isGreaterThanOrEqualTo(0);
+    }
+
     @Test
     public void addAndGet() throws Exception {
         QpackEncoderDynamicTable table = newDynamicTable(128);
@@ -197,6 +244,36 @@ public class QpackEncoderDynamicTableTest {
         addAndValidateHeader(table, fooBarHeader);
     }
 
+    @Test
+    public void manyEntriesWithSameName() throws Exception {
+        QpackEncoderDynamicTable table = newDynamicTable(2, 10, 45000);
+        final int entries = 1000;
+        for (int i = 0; i < entries; i++) {
+            addAndValidateHeader(table, new QpackHeaderField("foo", "bar" + i));
+        }
+        for (int i = 0; i < entries; i++) {
+            assertEquals(i, table.getEntryIndex("foo", "bar" + i));
+        }
+        // Name only match refers to the most recent entry with that name.
+        assertEquals(-(entries - 1) - 1, table.getEntryIndex("foo", "baz"));
+        assertEquals(QpackEncoderDynamicTable.NOT_FOUND, table.getEntryIndex("bar", "bar0"));
+
+        table.incrementKnownReceivedCount(entries);
+        // Exceeding the expected free capacity drains the oldest entries, which are known received and hence evicted.
+        addAndValidateHeader(table, new QpackHeaderField("foo", "bar" + entries));
+        assertThat(table.getEntryIndex("foo", "bar0")).isLessThan(0);
+        assertEquals(entries, table.getEntryIndex("foo", "bar" + entries));
+        assertEquals(entries - 1, table.getEntryIndex("foo", "bar" + (entries - 1)));
+    }
+
+    @Test
+    public void acknowledgeEvictedEntry() throws Exception {
+        QpackEncoderDynamicTable table = newDynamicTable(fooBarHeader.size());
+        final int idx = addValidateAndAckHeader(table, fooBarHeader);
+        verifyTableEmpty(table);
+        assertThrows(QpackException.class, () -> table.acknowledgeInsertCountOnAck(idx));
+    }
+
     private void verifyTableEmpty(QpackEncoderDynamicTable table) {
         assertEquals(0, table.insertCount());
         insertCount = 0;
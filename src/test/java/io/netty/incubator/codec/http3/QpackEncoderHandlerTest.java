@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.incubator.codec.quic.QuicStreamType;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static io.netty.incubator.codec.http3.Http3.setQpackAttributes;
+import static io.netty.incubator.codec.http3.QpackDecoderStateSyncStrategy.ackEachInsert;
+import static io.netty.incubator.codec.http3.QpackUtil.encodePrefixedInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class QpackEncoderHandlerTest {
+    private static final long MAX_TABLE_CAPACITY = 256;
+
+    private final QpackDecoderDynamicTable dynamicTable = new QpackDecoderDynamicTable();
+    private EmbeddedQuicChannel parent;
+    private EmbeddedQuicStreamChannel encoderStream;
+    private EmbeddedQuicStreamChannel decoderStream;
+
+    @AfterEach
+    public void tearDown() {
+        assertFalse(encoderStream.finish());
+        decoderStream.finishAndReleaseAll();
+        parent.finishAndReleaseAll();
+    }
+
+    @Test
+    public void instructionsInSingleRead() throws Exception {
+        setup();
+        ByteBuf instructions = instructions();
+        encoderStream.writeInbound(instructions);
+        assertEquals(0, instructions.refCnt());
+        verifyDynamicTable();
+    }
+
+    @Test
+    public void instructionsSplitAcrossReads() throws Exception {
+        setup();
+        ByteBuf instructions = instructions();
+        try {
+            while (instructions.isReadable()) {
+                encoderStream.writeInbound(instructions.readRetainedSlice(1));
+            }
+        } finally {
+            instructions.release();
+        }
+        verifyDynamicTable();
+    }
+
+    private void verifyDynamicTable() throws QpackException {
+        assertEquals(3, dynamicTable.insertCount());
+        assertEquals("x-foo", dynamicTable.getEntry(0).name.toString());
+        assertEquals("bar", dynamicTable.getEntry(0).value.toString());
+        assertEquals(":authority", dynamicTable.getEntry(1).name.toString());
+        assertEquals("netty.io", dynamicTable.getEntry(1).value.toString());
+        assertEquals("x-foo", dynamicTable.getEntry(2).name.toString());
+        assertEquals("bar", dynamicTable.getEntry(2).value.toString());
+    }
+
+    private static ByteBuf instructions() {
+        ByteBuf buf = Unpooled.buffer();
+        // Set Dynamic Table Capacity
+        encodePrefixedInteger(buf, (byte) 0b0010_0000, 5, MAX_TABLE_CAPACITY);
+        // Insert With Literal Name, Huffman encoded name
+        ByteBuf name = Unpooled.buffer();
+        try {
+            new QpackHuffmanEncoder().encode(name, "x-foo", Integer.MAX_VALUE);
+            encodePrefixedInteger(buf, (byte) 0b0110_0000, 5, name.readableBytes());
+            buf.writeBytes(name);
+        } finally {
+            name.release();
+        }
+        encodePrefixedInteger(buf, (byte) 0b0000_0000, 7, 3);
+        buf.writeCharSequence("bar", CharsetUtil.US_ASCII);
+        // Insert With Name Reference to :authority in the static table
+        encodePrefixedInteger(buf, (byte) 0b1100_0000, 6, 0);
+        encodePrefixedInteger(buf, (byte) 0b0000_0000, 7, 8);
+        buf.writeCharSequence("netty.io", CharsetUtil.US_ASCII);
+        // Duplicate of the oldest entry
+        encodePrefixedInteger(buf, (byte) 0b0000_0000, 5, 1);
+        return buf;
+    }
+
+    private void setup() throws Exception {
+        parent = new EmbeddedQuicChannel(true);
+        QpackAttributes attributes = new QpackAttributes(parent, false);
+        setQpackAttributes(parent, attributes);
+        QpackDecoder decoder = new QpackDecoder(MAX_TABLE_CAPACITY, 0, dynamicTable, ackEachInsert());
+        encoderStream = (EmbeddedQuicStreamChannel) parent.createStream(QuicStreamType.UNIDIRECTIONAL,
+                new QpackEncoderHandler(MAX_TABLE_CAPACITY, decoder)).get();
+        attributes.encoderStream(encoderStream);
+        decoderStream = (EmbeddedQuicStreamChannel) parent.createStream(QuicStreamType.UNIDIRECTIONAL,
+                new ChannelInboundHandlerAdapter()).get();
+        attributes.decoderStream(decoderStream);
+    }
+}
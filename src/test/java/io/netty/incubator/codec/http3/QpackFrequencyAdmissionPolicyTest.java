@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QpackFrequencyAdmissionPolicyTest {
+
+    @Test
+    public void admitAfterMinOccurrences() {
+        QpackFrequencyAdmissionPolicy policy = new QpackFrequencyAdmissionPolicy(3);
+        assertFalse(policy.admit("foo", "bar"));
+        assertFalse(policy.admit("foo", "bar"));
+        assertFalse(policy.admit("foo", "baz"));
+        assertTrue(policy.admit("foo", "bar"));
+        assertTrue(policy.admit("foo", "bar"));
+    }
+
+    @Test
+    public void neverInsertNames() {
+        QpackFrequencyAdmissionPolicy policy = new QpackFrequencyAdmissionPolicy(1, "x-request-id");
+        assertTrue(policy.admit("foo", "bar"));
+        for (int i = 0; i < 20; i++) {
+            assertFalse(policy.admit("x-request-id", "1"));
+            assertFalse(policy.admit("X-Request-Id", "1"));
+        }
+    }
+
+    @Test
+    public void countersSaturate() {
+        QpackFrequencyAdmissionPolicy policy = new QpackFrequencyAdmissionPolicy(2);
+        for (int i = 1; i < 15; i++) {
+            assertEquals(i, policy.increment(42));
+        }
+        assertEquals(15, policy.increment(42));
+        assertEquals(15, policy.increment(42));
+    }
+
+    @Test
+    public void countersAge() {
+        QpackFrequencyAdmissionPolicy policy = new QpackFrequencyAdmissionPolicy(2);
+        for (int i = 0; i < 8; i++) {
+            policy.increment(42);
+        }
+        // Record enough occurrences to trigger a reset, which halves all counters.
+        for (int i = 8; i < 10 * 2048; i++) {
+            policy.increment(43);
+        }
+        assertTrue(policy.increment(42) <= 5);
+    }
+
+    @Test
+    public void invalidMinOccurrences() {
+        assertThrows(IllegalArgumentException.class, () -> new QpackFrequencyAdmissionPolicy(0));
+        assertThrows(IllegalArgumentException.class, () -> new QpackFrequencyAdmissionPolicy(16));
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2026 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link QpackHuffmanDecoder#decode(ByteBuf, int)} on Huffman coded header values as typically seen in
+ * requests and responses.
+ * <p>
+ * With {@code evictCaches} the decoder tables are pushed out of the CPU caches before each batch, which approximates
+ * an event loop that serves many connections and only decodes a few fields of each at a time.
+ */
+@State(Scope.Benchmark)
+public class QpackHuffmanDecoderBenchmark extends AbstractMicrobenchmark {
+
+    private static final String[] REQUEST_VALUES = {
+            "www.example.com",
+            "/api/v1/users/12345/orders?status=shipped&page=2&per_page=50",
+            "https",
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) " +
+                    "Chrome/120.0.0.0 Safari/537.36",
+            "text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,image/webp,*/*;q=0.8",
+            "gzip, deflate, br",
+            "en-US,en;q=0.9,de;q=0.8",
+            "_ga=GA1.2.1234567890.1700000000; session_id=4f9c2e1ab8d34c7e9f0a1b2c3d4e5f60; " +
+                    "theme=dark; consent=analytics%2Cmarketing",
+            "https://www.example.com/shop/cart",
+            "Bearer eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9.eyJzdWIiOiIxMjM0NTY3ODkwIiwiaWF0IjoxNzAwMDAwMDAwfQ",
+            "no-cache",
+            "\"33a64df551425fcc55e4d42a148795d9f25f89d4\"",
+    };
+
+    private static final String[] RESPONSE_VALUES = {
+            "200",
+            "Tue, 17 Oct 2026 10:15:30 GMT",
+            "application/json; charset=utf-8",
+            "public, max-age=31536000, immutable",
+            "nginx/1.25.3",
+            "Accept-Encoding, Origin",
+            "id=a3fWa; Expires=Wed, 21 Oct 2026 07:28:00 GMT; Path=/; Secure; HttpOnly; SameSite=Lax",
+            "max-age=63072000; includeSubDomains; preload",
+            "1f2e3d4c-5b6a-7980-a1b2-c3d4e5f60718",
+            "W/\"5e15153d-120f\"",
+    };
+
+    @Param({ "request", "response" })
+    public String corpus;
+
+    @Param({ "false", "true" })
+    public boolean evictCaches;
+
+    private final QpackHuffmanDecoder decoder = new QpackHuffmanDecoder();
+    private ByteBuf[] encoded;
+    private byte[] evictor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] values = "request".equals(corpus) ? REQUEST_VALUES : RESPONSE_VALUES;
+        QpackHuffmanEncoder encoder = new QpackHuffmanEncoder();
+        encoded = new ByteBuf[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ByteBuf buf = Unpooled.buffer();
+            encoder.encode(buf, values[i]);
+            encoded[i] = buf;
+        }
+        // Larger than the L2 cache of common server CPUs.
+        evictor = new byte[4 * 1024 * 1024];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (ByteBuf buf : encoded) {
+            buf.release();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void evict() {
+        if (evictCaches) {
+            // Touch one byte per cache line, outside of the measured section.
+            for (int i = 0; i < evictor.length; i += 64) {
+                evictor[i]++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) throws QpackException {
+        for (ByteBuf buf : encoded) {
+            int readerIndex = buf.readerIndex();
+            bh.consume(decoder.decode(buf, buf.readableBytes()));
+            buf.readerIndex(readerIndex);
+        }
+    }
+}
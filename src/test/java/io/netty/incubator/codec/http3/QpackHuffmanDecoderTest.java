@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QpackHuffmanDecoderTest {
+    private final QpackHuffmanDecoder decoder = new QpackHuffmanDecoder();
+
+    @Test
+    public void decodeReusingScratchBuffer() throws Exception {
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longValue.append((char) ('a' + i % 26));
+        }
+        assertDecode(longValue);
+        assertDecode("gzip");
+        assertDecode(longValue);
+        assertDecode("");
+        assertDecode("application/json");
+    }
+
+    @Test
+    public void paddingLongerThan7Bits() {
+        // 'a' (00011) followed by 11 bits of padding
+        assertBadEncoding(0x1F, 0xFF);
+    }
+
+    @Test
+    public void paddingNotEos() {
+        // 'a' (00011) followed by 3 bits of 0
+        assertBadEncoding(0x18);
+    }
+
+    @Test
+    public void eosDecoded() {
+        assertBadEncoding(0xFF, 0xFF, 0xFF, 0xFF);
+    }
+
+    private void assertBadEncoding(int... bytes) {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            for (int b : bytes) {
+                buf.writeByte(b);
+            }
+            assertThrows(QpackException.class, () -> decoder.decode(buf, buf.readableBytes()));
+        } finally {
+            buf.release();
+        }
+    }
+
+    private void assertDecode(CharSequence value) throws Exception {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            new QpackHuffmanEncoder().encode(buf, value);
+            AsciiString decoded = decoder.decode(buf, buf.readableBytes());
+            assertEquals(value.toString(), decoded.toString());
+            assertEquals(0, buf.readableBytes());
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package io.netty.incubator.codec.http3;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AsciiString;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class QpackHuffmanEncoderTest {
+    private final QpackHuffmanEncoder encoder = new QpackHuffmanEncoder();
+
+    @Test
+    public void roundTrip() throws Exception {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 256; i++) {
+            value.append((char) i);
+            assertRoundTrip(value.toString());
+            assertRoundTrip(new AsciiString(value));
+        }
+    }
+
+    @Test
+    public void encodeIfShorter() throws Exception {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            assertEquals(11, encoder.encode(buf, "application/json", 16));
+            assertEquals(11, buf.readableBytes());
+            assertEquals("application/json", new QpackHuffmanDecoder().decode(buf, 11).toString());
+
+            // Codes of 8 bits or more, so not shorter than the raw octets.
+            assertEquals(-1, encoder.encode(buf, "ZZZZZZZZ", 8));
+            assertEquals(-1, encoder.encode(buf, "{}|~{}|~{}|~{}|~", 16));
+            assertEquals(0, buf.readableBytes());
+        } finally {
+            buf.release();
+        }
+    }
+
+    private void assertRoundTrip(CharSequence value) throws Exception {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            int length = encoder.encode(buf, value, Integer.MAX_VALUE);
+            assertEquals(length, buf.readableBytes());
+            // The limit is exclusive, so the same value must be rejected with a limit of exactly its length.
+            assertEquals(-1, encoder.encode(buf, value, length));
+            assertEquals(length, buf.readableBytes());
+            assertEquals(value.toString(), new QpackHuffmanDecoder().decode(buf, length).toString());
+        } finally {
+            buf.release();
+        }
+    }
+}
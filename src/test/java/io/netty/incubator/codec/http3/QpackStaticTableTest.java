@@ -65,4 +65,29 @@ public class QpackStaticTableTest {
         int nameIndex = QpackStaticTable.findFieldIndex(":method", "ALLTHETHINGS");
         assertEquals(15, nameIndex ^ QpackStaticTable.MASK_NAME_REF);
     }
+
+    @Test
+    public void testAllFieldsFound() {
+        for (int index = 0; index < QpackStaticTable.length; index++) {
+            QpackHeaderField field = QpackStaticTable.getField(index);
+            assertEquals(index, QpackStaticTable.findFieldIndex(field.name, field.value));
+            // Lookups must not depend on the CharSequence implementation.
+            assertEquals(index, QpackStaticTable.findFieldIndex(field.name.toString(), field.value.toString()));
+
+            int nameIndex = QpackStaticTable.getIndex(field.name);
+            assertEquals(field.name, QpackStaticTable.getField(nameIndex).name);
+            for (int i = 0; i < nameIndex; i++) {
+                assertNotEquals(field.name, QpackStaticTable.getField(i).name);
+            }
+            assertEquals(nameIndex | QpackStaticTable.MASK_NAME_REF,
+                    QpackStaticTable.findFieldIndex(field.name, "x-netty-quic"));
+        }
+    }
+
+    @Test
+    public void testNameIsCaseSensitive() {
+        assertEquals(QpackStaticTable.NOT_FOUND, QpackStaticTable.getIndex("Content-Length"));
+        assertEquals(QpackStaticTable.NOT_FOUND, QpackStaticTable.findFieldIndex("Content-Length", "0"));
+        assertEquals(15 | QpackStaticTable.MASK_NAME_REF, QpackStaticTable.findFieldIndex(":method", "get"));
+    }
 }